@@ -0,0 +1,240 @@
+package com.git.ifly6.communique.data;
+
+import com.git.ifly6.nsapi.NSNation;
+import com.git.ifly6.nsapi.telegram.JTelegramException;
+import com.git.ifly6.nsapi.telegram.util.JAttributeStore;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Parses and tests the attribute named by a {@link FilterType#REQUIRE_ATTRIBUTE} or {@link
+ * FilterType#EXCLUDE_ATTRIBUTE} token. The following are supported:
+ * <ul>
+ * <li><code>endorsements</code> and <code>influence</code>, compared to a number with <code>&gt;=</code>,
+ * <code>&lt;=</code>, <code>&gt;</code>, <code>&lt;</code>, <code>=</code>, or <code>!=</code>, e.g.
+ * <code>+attr:endorsements&gt;=10</code>;</li>
+ * <li><code>category</code>, compared with <code>=</code> or <code>!=</code> to a government category or one of the
+ * groups in {@link NSNation#CATEGORIES_MAP}, e.g. <code>+attr:category=left-wing</code>; and</li>
+ * <li><code>wa</code> and <code>delegate</code>, which take no comparison, e.g. <code>+attr:delegate</code>.</li>
+ * </ul>
+ * <p>
+ * Attributes are tested on a whole list of nations at once through {@link JAttributeStore}, so that they come from
+ * the data dump or the cache where possible and the rest are fetched several at a time, asking only for the shard
+ * which the attribute needs. Without a data dump, at most {@link JAttributeStore#MAX_FETCHES} nations are fetched for
+ * one list, even when it is tested in parts as it is fetched; endorsements and influence of nations from known regions
+ * may instead be read from the regions' census rankings. World Assembly membership and delegacy are tested against the
+ * world lists.
+ * </p>
+ */
+class AttributeFilter {
+
+	private enum Attribute {
+		ENDORSEMENTS, INFLUENCE, CATEGORY, WA, DELEGATE
+	}
+
+	/** Comparison operators, with those which are prefixes of others last. */
+	private static final List<String> OPERATORS = Arrays.asList(">=", "<=", "!=", ">", "<", "=");
+
+	private final Attribute attribute;
+	private final String operator;
+	private final double number;
+	private final Set<String> categories;
+
+	private AttributeFilter(Attribute attribute, String operator, double number, Set<String> categories) {
+		this.attribute = attribute;
+		this.operator = operator;
+		this.number = number;
+		this.categories = categories;
+	}
+
+	/**
+	 * Parses the attribute test named by a token.
+	 * @param recipient token to parse
+	 * @return filter
+	 * @throws IllegalArgumentException if the attribute or comparison is not valid
+	 */
+	static AttributeFilter of(CommuniqueRecipient recipient) {
+		String s = recipient.getName();
+		String token = recipient.getFilterType() + ":" + s; // as written, without the implied recipient type
+		int split = 0;
+		while (split < s.length() && "<>=!".indexOf(s.charAt(split)) < 0) split++;
+
+		Attribute attribute;
+		try {
+			attribute = Attribute.valueOf(s.substring(0, split).trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException(String.format("Unknown attribute in %s; expected one of %s",
+					token, Arrays.stream(Attribute.values())
+							.map(a -> a.name().toLowerCase())
+							.collect(Collectors.joining(", "))));
+		}
+
+		String rest = s.substring(split);
+		if (attribute == Attribute.WA || attribute == Attribute.DELEGATE) {
+			if (!rest.isEmpty())
+				throw new IllegalArgumentException(String.format("Attribute in %s takes no comparison", token));
+			return new AttributeFilter(attribute, null, Double.NaN, null);
+		}
+
+		String operator = OPERATORS.stream().filter(rest::startsWith).findFirst()
+				.orElseThrow(() -> new IllegalArgumentException(
+						String.format("Attribute in %s requires a comparison, e.g. >=", token)));
+		String value = rest.substring(operator.length()).trim();
+
+		if (attribute == Attribute.CATEGORY) {
+			if (!operator.equals("=") && !operator.equals("!="))
+				throw new IllegalArgumentException(String.format("Category in %s can only be compared with = or !=",
+						token));
+			return new AttributeFilter(attribute, operator, Double.NaN, parseCategories(token, value));
+		}
+
+		try {
+			return new AttributeFilter(attribute, operator, Double.parseDouble(value), null);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(String.format("Attribute in %s must be compared to a number", token));
+		}
+	}
+
+	/** Gets the lower-case categories named by a category or group of categories. */
+	private static Set<String> parseCategories(String token, String value) {
+		List<String> group = NSNation.CATEGORIES_MAP.get(value);
+		if (group != null) return group.stream().map(String::toLowerCase).collect(Collectors.toSet());
+
+		for (List<String> categories : NSNation.CATEGORIES_MAP.values())
+			for (String category : categories)
+				if (category.equalsIgnoreCase(value)) return Collections.singleton(category.toLowerCase());
+		throw new IllegalArgumentException(String.format("Unknown category in %s; expected a category or one of %s",
+				token, String.join(", ", NSNation.CATEGORIES_MAP.keySet())));
+	}
+
+	/**
+	 * @return fields of {@link JAttributeStore} needed to test each nation; empty if tested against a world list
+	 */
+	private Set<JAttributeStore.Field> fields() {
+		switch (attribute) {
+			case ENDORSEMENTS:
+				return EnumSet.of(JAttributeStore.Field.ENDORSEMENTS);
+			case INFLUENCE:
+				return EnumSet.of(JAttributeStore.Field.INFLUENCE);
+			case CATEGORY:
+				return EnumSet.of(JAttributeStore.Field.CATEGORY);
+			default:
+				return EnumSet.noneOf(JAttributeStore.Field.class);
+		}
+	}
+
+	/**
+	 * Determines whether testing requires data on each nation, rather than only the world lists.
+	 * @return true if data on each nation is required
+	 */
+	boolean needsNationData() {
+		return attribute != Attribute.WA && attribute != Attribute.DELEGATE;
+	}
+
+	/**
+	 * Determines whether the attribute can be read from the census rankings of regions, rather than per nation.
+	 * @return true if regions rank nations by it
+	 */
+	boolean isRanked() {
+		return attribute == Attribute.ENDORSEMENTS || attribute == Attribute.INFLUENCE;
+	}
+
+	/**
+	 * @return tag of the world list against which nations are tested, or <code>null</code> if they are tested on data
+	 * on each nation
+	 */
+	String worldList() {
+		if (attribute == Attribute.WA) return "wa";
+		if (attribute == Attribute.DELEGATE) return "delegates";
+		return null;
+	}
+
+	/**
+	 * Loads the attribute for some nations, all at once, and gives a test of whether each has it. Nations which do not
+	 * exist, or which cannot be fetched, have no attribute.
+	 * @param nations to be tested
+	 * @return test passing those nations which have the attribute
+	 * @throws JTelegramException if the attributes cannot be fetched, or too many would have to be
+	 */
+	Predicate<String> test(Collection<String> nations) throws JTelegramException {
+		return test(nations, new JAttributeStore.FetchLimit());
+	}
+
+	/**
+	 * Loads the attribute for some nations, as {@link #test(Collection)} does, counting nations fetched against a
+	 * limit shared with the other parts of the list to which they belong.
+	 * @param nations to be tested
+	 * @param limit   on nations fetched, shared with other parts of the list
+	 * @return test passing those nations which have the attribute
+	 * @throws JTelegramException if the attributes cannot be fetched, or too many would have to be
+	 */
+	Predicate<String> test(Collection<String> nations, JAttributeStore.FetchLimit limit) throws JTelegramException {
+		JAttributeStore store = JAttributeStore.instance();
+		if (attribute == Attribute.WA) return store.getWAMembers()::contains;
+		if (attribute == Attribute.DELEGATE) return store.getDelegates()::contains;
+
+		Map<String, JAttributeStore.Attributes> attributes = store.getAll(nations, fields(), limit);
+		Set<String> passing = new HashSet<>();
+		for (Map.Entry<String, JAttributeStore.Attributes> entry : attributes.entrySet())
+			if (matches(entry.getValue())) passing.add(entry.getKey());
+		return passing::contains;
+	}
+
+	/**
+	 * Tests whether one nation has the attribute, loading it on the calling thread if it is not in the data dump or
+	 * cached. Nations which do not exist have no attribute.
+	 * @param nation to be tested
+	 * @return true if it has the attribute
+	 * @throws JTelegramException if the attribute cannot be fetched
+	 */
+	boolean test(String nation) throws JTelegramException {
+		JAttributeStore store = JAttributeStore.instance();
+		if (attribute == Attribute.WA) return store.getWAMembers().contains(nation);
+		if (attribute == Attribute.DELEGATE) return store.getDelegates().contains(nation);
+
+		JAttributeStore.Attributes attributes = store.get(nation, fields());
+		return attributes != null && matches(attributes);
+	}
+
+	private boolean matches(JAttributeStore.Attributes a) {
+		if (!a.has(fields())) return false; // not loaded, so not known to have it
+		switch (attribute) {
+			case ENDORSEMENTS:
+				return compare(a.getEndorsements());
+			case INFLUENCE:
+				return compare(a.getInfluence()); // false if unknown
+			case CATEGORY:
+				boolean in = a.getCategory() != null && categories.contains(a.getCategory().toLowerCase());
+				return operator.equals("=") == in;
+			default:
+				throw new IllegalStateException("Attribute " + attribute + " is not held per nation");
+		}
+	}
+
+	private boolean compare(double value) {
+		switch (operator) {
+			case ">=":
+				return value >= number;
+			case "<=":
+				return value <= number;
+			case ">":
+				return value > number;
+			case "<":
+				return value < number;
+			case "=":
+				return value == number;
+			default:
+				return value != number && !Double.isNaN(value);
+		}
+	}
+
+}
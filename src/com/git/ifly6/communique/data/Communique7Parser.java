@@ -18,12 +18,16 @@
 package com.git.ifly6.communique.data;
 
 import com.git.ifly6.nsapi.telegram.JTelegramException;
+import com.git.ifly6.nsapi.telegram.JTelegramRecipients;
+import com.git.ifly6.nsapi.telegram.util.JRegionExpander;
 
 import java.util.Arrays;
-import java.util.LinkedHashSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.CancellationException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * <code>Communique7Parser</code> is the new parser designed for Communique 7, which implements the same way to declare
@@ -31,21 +35,33 @@ import java.util.stream.Collectors;
  * recipient declaration system in older versions of Communique.
  * <p><code>Communique7Parser</code> also provides methods to translate between the old and new Communique address
  * tokens, allowing for a seamless transition between the old and new token systems.</p>
- * <p>This class does not lazily load data. When invoking <code>apply</code>, all elements are processed
- * immediately. This class is meant to be used fluently, e.g.
- * <code>new Communique7Parser().apply(tokens).listRecipients()</code>.</p>
+ * <p>When invoking <code>apply</code>, all elements are processed immediately. This class is meant to be used
+ * fluently, e.g. <code>new Communique7Parser().apply(tokens).listRecipients()</code>. To start sending before every
+ * list is fetched, use {@link #stream(List)} instead.</p>
  * @author ifly6
  */
 public class Communique7Parser {
 
+	private static final Logger LOGGER = Logger.getLogger(Communique7Parser.class.getName());
+
 	/**
 	 * Declares the version of the parser, which is based on two values: (1) the syntax of the Communique recipients
 	 * language and (2) the file syntax in which that information is held.
 	 */
-	public static final int version = 12;
+	public static final int version = 13;
+
+	/**
+	 * List of recipients changed by various actions and applications called by the parser. Names are kept interned as
+	 * integers and only converted back in {@link #listRecipients()}.
+	 */
+	private RecipientSet recipients;
+
+	/** Nations removed after tokens are applied, such as those already sent to. */
+	private Set<String> excluded = Collections.emptySet();
 
-	/** List of recipients changed by various actions and applications called by the parser. */
-	private Set<CommuniqueRecipient> recipients;
+	/** Listener to which progress in expanding region tags is reported. */
+	private JRegionExpander.ProgressListener listener = (done, total, eta) -> {
+	};
 
 	/**
 	 * Creates a new empty parser without any applied tokens. To actually use the parser, apply tokens using the apply
@@ -53,7 +69,31 @@ public class Communique7Parser {
 	 * <code>CommuniqueRecipient</code>.
 	 */
 	public Communique7Parser() {
-		recipients = new LinkedHashSet<>();
+		recipients = new RecipientSet();
+	}
+
+	/**
+	 * Excludes nations from the recipients given by {@link #apply(List)}, {@link #stream(List)}, and the explain
+	 * methods, after every token is applied. This is how the sent list is applied, as it can run to tens of thousands
+	 * of nations, without a token for each.
+	 * @param nations reference names to exclude, which are read but not copied
+	 * @return this parser
+	 */
+	public Communique7Parser exclude(Set<String> nations) {
+		this.excluded = nations;
+		return this;
+	}
+
+	/**
+	 * Sets listener to which progress is reported while {@link #apply(List)}, {@link #stream(List)}, and {@link
+	 * #explainAnalyze(List)} expand region tags, as each of their regions is fetched. It is called from the thread
+	 * fetching them.
+	 * @param listener for progress
+	 * @return this parser
+	 */
+	public Communique7Parser setListener(JRegionExpander.ProgressListener listener) {
+		this.listener = listener;
+		return this;
 	}
 
 	/**
@@ -73,22 +113,87 @@ public class Communique7Parser {
 
 	/**
 	 * Applies the tokens to the recipients list with a specified list of tokens.
+	 * <p>The list is first planned by {@link RecipientPlan}, which gives the same recipients as applying each token
+	 * in turn, but skips fetching lists which cannot affect them, e.g. <code>region:europe</code> in
+	 * <code>-region:europe, nation:alpha</code>, and fetches each list only once. Nations excluded by name, such as a
+	 * sent list of thousands of <code>-nation:</code> tokens, are indexed by name, so that excluding them costs one
+	 * lookup per recipient rather than one pass over the recipients per token.</p>
 	 * @param list of <code>CommuniqueRecipient</code>s
 	 * @return this parser
 	 */
 	public Communique7Parser apply(List<CommuniqueRecipient> list) throws JTelegramException {
-		list.forEach(this::apply);
+		recipients = RecipientPlan.of(recipients, list, excluded).setListener(listener).execute();
 		return this;
 	}
 
+	/**
+	 * Applies tokens in the background, giving recipients as they are resolved. They are given in the same order as
+	 * {@link #listRecipients()} would give them after {@link #apply(List)}, but each is given as soon as every token
+	 * which could exclude it has been fetched, so that sending can start before all lists are fetched. If resolution
+	 * fails, even with an error, the recipients are marked failed with the cause. If they are cancelled, resolution is
+	 * interrupted. The recipients in this parser are not changed.
+	 * @param list of <code>CommuniqueRecipient</code>s
+	 * @return recipients, which are added to as they are resolved
+	 */
+	public JTelegramRecipients stream(List<CommuniqueRecipient> list) {
+		RecipientPlan plan = RecipientPlan.of(recipients, list, excluded).setListener(listener);
+		JTelegramRecipients stream = new JTelegramRecipients();
+		Thread thread = new Thread(() -> {
+			try {
+				plan.stream(stream::add);
+				stream.complete();
+			} catch (CancellationException e) {
+				LOGGER.info("Stopped resolving recipients, as they are no longer wanted");
+			} catch (Throwable e) { // anything uncaught would leave consumers waiting forever
+				if (stream.isCancelled()) { // interrupted while fetching
+					LOGGER.info("Stopped resolving recipients, as they are no longer wanted");
+					return;
+				}
+				LOGGER.log(Level.WARNING, "Failed to resolve recipients", e);
+				stream.fail(e instanceof RuntimeException
+						? (RuntimeException) e
+						: new JTelegramException("Failed to resolve recipients", e));
+				if (e instanceof Error) throw (Error) e;
+			}
+		}, "Communique7Parser stream");
+		thread.setDaemon(true);
+		stream.onCancel(thread::interrupt);
+		thread.start();
+		return stream;
+	}
+
+	/**
+	 * Describes how a list of tokens would be applied, without applying them or calling the API. For each step of the
+	 * plan, this gives the API calls expected, whether lists are already cached, and the time those calls take at the
+	 * rate limit.
+	 * @param list of <code>CommuniqueRecipient</code>s
+	 * @return description of the plan
+	 * @see #explainAnalyze(List)
+	 */
+	public String explain(List<CommuniqueRecipient> list) {
+		return RecipientPlan.of(recipients, list, excluded).explain();
+	}
+
+	/**
+	 * Applies the tokens as {@link #apply(List)} does, and reports for each step of the plan the time taken, API calls
+	 * made, bytes read, and the number of recipients before and after it.
+	 * @param list of <code>CommuniqueRecipient</code>s
+	 * @return report of the application
+	 * @see #explain(List)
+	 */
+	public String explainAnalyze(List<CommuniqueRecipient> list) throws JTelegramException {
+		StringBuilder report = new StringBuilder();
+		recipients = RecipientPlan.of(recipients, list, excluded).setListener(listener).executeAnalyze(report);
+		return report.toString();
+	}
+
 	/**
 	 * Applies tokens based on a variable number of <code>CommuniqueRecipient</code>s.
 	 * @param tokens to apply
 	 * @return this parser
 	 */
 	public Communique7Parser apply(CommuniqueRecipient... tokens) {
-		Arrays.stream(tokens).forEach(this::apply);
-		return this;
+		return apply(Arrays.asList(tokens));
 	}
 
 	/**
@@ -96,9 +201,7 @@ public class Communique7Parser {
 	 * @return list of recipients
 	 */
 	public List<String> listRecipients() {
-		return recipients.stream()
-				.map(CommuniqueRecipient::getName)
-				.collect(Collectors.toList());
+		return recipients.toList();
 	}
 
 }
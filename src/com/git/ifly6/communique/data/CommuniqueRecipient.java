@@ -77,10 +77,13 @@ public class CommuniqueRecipient {
 	/**
 	 * Returns a string representation of the recipient, in the same form which is used by the NationStates telegram
 	 * system to specify large numbers of nations. For example, <code>tag:wa</code> or
-	 * <code>nation:imperium_anglorum</code>.
+	 * <code>nation:imperium_anglorum</code>. Attribute filters are written without a recipient type, e.g.
+	 * <code>+attr:endorsements&gt;=10</code>, as {@link #parseRecipient(String)} reads them.
 	 */
 	@Override
 	public String toString() {
+		if (filterType == FilterType.REQUIRE_ATTRIBUTE || filterType == FilterType.EXCLUDE_ATTRIBUTE)
+			return filterType.toString() + ":" + this.getName();
 		return filterType.toString() + recipientType.toString() + ":" + this.getName();
 	}
 
@@ -93,6 +96,15 @@ public class CommuniqueRecipient {
 		return getRecipientType().decompose(this);
 	}
 
+	/**
+	 * Decomposes a tag to the reference names of its constituent nations, without creating a
+	 * <code>CommuniqueRecipient</code> for each.
+	 * @return a list of nation reference names
+	 */
+	public List<String> decomposeNames() throws JTelegramException {
+		return getRecipientType().decomposeNames(this);
+	}
+
 	/**
 	 * Parses a <code>CommuniqueRecipient</code> of the same form defined in the {@link
 	 * com.git.ifly6.communique.data.CommuniqueRecipient#toString toString()} method. Allows for fast and simple access
@@ -110,12 +122,15 @@ public class CommuniqueRecipient {
 		s = s.trim();
 
 		FilterType fType = FilterType.NORMAL; // default
-		for (FilterType type : FilterType.values())
-			if (s.startsWith(type.toString())) {
+		for (FilterType type : FilterType.values()) {
+			// attributes need their colon, so that nations such as '-attrax' are not read as attributes
+			boolean attribute = type == FilterType.REQUIRE_ATTRIBUTE || type == FilterType.EXCLUDE_ATTRIBUTE;
+			if (s.startsWith(attribute ? type + ":" : type.toString())) {
 				fType = type;
 				s = s.substring(type.toString().length());
 				break;
 			}
+		}
 
 		RecipientType rType = RecipientType.NATION; // default
 		for (RecipientType type : RecipientType.values())
@@ -1,10 +1,8 @@
 package com.git.ifly6.communique.data;
 
-import java.util.HashSet;
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 /**
  * Defines a number of filter types which can be used in {@link Communique7Parser} to effect the recipients list. All of
@@ -15,13 +13,11 @@ public enum FilterType {
 
 	REQUIRE_REGEX {
 		@Override
-		public Set<CommuniqueRecipient> apply(Set<CommuniqueRecipient> recipients,
-		                                      CommuniqueRecipient provided) {
+		public RecipientSet apply(RecipientSet recipients, CommuniqueRecipient provided) {
 			String regex = provided.getName();
 			Pattern p = Pattern.compile(regex);
-			return recipients.stream()
-					.filter(r -> p.matcher(r.getName()).matches()) // if matches, keep
-					.collect(Collectors.toCollection(LinkedHashSet::new));
+			recipients.retainIf(n -> p.matcher(n).matches()); // if matches, keep
+			return recipients;
 		}
 
 		@Override
@@ -32,12 +28,10 @@ public enum FilterType {
 
 	EXCLUDE_REGEX {
 		@Override
-		public Set<CommuniqueRecipient> apply(Set<CommuniqueRecipient> recipients,
-		                                      CommuniqueRecipient provided) {
+		public RecipientSet apply(RecipientSet recipients, CommuniqueRecipient provided) {
 			Pattern p = Pattern.compile(provided.getName()); // make pattern from regex
-			return recipients.stream()
-					.filter(r -> !p.matcher(r.getName()).matches()) // if it matches, make false, so exclude
-					.collect(Collectors.toCollection(LinkedHashSet::new));
+			recipients.removeIf(n -> p.matcher(n).matches()); // if it matches, exclude
+			return recipients;
 		}
 
 		@Override
@@ -46,6 +40,39 @@ public enum FilterType {
 		}
 	},
 
+	/**
+	 * Keeps only nations with some attribute, e.g. <code>+attr:endorsements>=10</code> or
+	 * <code>+attr:category=left-wing</code>. The attributes which can be tested are given in {@link AttributeFilter}.
+	 */
+	REQUIRE_ATTRIBUTE {
+		@Override
+		public RecipientSet apply(RecipientSet recipients, CommuniqueRecipient provided) {
+			recipients.retainIf(AttributeFilter.of(provided).test(recipients.toList()));
+			return recipients;
+		}
+
+		@Override
+		public String toString() {
+			return "+attr";
+		}
+	},
+
+	/**
+	 * Excludes nations with some attribute, e.g. <code>-attr:delegate</code>.
+	 */
+	EXCLUDE_ATTRIBUTE {
+		@Override
+		public RecipientSet apply(RecipientSet recipients, CommuniqueRecipient provided) {
+			recipients.removeIf(AttributeFilter.of(provided).test(recipients.toList()));
+			return recipients;
+		}
+
+		@Override
+		public String toString() {
+			return "-attr";
+		}
+	},
+
 	// Note that the NORMAL type, because it does not have a prefix, must be kept last in order for parsing.
 	/**
 	 * Provides equivalent functionality to the <code>+</code> command used in NationStates and the <code>-></code>
@@ -54,13 +81,19 @@ public enum FilterType {
 	 */
 	INCLUDE {
 		@Override
-		public Set<CommuniqueRecipient> apply(Set<CommuniqueRecipient> recipients,
-		                                      CommuniqueRecipient provided) {
+		public RecipientSet apply(RecipientSet recipients, CommuniqueRecipient provided) {
 			// match by names, not by recipient type
-			Set<String> set = toSetDecompose(provided);
-			return recipients.stream()
-					.filter(r -> set.contains(r.getName())) // provided nation-set contains recipient name, keep
-					.collect(Collectors.toCollection(LinkedHashSet::new)); // ordered, remove duplicates
+			recipients.retainAll(provided.decomposeNames()); // provided nation-set contains recipient name, keep
+			return recipients;
+		}
+
+		/** Successive intersections are one intersection with all the provided nation-sets. */
+		@Override
+		public RecipientSet applyAll(RecipientSet recipients, List<CommuniqueRecipient> provided) {
+			List<List<String>> lists = new ArrayList<>(provided.size());
+			for (CommuniqueRecipient cr : provided) lists.add(cr.decomposeNames());
+			recipients.retainAllOf(lists);
+			return recipients;
 		}
 
 		@Override
@@ -75,12 +108,9 @@ public enum FilterType {
 	 */
 	EXCLUDE {
 		@Override
-		public Set<CommuniqueRecipient> apply(Set<CommuniqueRecipient> recipients,
-		                                      CommuniqueRecipient provided) {
-			Set<String> set = toSetDecompose(provided);
-			return recipients.stream()
-					.filter(r -> !set.contains(r.getName())) // provided nation-set contains recipient name, discard
-					.collect(Collectors.toCollection(LinkedHashSet::new)); // ordered, remove duplicates
+		public RecipientSet apply(RecipientSet recipients, CommuniqueRecipient provided) {
+			recipients.removeAll(provided.decomposeNames()); // provided nation-set contains recipient name, discard
+			return recipients;
 		}
 
 		@Override
@@ -99,9 +129,8 @@ public enum FilterType {
 	 */
 	NORMAL {
 		@Override
-		public Set<CommuniqueRecipient> apply(Set<CommuniqueRecipient> recipients,
-		                                      CommuniqueRecipient provided) {
-			recipients.addAll(provided.decompose());
+		public RecipientSet apply(RecipientSet recipients, CommuniqueRecipient provided) {
+			recipients.addAll(provided.decomposeNames());
 			return recipients;
 		}
 
@@ -114,18 +143,24 @@ public enum FilterType {
 	/**
 	 * Applies the provided <code>CommuniqueRecipient</code> to the provided recipients list. Without a provided
 	 * <code>enum</code> state, this defaults to {@link FilterType#NORMAL}.
-	 * @param recipients upon which the token is to be applied
+	 * @param recipients upon which the token is to be applied, which is modified in place
 	 * @param provided   token
 	 * @return recipients after the token is applied
 	 */
-	public abstract Set<CommuniqueRecipient> apply(Set<CommuniqueRecipient> recipients,
-	                                               CommuniqueRecipient provided);
-
-	private static Set<String> toSetDecompose(CommuniqueRecipient recipient) {
-		return recipient
-				.decompose().stream() // turn it into the raw recipients
-				.map(CommuniqueRecipient::getName) // get strings for matching
-				.collect(Collectors.toCollection(HashSet::new)); // for fast Set#contains()
+	public abstract RecipientSet apply(RecipientSet recipients, CommuniqueRecipient provided);
+
+	/**
+	 * Applies a run of consecutive tokens, all of this filter type, to the provided recipients list. The result is the
+	 * same as applying each in turn with {@link #apply(RecipientSet, CommuniqueRecipient)}, which is what this does by
+	 * default; types for which the run can be combined into one operation override it.
+	 * @param recipients upon which the tokens are to be applied, which is modified in place
+	 * @param provided   tokens, in order, all of this filter type
+	 * @return recipients after the tokens are applied
+	 */
+	public RecipientSet applyAll(RecipientSet recipients, List<CommuniqueRecipient> provided) {
+		for (CommuniqueRecipient cr : provided)
+			recipients = apply(recipients, cr);
+		return recipients;
 	}
 
 }
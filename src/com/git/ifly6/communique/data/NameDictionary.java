@@ -0,0 +1,86 @@
+package com.git.ifly6.communique.data;
+
+import java.util.Arrays;
+
+/**
+ * Maps reference names to dense integer identifiers, in the order in which they were first seen, so that sets of names
+ * can be held as arrays and bitmaps of those identifiers. The dictionary is an open-addressed hash table of identifiers
+ * beside an array of names, which is far more compact than a map of boxed values.
+ * @see RecipientSet
+ */
+class NameDictionary {
+
+	private String[] names = new String[64];
+	private int size = 0;
+
+	/** Open-addressed table holding identifier + 1 in each slot; zero marks an empty slot. */
+	private int[] table = new int[128];
+
+	/**
+	 * Gets the identifier of a name, assigning one if it is not yet in the dictionary.
+	 * @param name to look up
+	 * @return identifier
+	 */
+	int intern(String name) {
+		int slot = slot(name);
+		if (table[slot] != 0) return table[slot] - 1;
+
+		if (size == names.length) names = Arrays.copyOf(names, size * 2);
+		names[size] = name;
+		table[slot] = ++size;
+		if (size * 2 > table.length) rehash();
+		return size - 1;
+	}
+
+	/**
+	 * Gets the identifier of a name without assigning one.
+	 * @param name to look up
+	 * @return identifier, or <code>-1</code> if the name is not in the dictionary
+	 */
+	int find(String name) {
+		return table[slot(name)] - 1;
+	}
+
+	/**
+	 * @param id identifier
+	 * @return name with that identifier
+	 */
+	String name(int id) {
+		return names[id];
+	}
+
+	/**
+	 * @return number of names in the dictionary, which is also one more than the greatest identifier
+	 */
+	int size() {
+		return size;
+	}
+
+	/** Finds the slot holding a name, or the empty slot where it would go. */
+	private int slot(String name) {
+		int mask = table.length - 1;
+		int i = mix(name.hashCode()) & mask;
+		while (table[i] != 0 && !names[table[i] - 1].equals(name))
+			i = (i + 1) & mask;
+		return i;
+	}
+
+	private void rehash() {
+		int[] old = table;
+		table = new int[old.length * 2];
+		int mask = table.length - 1;
+		for (int entry : old) {
+			if (entry == 0) continue;
+			int i = mix(names[entry - 1].hashCode()) & mask;
+			while (table[i] != 0) i = (i + 1) & mask;
+			table[i] = entry;
+		}
+	}
+
+	/** Spreads hash bits, as string hashes of similar names differ mostly in their low bits. */
+	private static int mix(int h) {
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+}
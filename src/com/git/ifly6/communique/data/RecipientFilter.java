@@ -0,0 +1,93 @@
+package com.git.ifly6.communique.data;
+
+import com.git.ifly6.nsapi.telegram.JTelegramException;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Tests single nations against filter tokens, with the same result as applying the tokens with {@link
+ * Communique7Parser} to a recipients list holding only that nation, but without building a parser and recipients list
+ * for each nation. This is meant for recruiters, which test many nations, one at a time, against the same tokens.
+ * <p>
+ * The tokens are compiled once: nations excluded or included by name into sets, and regular expressions into
+ * patterns, so that testing a nation against them is a few lookups and matches however many tokens there are.
+ * Attribute tokens are tested last, and only on nations which pass everything else, as they may call the API. Tokens
+ * which add recipients, and tokens which are not on nations, are ignored.
+ * </p>
+ */
+public class RecipientFilter {
+
+	private final Set<String> excluded = new HashSet<>();
+	private final Set<String> included = new HashSet<>();
+	private final List<Pattern> requiredPatterns = new ArrayList<>();
+	private final List<Pattern> excludedPatterns = new ArrayList<>();
+	private final List<AttributeFilter> requiredAttributes = new ArrayList<>();
+	private final List<AttributeFilter> excludedAttributes = new ArrayList<>();
+
+	private RecipientFilter() {
+	}
+
+	/**
+	 * Compiles filter tokens.
+	 * @param tokens to compile
+	 * @return filter
+	 * @throws IllegalArgumentException if a regular expression or attribute is not valid
+	 */
+	public static RecipientFilter of(List<CommuniqueRecipient> tokens) {
+		RecipientFilter filter = new RecipientFilter();
+		for (CommuniqueRecipient token : tokens) {
+			if (token.getRecipientType() != RecipientType.NATION) continue;
+			switch (token.getFilterType()) {
+				case EXCLUDE:
+					filter.excluded.add(token.getName());
+					break;
+				case INCLUDE:
+					filter.included.add(token.getName());
+					break;
+				case REQUIRE_REGEX:
+					filter.requiredPatterns.add(Pattern.compile(token.getName()));
+					break;
+				case EXCLUDE_REGEX:
+					filter.excludedPatterns.add(Pattern.compile(token.getName()));
+					break;
+				case REQUIRE_ATTRIBUTE:
+					filter.requiredAttributes.add(AttributeFilter.of(token));
+					break;
+				case EXCLUDE_ATTRIBUTE:
+					filter.excludedAttributes.add(AttributeFilter.of(token));
+					break;
+				default: // additions do not filter
+			}
+		}
+		return filter;
+	}
+
+	/**
+	 * Tests whether a nation passes the filters.
+	 * @param nation reference name
+	 * @return true if it would remain in the recipients list
+	 * @throws JTelegramException if attributes cannot be fetched
+	 */
+	public boolean test(String nation) throws JTelegramException {
+		if (excluded.contains(nation)) return false;
+
+		// successive intersections with single nations leave a nation only if it is every one of them
+		if (!included.isEmpty() && (included.size() > 1 || !included.contains(nation))) return false;
+
+		for (Pattern p : requiredPatterns)
+			if (!p.matcher(nation).matches()) return false;
+		for (Pattern p : excludedPatterns)
+			if (p.matcher(nation).matches()) return false;
+
+		for (AttributeFilter a : requiredAttributes)
+			if (!a.test(nation)) return false;
+		for (AttributeFilter a : excludedAttributes)
+			if (a.test(nation)) return false;
+		return true;
+	}
+
+}
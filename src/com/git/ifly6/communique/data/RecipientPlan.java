@@ -0,0 +1,826 @@
+package com.git.ifly6.communique.data;
+
+import com.git.ifly6.nsapi.NSConnection;
+import com.git.ifly6.nsapi.NSRateLimiter;
+import com.git.ifly6.nsapi.telegram.JTelegramException;
+import com.git.ifly6.nsapi.telegram.util.JAttributeStore;
+import com.git.ifly6.nsapi.telegram.util.JInfoFetcher;
+import com.git.ifly6.nsapi.telegram.util.JRegionExpander;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Plans the evaluation of a list of recipient tokens, so that {@link Communique7Parser} does not fetch lists which
+ * cannot affect the result.
+ * <p>
+ * Tokens are evaluated in order against a running set, which is a union of each {@link FilterType#NORMAL} token with
+ * the filters following it. Because intersections, differences, and regular expressions distribute over that union,
+ * without changing its order, the plan is a list of branches: one for each normal token (and one for the recipients
+ * already in the parser), applying the filters which follow it. The filters are held once, in order, and each branch
+ * applies those from its own start, so that planning takes time and memory in proportion to the number of tokens.
+ * Then,
+ * </p>
+ * <ul>
+ * <li>filters before the first normal token, which act on an empty set, are dropped without being fetched;</li>
+ * <li>in a branch whose source is a list fetched from NationStates, which holds only nations which exist,
+ * <code>+tag:all</code> is dropped, as it changes nothing, and <code>-tag:all</code> empties the branch. Applied to
+ * nations named directly, or to the recipients already in the parser, both are applied as usual, as names may be of
+ * nations which do not exist;</li>
+ * <li>within a branch, regular expressions and nation tokens are applied first, then fetched operands from the
+ * smallest estimated size up, stopping once the branch is empty;</li>
+ * <li>attribute filters, which may need data on each nation, come last, so that they test as few nations as possible,
+ * and load the attributes of all of those at once; and</li>
+ * <li>operands used in several branches are fetched once, and branches with the same source and start are evaluated
+ * once.</li>
+ * </ul>
+ * <p>
+ * Nations can also be excluded from the result outright, after every token, which is how the sent list is applied
+ * without a token for each nation.
+ * </p>
+ * <p>
+ * Recipients can also be had as they are resolved, with {@link #stream(Consumer)}. For diagnosis, {@link #explain()}
+ * describes the plan without calling the API, and {@link #executeAnalyze(StringBuilder)} reports what each step
+ * actually cost.
+ * </p>
+ */
+class RecipientPlan {
+
+	/** Number of regions assumed to declare a region tag whose regions are not yet known. */
+	private static final int ASSUMED_TAG_REGIONS = 50;
+
+	private static final String EXPLAIN_FORMAT = "  %-44.44s %9s  %-8s %8s%n";
+	private static final String ANALYZE_FORMAT = "  %-44.44s %8s %6s %10s %8s %8s%n";
+
+	private final RecipientSet initial;
+	private final List<Branch> branches;
+	private final Filters filters;
+	private final int tokens;
+
+	/** Tokens which the plan does not apply, with the reason. */
+	private final Set<String> skipped;
+
+	/** Nations removed from the result after every token is applied. */
+	private final Set<String> excluded;
+
+	/** Listener to which progress in expanding region tags is reported. */
+	private JRegionExpander.ProgressListener progress = (done, total, eta) -> {
+	};
+
+	private RecipientPlan(RecipientSet initial, List<Branch> branches, Filters filters, int tokens,
+	                      Set<String> skipped, Set<String> excluded) {
+		this.initial = initial;
+		this.branches = branches;
+		this.filters = filters;
+		this.tokens = tokens;
+		this.skipped = skipped;
+		this.excluded = excluded;
+	}
+
+	/**
+	 * Plans the application of tokens to some recipients.
+	 * @param initial recipients to which tokens are applied, which are consumed by execution of the plan
+	 * @param tokens  to apply, in order
+	 * @return plan
+	 */
+	static RecipientPlan of(RecipientSet initial, List<CommuniqueRecipient> tokens) {
+		return of(initial, tokens, Collections.emptySet());
+	}
+
+	/**
+	 * Plans the application of tokens to some recipients, then the removal of some nations from the result.
+	 * @param initial  recipients to which tokens are applied, which are consumed by execution of the plan
+	 * @param tokens   to apply, in order
+	 * @param excluded reference names to remove from the result
+	 * @return plan
+	 */
+	static RecipientPlan of(RecipientSet initial, List<CommuniqueRecipient> tokens, Set<String> excluded) {
+		List<Branch> branches = new ArrayList<>();
+		Filters filters = new Filters();
+		Set<String> skipped = new LinkedHashSet<>();
+		if (initial.size() != 0) branches.add(new Branch(null, 0));
+
+		for (CommuniqueRecipient token : tokens) {
+			if (token.getFilterType() == FilterType.NORMAL) {
+				branches.add(new Branch(token, filters.size()));
+				continue;
+			}
+
+			// filters apply to every branch before them, which is every branch starting at or before them
+			if (branches.isEmpty()) skipped.add(token + ": filters no recipients");
+			else filters.add(token, skipped);
+		}
+
+		filters.seal();
+		for (Branch branch : branches)
+			branch.optimise(filters, skipped);
+		return new RecipientPlan(initial, branches, filters, tokens.size(), skipped, excluded);
+	}
+
+	/**
+	 * Sets listener to which progress in expanding region tags is reported, as each of their regions is fetched.
+	 * @param listener for progress
+	 * @return this plan
+	 */
+	RecipientPlan setListener(JRegionExpander.ProgressListener listener) {
+		this.progress = listener;
+		return this;
+	}
+
+	/**
+	 * Evaluates the plan.
+	 * @return new set of recipients, equal to that from applying the tokens in turn
+	 * @throws JTelegramException if a list cannot be fetched
+	 */
+	RecipientSet execute() throws JTelegramException {
+		return execute(null);
+	}
+
+	/**
+	 * Evaluates the plan, reporting for each step the time taken, API calls made, bytes read, and the number of
+	 * recipients before and after it. As lists may be fetched on other threads, API calls and bytes are those of the
+	 * whole process during the step.
+	 * @param report to which the report is appended
+	 * @return new set of recipients, equal to that from applying the tokens in turn
+	 * @throws JTelegramException if a list cannot be fetched
+	 */
+	RecipientSet executeAnalyze(StringBuilder report) throws JTelegramException {
+		Analysis analysis = new Analysis();
+		RecipientSet result = execute(analysis);
+		analysis.total(result.size());
+
+		report.append(String.format("Applied %d tokens in %d branches%n", tokens, branches.size()));
+		report.append(analysis.rows);
+		appendSkipped(report);
+		return result;
+	}
+
+	private RecipientSet execute(Analysis analysis) throws JTelegramException {
+		Map<String, List<String>> fetched = new HashMap<>();
+		Map<String, List<String>> evaluated = new HashMap<>();
+
+		RecipientSet result = new RecipientSet();
+		for (int i = 0; i < branches.size(); i++) {
+			Branch branch = branches.get(i);
+			String key = branch.identity();
+			List<String> names = evaluated.get(key);
+			if (analysis != null) analysis.header(i, branch.describe(filters), names != null);
+			if (names == null) {
+				names = branch.evaluate(initial, filters, fetched, progress, analysis);
+				evaluated.put(key, names);
+			}
+			result.addAll(names);
+		}
+
+		if (!excluded.isEmpty()) {
+			if (analysis != null) analysis.start(result.size());
+			result.removeIf(excluded::contains);
+			if (analysis != null) analysis.excluded(excluded.size(), result.size());
+		}
+		return result;
+	}
+
+	/**
+	 * Evaluates the plan, passing each recipient to a sink as soon as it is known, in the same order as {@link
+	 * #execute()} gives them. Branches are evaluated in turn; each fetches its filters first and then passes its source
+	 * through them as it arrives, so that, e.g., the nations of a region tag start to arrive once its first regions are
+	 * fetched. The initial recipients are read, not consumed.
+	 * @param sink to which recipients are passed
+	 * @throws JTelegramException if a list cannot be fetched
+	 */
+	void stream(Consumer<String> sink) throws JTelegramException {
+		Map<String, List<String>> fetched = new HashMap<>();
+		Set<String> evaluated = new HashSet<>();
+		RecipientSet passed = new RecipientSet();
+		for (Branch branch : branches) {
+			if (!evaluated.add(branch.identity())) continue; // gives nothing not already passed on
+			branch.stream(initial, filters, fetched, progress, name -> {
+				if (passed.contains(name) || excluded.contains(name)) return;
+				passed.add(name);
+				sink.accept(name);
+			});
+		}
+	}
+
+	/**
+	 * Describes the plan without executing it or calling the API. For each step, gives the API calls it is expected to
+	 * make, whether its list is instead had from the cache, the data dump, or an earlier step, and the time those calls
+	 * take at the rate limit.
+	 * @return description of plan
+	 */
+	String explain() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("Plan for %d tokens in %d branches%n", tokens, branches.size()));
+
+		Set<String> fetched = new HashSet<>();
+		Set<String> evaluated = new HashSet<>();
+		int calls = 0;
+		for (int i = 0; i < branches.size(); i++) {
+			Branch branch = branches.get(i);
+			sb.append(String.format("%nBranch %d: %s%n", i + 1, branch.describe(filters)));
+			if (!evaluated.add(branch.identity())) {
+				sb.append(String.format("  same as an earlier branch, not evaluated again%n"));
+				continue;
+			}
+			sb.append(String.format(EXPLAIN_FORMAT, "Step", "API calls", "Source", "Time"));
+			calls += branch.explain(sb, filters, fetched);
+		}
+
+		int burst = NSRateLimiter.instance().available();
+		long millis = (long) Math.max(0, calls - burst) * NSConnection.WAIT_TIME;
+		sb.append(String.format("%nTotal: about %d API calls, taking about %s (%d calls can be made at once)%n",
+				calls, seconds(millis), burst));
+		if (!excluded.isEmpty())
+			sb.append(String.format("Then excluding %d nations already sent to, without API calls%n", excluded.size()));
+		appendSkipped(sb);
+		return sb.toString();
+	}
+
+	private void appendSkipped(StringBuilder sb) {
+		if (skipped.isEmpty()) return;
+		sb.append(String.format("%nSkipped:%n"));
+		for (String s : skipped) sb.append("  ").append(s).append(System.lineSeparator());
+	}
+
+	/**
+	 * Estimates the API calls needed to fetch some operand, given the keys of operands fetched by earlier steps.
+	 * @return two elements: the number of calls and where the list comes from
+	 */
+	private static String[] estimateFetch(CommuniqueRecipient token, Set<String> fetched) {
+		if (!fetched.add(key(token))) return new String[] {"0", "reused"};
+
+		JInfoFetcher fetcher = JInfoFetcher.instance();
+		String name = token.getName();
+		switch (token.getRecipientType()) {
+			case NATION:
+				return new String[] {"0", "-"};
+
+			case REGION:
+				return fetcher.peekRegion(name) != null
+						? new String[] {"0", fetcher.getDumpIndex() != null ? "dump" : "cache"}
+						: new String[] {"1", "API"};
+
+			case REGION_TAG: {
+				List<String> regions = fetcher.peekRegionTag(name);
+				if (regions == null) return new String[] {"~" + (1 + ASSUMED_TAG_REGIONS), "API"};
+				int uncached = 0;
+				for (String region : regions)
+					if (fetcher.peekRegion(region) == null) uncached++;
+				return new String[] {String.valueOf(uncached), uncached == 0 ? "cache" : "API"};
+			}
+
+			case TAG:
+				if (name.equals("new")) return new String[] {"1", "API"};
+				return fetcher.hasWorldList(name)
+						? new String[] {"0", fetcher.getDumpIndex() != null ? "dump" : "cache"}
+						: new String[] {"1", "API"};
+
+			case FLAG:
+				return name.equals("active") ? new String[] {"1", "API"} : new String[] {"0", "-"};
+
+			default:
+				return new String[] {"0", "-"};
+		}
+	}
+
+	private static String seconds(long millis) {
+		return String.format("%.1f s", millis / 1000D);
+	}
+
+	/**
+	 * @return number of branches in the plan
+	 */
+	int size() {
+		return branches.size();
+	}
+
+	/**
+	 * Describes the plan, one branch per line, with operands in the order in which they are evaluated. For costs, see
+	 * {@link #explain()}.
+	 */
+	@Override
+	public String toString() {
+		return branches.stream().map(b -> b.describe(filters)).collect(Collectors.joining("\n"));
+	}
+
+	/**
+	 * Estimates the number of nations in some operand, to order evaluation. These are rough; all that matters is that
+	 * smaller lists, which are also cheaper to fetch, come before larger ones.
+	 */
+	static int estimate(CommuniqueRecipient token) {
+		switch (token.getRecipientType()) {
+			case NATION:
+				return 1;
+			case REGION:
+				return 1_000;
+			case REGION_TAG:
+				return 25_000;
+			case TAG:
+				if (token.getName().equals("new")) return 50;
+				if (token.getName().equals("delegates")) return 500;
+				if (token.getName().equals("wa")) return 30_000;
+				return 250_000;
+			default:
+				return 1_000;
+		}
+	}
+
+	private static boolean isAll(CommuniqueRecipient token) {
+		return token.getRecipientType() == RecipientType.TAG && token.getName().equals("all");
+	}
+
+	/** Key under which an operand is fetched, which ignores its filter type. */
+	private static String key(CommuniqueRecipient token) {
+		return token.getRecipientType() + ":" + token.getName();
+	}
+
+	/**
+	 * The filter tokens of a plan, in order, held once for all branches. Each branch applies those from some index on.
+	 * Nations excluded by name, which may run to thousands of tokens, are not listed but indexed by the last filter
+	 * excluding them, so that whether a branch excludes a nation is one lookup. Other filters are few, and listed.
+	 */
+	private static class Filters {
+
+		private final List<CommuniqueRecipient> tokens = new ArrayList<>();
+
+		/** For each nation excluded by name, the index of the last filter excluding it. */
+		private final Map<String, Integer> lastExcluded = new HashMap<>();
+
+		/** Indices of filters other than nation exclusions, in order. */
+		private final List<Integer> others = new ArrayList<>();
+
+		/** Number of nations excluded at or after each index, with one more element than there are filters. */
+		private int[] exclusionsFrom;
+
+		/** Index of the last filter excluding every nation, or <code>-1</code> if there is none. */
+		private int lastExcludesAll = -1;
+
+		private final Set<CommuniqueRecipient> seen = new HashSet<>();
+
+		private int size() {
+			return tokens.size();
+		}
+
+		private void add(CommuniqueRecipient token, Set<String> skipped) {
+			int index = tokens.size();
+			tokens.add(token);
+			if (!seen.add(token)) skipped.add(token + ": repeats an earlier filter, applied once");
+
+			switch (token.getFilterType()) {
+				case REQUIRE_ATTRIBUTE:
+				case EXCLUDE_ATTRIBUTE:
+					AttributeFilter.of(token); // reject invalid attributes before anything is fetched
+					others.add(index);
+					break;
+
+				case INCLUDE:
+					others.add(index);
+					break;
+
+				case EXCLUDE:
+					if (token.getRecipientType() == RecipientType.NATION) lastExcluded.put(token.getName(), index);
+					else others.add(index);
+					if (isAll(token)) lastExcludesAll = index;
+					break;
+
+				case REQUIRE_REGEX:
+				case EXCLUDE_REGEX:
+					others.add(index);
+					break;
+
+				default:
+					throw new IllegalArgumentException("Cannot filter by normal token " + token);
+			}
+		}
+
+		/** Counts the nations excluded from each index, once all filters are added. */
+		private void seal() {
+			exclusionsFrom = new int[tokens.size() + 1];
+			for (int i = tokens.size() - 1; i >= 0; i--) {
+				Integer last = lastExcluded.get(tokens.get(i).getName());
+				boolean lastExclusion = last != null && last == i; // so that each nation is counted once
+				exclusionsFrom[i] = exclusionsFrom[i + 1] + (lastExclusion ? 1 : 0);
+			}
+		}
+
+		/** @return filters other than nation exclusions from some index on, in order */
+		private List<CommuniqueRecipient> othersFrom(int start) {
+			int first = Collections.binarySearch(others, start);
+			if (first < 0) first = -first - 1;
+			List<CommuniqueRecipient> list = new ArrayList<>(others.size() - first);
+			for (int i = first; i < others.size(); i++) list.add(tokens.get(others.get(i)));
+			return list;
+		}
+
+		/** @return true if a filter from some index on excludes a nation by name */
+		private boolean excludes(String nation, int start) {
+			Integer last = lastExcluded.get(nation);
+			return last != null && last >= start;
+		}
+
+		private int exclusionsFrom(int start) {
+			return exclusionsFrom[start];
+		}
+
+		private boolean excludesAllFrom(int start) {
+			return lastExcludesAll >= start;
+		}
+	}
+
+	/**
+	 * A normal token, or the recipients already in the parser, with the filters following it, which are those from
+	 * some index in the shared {@link Filters}. The filters are sorted into the order in which they are applied only
+	 * while the branch is evaluated, so that the plan holds them once however many branches there are.
+	 */
+	private static class Branch {
+
+		/** Token generating the branch; <code>null</code> for the initial recipients. */
+		private final CommuniqueRecipient source;
+
+		/** Index of the first filter applying to this branch. */
+		private final int start;
+
+		/** Whether the branch is known to be empty without evaluating it. */
+		private boolean empty = false;
+
+		private Branch(CommuniqueRecipient source, int start) {
+			this.source = source;
+			this.start = start;
+		}
+
+		private void optimise(Filters filters, Set<String> skipped) {
+			if (!listsNations()) return; // names given directly may be of nations which do not exist
+			if (filters.excludesAllFrom(start)) {
+				empty = true;
+				skipped.add(key(source) + ": every nation excluded by -tag:all");
+			} else if (filters.othersFrom(start).stream().anyMatch(RecipientPlan::isAll))
+				skipped.add("+tag:all: changes no list fetched from NationStates");
+		}
+
+		/**
+		 * Determines whether the source of this branch is a list fetched from NationStates, which holds only nations
+		 * which exist, so that intersecting it with every nation changes nothing.
+		 */
+		private boolean listsNations() {
+			return source != null && source.getRecipientType() != RecipientType.NATION;
+		}
+
+		/** Sorts the filters of this branch, less <code>tag:all</code> where it is known to change nothing. */
+		private Steps steps(Filters filters) {
+			List<CommuniqueRecipient> others = filters.othersFrom(start);
+			if (listsNations()) others.removeIf(RecipientPlan::isAll); // -tag:all has emptied the branch already
+			return new Steps(others);
+		}
+
+		/**
+		 * Key identifying branches which give the same recipients, as they have the same source and the same filters.
+		 */
+		private String identity() {
+			if (empty) return "(empty)";
+			return (source == null ? "(current recipients)" : key(source)) + "@" + start;
+		}
+
+		private List<String> evaluate(RecipientSet initial, Filters filters, Map<String, List<String>> fetched,
+		                              JRegionExpander.ProgressListener progress, Analysis analysis) {
+			if (empty) return Collections.emptyList();
+			Steps steps = steps(filters);
+
+			RecipientSet set = source == null ? initial : new RecipientSet();
+			if (source != null) {
+				if (analysis != null) analysis.start(-1);
+				set.addAll(fetch(source, fetched, progress));
+				if (analysis != null) analysis.end(key(source), set.size());
+			}
+
+			for (CommuniqueRecipient regex : steps.regexes) {
+				if (analysis != null) analysis.start(set.size());
+				set = regex.getFilterType().apply(set, regex);
+				if (analysis != null) analysis.end(regex.toString(), set.size());
+			}
+			if (!steps.nationIncludes.isEmpty()) {
+				if (analysis != null) analysis.start(set.size());
+				set = FilterType.INCLUDE.applyAll(set, steps.nationIncludes);
+				if (analysis != null) analysis.end(describeNations(steps.nationIncludes), set.size());
+			}
+			int exclusions = filters.exclusionsFrom(start);
+			if (exclusions > 0) {
+				if (analysis != null) analysis.start(set.size());
+				set.removeIf(n -> filters.excludes(n, start));
+				if (analysis != null) analysis.end(describeExclusions(exclusions), set.size());
+			}
+
+			for (CommuniqueRecipient operand : steps.operands) {
+				if (set.size() == 0) break; // nothing further can change the result
+				if (analysis != null) analysis.start(set.size());
+				if (operand.getFilterType() == FilterType.INCLUDE) set.retainAll(fetch(operand, fetched, progress));
+				else set.removeAll(fetch(operand, fetched, progress));
+				if (analysis != null) analysis.end(operand.toString(), set.size());
+			}
+
+			for (CommuniqueRecipient attribute : steps.attributes) {
+				if (set.size() == 0) break;
+				if (analysis != null) analysis.start(set.size());
+				Predicate<String> test = AttributeFilter.of(attribute)
+						.test(set.toList(), new JAttributeStore.FetchLimit(regions()));
+				if (attribute.getFilterType() == FilterType.REQUIRE_ATTRIBUTE) set.retainIf(test);
+				else set.removeIf(test);
+				if (analysis != null) analysis.end(attribute.toString(), set.size());
+			}
+			return set.toList();
+		}
+
+		/**
+		 * Passes the recipients in this branch to a sink, in order, as its source is fetched. Attribute filters are
+		 * tested on each part of the source as it arrives, each with one limit on nations fetched for the whole source,
+		 * made once the first part has arrived, when the regions of a region tag are known.
+		 */
+		private void stream(RecipientSet initial, Filters filters, Map<String, List<String>> fetched,
+		                    JRegionExpander.ProgressListener progress, Consumer<String> sink) {
+			if (empty) return;
+			Steps steps = steps(filters);
+
+			Predicate<String> filter = toPredicate(steps, filters, fetched, progress);
+			List<JAttributeStore.FetchLimit> limits = new ArrayList<>();
+			Consumer<List<String>> chunks = names -> {
+				if (limits.isEmpty())
+					for (int i = 0; i < steps.attributes.size(); i++)
+						limits.add(new JAttributeStore.FetchLimit(regions()));
+				List<String> kept = new ArrayList<>();
+				for (String name : names)
+					if (filter.test(name)) kept.add(name);
+				for (int i = 0; i < steps.attributes.size(); i++) {
+					if (kept.isEmpty()) return;
+					CommuniqueRecipient attribute = steps.attributes.get(i);
+					Predicate<String> test = AttributeFilter.of(attribute).test(kept, limits.get(i));
+					kept.removeIf(attribute.getFilterType() == FilterType.REQUIRE_ATTRIBUTE ? test.negate() : test);
+				}
+				kept.forEach(sink);
+			};
+
+			if (source == null) chunks.accept(initial.toList());
+			else if (fetched.containsKey(key(source))) chunks.accept(fetched.get(key(source)));
+			else {
+				List<String> names = new ArrayList<>();
+				source.getRecipientType().streamNames(source, chunk -> {
+					names.addAll(chunk);
+					chunks.accept(chunk);
+				}, progress);
+				fetched.put(key(source), names);
+			}
+		}
+
+		/**
+		 * @return reference names of the regions whose nations make up the source, if it is a region or a region tag
+		 * whose regions are known, so that attributes may be read from their census rankings; otherwise empty
+		 */
+		private List<String> regions() {
+			if (!regionSource()) return Collections.emptyList();
+			if (source.getRecipientType() == RecipientType.REGION)
+				return Collections.singletonList(source.getName());
+			List<String> regions = JInfoFetcher.instance().peekRegionTag(source.getName());
+			return regions == null ? Collections.emptyList() : regions;
+		}
+
+		/**
+		 * @return true if the source is a region or a region tag
+		 */
+		private boolean regionSource() {
+			return source != null && (source.getRecipientType() == RecipientType.REGION
+					|| source.getRecipientType() == RecipientType.REGION_TAG);
+		}
+
+		/**
+		 * Fetches the filters of this branch and combines them into one test, which passes the names which applying
+		 * those filters would keep.
+		 */
+		private Predicate<String> toPredicate(Steps steps, Filters filters, Map<String, List<String>> fetched,
+		                                      JRegionExpander.ProgressListener progress) {
+			List<Predicate<String>> tests = new ArrayList<>();
+			for (CommuniqueRecipient regex : steps.regexes) {
+				Pattern p = Pattern.compile(regex.getName());
+				tests.add(regex.getFilterType() == FilterType.REQUIRE_REGEX
+						? n -> p.matcher(n).matches()
+						: n -> !p.matcher(n).matches());
+			}
+			for (CommuniqueRecipient nation : steps.nationIncludes)
+				tests.add(nation.getName()::equals);
+			if (filters.exclusionsFrom(start) > 0)
+				tests.add(n -> !filters.excludes(n, start));
+			for (CommuniqueRecipient operand : steps.operands) {
+				Set<String> names = new HashSet<>(fetch(operand, fetched, progress));
+				tests.add(operand.getFilterType() == FilterType.INCLUDE
+						? names::contains
+						: n -> !names.contains(n));
+			}
+
+			return n -> {
+				for (Predicate<String> test : tests)
+					if (!test.test(n)) return false;
+				return true;
+			};
+		}
+
+		/**
+		 * Appends the estimated cost of each step of the branch to a description of the plan.
+		 * @return number of API calls expected
+		 */
+		private int explain(StringBuilder sb, Filters filters, Set<String> fetched) {
+			if (empty) return 0;
+			Steps steps = steps(filters);
+
+			int calls = 0;
+			if (source != null) calls += explainFetch(sb, key(source), source, fetched);
+			for (CommuniqueRecipient regex : steps.regexes)
+				sb.append(String.format(EXPLAIN_FORMAT, regex, 0, "-", seconds(0)));
+			if (!steps.nationIncludes.isEmpty())
+				sb.append(String.format(EXPLAIN_FORMAT, describeNations(steps.nationIncludes), 0, "-", seconds(0)));
+			int exclusions = filters.exclusionsFrom(start);
+			if (exclusions > 0)
+				sb.append(String.format(EXPLAIN_FORMAT, describeExclusions(exclusions), 0, "-", seconds(0)));
+			for (CommuniqueRecipient operand : steps.operands)
+				calls += explainFetch(sb, operand.toString(), operand, fetched);
+			for (CommuniqueRecipient attribute : steps.attributes)
+				calls += explainAttribute(sb, attribute, regionSource(), fetched);
+			return calls;
+		}
+
+		/**
+		 * Appends the estimated cost of an attribute filter. Filters on the world lists cost as fetching the list;
+		 * others cost nothing for nations in the data dump and one call per nation otherwise, which is not counted, as
+		 * the number of nations is not known until the branch is evaluated. Without the dump, the limit on the number
+		 * of nations fetched is noted, as is reading the attribute from the census rankings of the source's regions.
+		 */
+		private static int explainAttribute(StringBuilder sb, CommuniqueRecipient token, boolean regionSource,
+		                                    Set<String> fetched) {
+			AttributeFilter filter = AttributeFilter.of(token);
+			if (filter.needsNationData()) {
+				boolean dump = JInfoFetcher.instance().getDumpIndex() != null;
+				sb.append(String.format(EXPLAIN_FORMAT, token, dump ? "0" : "1/nation", dump ? "dump" : "API", "-"));
+				if (!dump && regionSource && filter.isRanked())
+					sb.append(String.format("    or 1 per %d nations of the regions, from their census rankings, if "
+							+ "fewer%n", JAttributeStore.RANKS_PER_REQUEST));
+				if (!dump)
+					sb.append(String.format("    fails if over %d calls are needed; load a data dump%n",
+							JAttributeStore.MAX_FETCHES));
+				return 0;
+			}
+			return explainFetch(sb, token.toString(),
+					new CommuniqueRecipient(FilterType.INCLUDE, RecipientType.TAG, filter.worldList()), fetched);
+		}
+
+		private static int explainFetch(StringBuilder sb, String step, CommuniqueRecipient token,
+		                                Set<String> fetched) {
+			String[] estimate = estimateFetch(token, fetched);
+			int calls = Integer.parseInt(estimate[0].replace("~", ""));
+			sb.append(String.format(EXPLAIN_FORMAT, step, estimate[0], estimate[1],
+					seconds((long) calls * NSConnection.WAIT_TIME)));
+			return calls;
+		}
+
+		private static String describeNations(List<CommuniqueRecipient> nations) {
+			return nations.size() == 1
+					? nations.get(0).toString()
+					: String.format("%s%d nations", nations.get(0).getFilterType(), nations.size());
+		}
+
+		private static String describeExclusions(int count) {
+			return String.format("%s%d nation%s", FilterType.EXCLUDE, count, count == 1 ? "" : "s");
+		}
+
+		private static List<String> fetch(CommuniqueRecipient token, Map<String, List<String>> fetched,
+		                                  JRegionExpander.ProgressListener progress) {
+			String key = key(token);
+			List<String> names = fetched.get(key);
+			if (names == null) {
+				List<String> list = new ArrayList<>();
+				token.getRecipientType().streamNames(token, list::addAll, progress);
+				names = list;
+				fetched.put(key, names);
+			}
+			return names;
+		}
+
+		/**
+		 * Describes the branch, e.g. <code>region:europe +tag:wa -2 nations</code>, with filters in the order in which
+		 * they are applied.
+		 */
+		private String describe(Filters filters) {
+			if (empty) return "(empty)";
+			Steps steps = steps(filters);
+
+			List<String> parts = new ArrayList<>();
+			parts.add(source == null ? "(current recipients)" : key(source));
+			for (CommuniqueRecipient t : steps.regexes) parts.add(t.toString());
+			for (CommuniqueRecipient t : steps.nationIncludes) parts.add(t.toString());
+			int exclusions = filters.exclusionsFrom(start);
+			if (exclusions > 0) parts.add(describeExclusions(exclusions));
+			for (CommuniqueRecipient t : steps.operands) parts.add(t.toString());
+			for (CommuniqueRecipient t : steps.attributes) parts.add(t.toString());
+			return String.join(" ", parts);
+		}
+	}
+
+	/**
+	 * The filters of a branch, other than nation exclusions, sorted into the order in which they are applied: regular
+	 * expressions and nations first, then fetched operands from the smallest estimated size up, then attributes. Each
+	 * distinct filter is applied once.
+	 */
+	private static class Steps {
+
+		private final List<CommuniqueRecipient> regexes = new ArrayList<>();
+		private final List<CommuniqueRecipient> nationIncludes = new ArrayList<>();
+		private final List<CommuniqueRecipient> operands = new ArrayList<>();
+		private final List<CommuniqueRecipient> attributes = new ArrayList<>();
+
+		private Steps(List<CommuniqueRecipient> filters) {
+			for (CommuniqueRecipient token : new LinkedHashSet<>(filters)) {
+				switch (token.getFilterType()) {
+					case REQUIRE_REGEX:
+					case EXCLUDE_REGEX:
+						regexes.add(token);
+						break;
+					case REQUIRE_ATTRIBUTE:
+					case EXCLUDE_ATTRIBUTE:
+						attributes.add(token);
+						break;
+					case INCLUDE:
+						if (token.getRecipientType() == RecipientType.NATION) nationIncludes.add(token);
+						else operands.add(token);
+						break;
+					default: // other exclusions
+						operands.add(token);
+				}
+			}
+			operands.sort(Comparator.comparingInt(RecipientPlan::estimate)); // stable, so ties keep token order
+		}
+	}
+
+	/**
+	 * Measures each step of an execution for {@link #executeAnalyze(StringBuilder)}.
+	 */
+	private static class Analysis {
+
+		private final StringBuilder rows = new StringBuilder();
+
+		private final long createdNanos = System.nanoTime();
+		private final long createdRequests = NSConnection.getRequestCount();
+		private final long createdBytes = NSConnection.getBytesRead();
+
+		private long startNanos;
+		private long startRequests;
+		private long startBytes;
+		private int in;
+
+		private void header(int index, String branch, boolean reused) {
+			rows.append(String.format("%nBranch %d: %s%n", index + 1, branch));
+			if (reused) rows.append(String.format("  same as an earlier branch, not evaluated again%n"));
+			else rows.append(String.format(ANALYZE_FORMAT, "Step", "Time", "Calls", "Bytes", "In", "Out"));
+		}
+
+		/**
+		 * Starts measuring a step.
+		 * @param in number of recipients before the step, or <code>-1</code> if not applicable
+		 */
+		private void start(int in) {
+			this.in = in;
+			startNanos = System.nanoTime();
+			startRequests = NSConnection.getRequestCount();
+			startBytes = NSConnection.getBytesRead();
+		}
+
+		private void end(String step, int out) {
+			append(step, startNanos, startRequests, startBytes, in < 0 ? "" : String.valueOf(in), out);
+		}
+
+		private void excluded(int count, int out) {
+			rows.append(System.lineSeparator());
+			end(String.format("excluding %d sent nations", count), out);
+		}
+
+		private void total(int out) {
+			rows.append(System.lineSeparator());
+			append("Total", createdNanos, createdRequests, createdBytes, "", out);
+		}
+
+		private void append(String step, long nanos, long requests, long bytes, String in, int out) {
+			rows.append(String.format(ANALYZE_FORMAT, step,
+					seconds(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - nanos)),
+					NSConnection.getRequestCount() - requests,
+					NSConnection.getBytesRead() - bytes,
+					in, out));
+		}
+	}
+
+}
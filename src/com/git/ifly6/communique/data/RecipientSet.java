@@ -0,0 +1,143 @@
+package com.git.ifly6.communique.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * An ordered set of nation reference names, used by {@link Communique7Parser} to hold recipients while tokens are
+ * applied. Each name is interned to an integer identifier in a dictionary; the set holds those identifiers in insertion
+ * order in an array, and membership in a bitmap. Union, intersection, and difference with lists of names are therefore
+ * bitmap operations, and world-sized lists take a few megabytes rather than an object per nation.
+ * <p>
+ * As with a <code>LinkedHashSet</code>, adding a name already present does not change its position, while a name
+ * removed and added again moves to the end.
+ * </p>
+ */
+public class RecipientSet {
+
+	private final NameDictionary dictionary = new NameDictionary();
+
+	/** Identifiers of members in insertion order. Holds exactly the members of {@link #members}. */
+	private int[] order = new int[64];
+	private int size = 0;
+	private final BitSet members = new BitSet();
+
+	/**
+	 * Creates an empty set.
+	 */
+	public RecipientSet() {
+	}
+
+	/**
+	 * Adds a name to the end of the set, if it is not already present.
+	 * @param name to add
+	 */
+	public void add(String name) {
+		int id = dictionary.intern(name);
+		if (members.get(id)) return;
+		members.set(id);
+		if (size == order.length) order = Arrays.copyOf(order, size * 2);
+		order[size++] = id;
+	}
+
+	/**
+	 * Adds names to the end of the set, in order, if they are not already present.
+	 * @param names to add
+	 */
+	public void addAll(Collection<String> names) {
+		for (String name : names) add(name);
+	}
+
+	/**
+	 * Removes all names which are not in some collection.
+	 * @param names to retain
+	 */
+	public void retainAll(Collection<String> names) {
+		members.and(toBits(names));
+		compact();
+	}
+
+	/**
+	 * Removes all names in some collection.
+	 * @param names to remove
+	 */
+	public void removeAll(Collection<String> names) {
+		members.andNot(toBits(names));
+		compact();
+	}
+
+	/**
+	 * Removes all names which are not in every one of some collections. This is the same as calling
+	 * {@link #retainAll(Collection)} with each, but passes over the set only once.
+	 * @param lists of names to retain
+	 */
+	public void retainAllOf(Collection<? extends Collection<String>> lists) {
+		for (Collection<String> names : lists) members.and(toBits(names));
+		compact();
+	}
+
+	/**
+	 * Removes all names which do not satisfy some predicate.
+	 * @param predicate to test names
+	 */
+	public void retainIf(Predicate<String> predicate) {
+		removeIf(predicate.negate());
+	}
+
+	/**
+	 * Removes all names which satisfy some predicate.
+	 * @param predicate to test names
+	 */
+	public void removeIf(Predicate<String> predicate) {
+		for (int i = 0; i < size; i++)
+			if (predicate.test(dictionary.name(order[i]))) members.clear(order[i]);
+		compact();
+	}
+
+	public boolean contains(String name) {
+		int id = dictionary.find(name);
+		return id >= 0 && members.get(id);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return names in the set, in order
+	 */
+	public List<String> toList() {
+		List<String> list = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) list.add(dictionary.name(order[i]));
+		return list;
+	}
+
+	/**
+	 * Converts names to a bitmap of identifiers. Names not in the dictionary cannot be in the set, so are not interned.
+	 */
+	private BitSet toBits(Collection<String> names) {
+		BitSet bits = new BitSet(dictionary.size());
+		addBits(bits, names);
+		return bits;
+	}
+
+	private void addBits(BitSet bits, Collection<String> names) {
+		for (String name : names) {
+			int id = dictionary.find(name);
+			if (id >= 0) bits.set(id);
+		}
+	}
+
+	/** Removes identifiers no longer in {@link #members} from {@link #order}, preserving order. */
+	private void compact() {
+		int kept = 0;
+		for (int i = 0; i < size; i++)
+			if (members.get(order[i])) order[kept++] = order[i];
+		size = kept;
+	}
+
+}
@@ -3,12 +3,13 @@ package com.git.ifly6.communique.data;
 import com.git.ifly6.communique.io.HappeningsParser;
 import com.git.ifly6.nsapi.telegram.JTelegramException;
 import com.git.ifly6.nsapi.telegram.util.JInfoFetcher;
+import com.git.ifly6.nsapi.telegram.util.JRegionExpander;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 /**
  * Defines a number of recipient types and provides methods to decompose those types into lists of
@@ -25,6 +26,11 @@ public enum RecipientType {
 			return Collections.singletonList(cr);
 		}
 
+		@Override
+		public List<String> decomposeNames(CommuniqueRecipient cr) {
+			return Collections.singletonList(cr.getName());
+		}
+
 		@Override
 		public String toString() {
 			return this.name().toLowerCase();
@@ -39,14 +45,40 @@ public enum RecipientType {
 	REGION_TAG {
 		@Override
 		public List<CommuniqueRecipient> decompose(CommuniqueRecipient cr) throws JTelegramException {
+			return newRecipients(decomposeNames(cr), cr.getFilterType());
+		}
+
+		@Override
+		public List<String> decomposeNames(CommuniqueRecipient cr) throws JTelegramException {
+			List<String> list = new ArrayList<>();
+			streamNames(cr, list::addAll);
+			return list;
+		}
+
+		@Override
+		public void streamNames(CommuniqueRecipient cr, Consumer<List<String>> sink) throws JTelegramException {
+			streamNames(cr, sink, (done, total, eta) -> {
+			});
+		}
+
+		/** Passes each region's members on as soon as it and the regions before it are fetched. */
+		@Override
+		public void streamNames(CommuniqueRecipient cr, Consumer<List<String>> sink,
+		                        JRegionExpander.ProgressListener listener) throws JTelegramException {
 			// new 2020-04-04
 			List<String> regions = JInfoFetcher.instance().getRegionTag(cr.getName());
 			LOGGER.info(String.format("Tag %s: %d regions", cr.getName(), regions.size()));
-			return regions.stream()
-					.map(s -> new CommuniqueRecipient(cr.getFilterType(), RecipientType.REGION, s))
-					.map(CommuniqueRecipient::decompose)
-					.flatMap(List::stream)
-					.collect(Collectors.toList());
+
+			// fetch regions concurrently, subject to the shared rate limit
+			new JRegionExpander()
+					.setListener((done, total, eta) -> {
+						if (done % 25 == 0 || done == total)
+							LOGGER.info(String.format("Tag %s: expanded %d of %d regions, about %d s remaining",
+									cr.getName(), done, total, eta.getSeconds()));
+						listener.progress(done, total, eta);
+					})
+					.setConsumer((region, members) -> sink.accept(members))
+					.expand(regions);
 		}
 
 		@Override
@@ -62,9 +94,14 @@ public enum RecipientType {
 	REGION {
 		@Override
 		public List<CommuniqueRecipient> decompose(CommuniqueRecipient cr) throws JTelegramException {
+			return newRecipients(decomposeNames(cr), cr.getFilterType());
+		}
+
+		@Override
+		public List<String> decomposeNames(CommuniqueRecipient cr) throws JTelegramException {
 			List<String> regionMembers = JInfoFetcher.instance().getRegion(cr.getName());
 			LOGGER.info(String.format("Region %s: %d nations", cr.getName(), regionMembers.size()));
-			return newRecipients(regionMembers, cr.getFilterType());
+			return regionMembers;
 		}
 
 		@Override
@@ -80,12 +117,16 @@ public enum RecipientType {
 	TAG {
 		@Override
 		public List<CommuniqueRecipient> decompose(CommuniqueRecipient cr) throws JTelegramException {
+			return newRecipients(decomposeNames(cr), cr.getFilterType());
+		}
+
+		@Override
+		public List<String> decomposeNames(CommuniqueRecipient cr) throws JTelegramException {
 			String tag = cr.getName();
-			if (tag.equals("wa")) return newRecipients(JInfoFetcher.instance().getWAMembers(), cr.getFilterType());
-			if (tag.equals("delegates"))
-				return newRecipients(JInfoFetcher.instance().getDelegates(), cr.getFilterType());
-			if (tag.equals("new")) return newRecipients(JInfoFetcher.instance().getNew(), cr.getFilterType());
-			if (tag.equals("all")) return newRecipients(JInfoFetcher.instance().getAll(), cr.getFilterType());
+			if (tag.equals("wa")) return JInfoFetcher.instance().getWAMembers();
+			if (tag.equals("delegates")) return JInfoFetcher.instance().getDelegates();
+			if (tag.equals("new")) return JInfoFetcher.instance().getNew();
+			if (tag.equals("all")) return JInfoFetcher.instance().getAll();
 			throw new JTelegramException("Invalid flag: \"" + cr.toString() + "\"");
 		}
 
@@ -129,6 +170,44 @@ public enum RecipientType {
 	 */
 	public abstract List<CommuniqueRecipient> decompose(CommuniqueRecipient cr);
 
+	/**
+	 * Decomposes a tag into a list of nation reference names. Types which decompose into lists of names fetched from
+	 * the API override this to return those lists directly, rather than creating a <code>CommuniqueRecipient</code> for
+	 * each nation only to discard it.
+	 * @param cr to be decomposed
+	 * @return a list of nation reference names
+	 */
+	public List<String> decomposeNames(CommuniqueRecipient cr) {
+		List<CommuniqueRecipient> recipients = decompose(cr);
+		List<String> names = new ArrayList<>(recipients.size());
+		for (CommuniqueRecipient r : recipients) names.add(r.getName());
+		return names;
+	}
+
+	/**
+	 * Decomposes a tag into nation reference names, passing them on in order as they are resolved. Types whose lists
+	 * are fetched in parts override this to pass on each part as soon as it arrives; by default, the whole list from
+	 * {@link #decomposeNames(CommuniqueRecipient)} is passed on at once.
+	 * @param cr   to be decomposed
+	 * @param sink to which lists of names are passed, in order
+	 */
+	public void streamNames(CommuniqueRecipient cr, Consumer<List<String>> sink) {
+		sink.accept(decomposeNames(cr));
+	}
+
+	/**
+	 * Decomposes a tag into nation reference names, as {@link #streamNames(CommuniqueRecipient, Consumer)} does,
+	 * reporting progress to a listener as its parts are fetched. Only region tags, which are fetched region by region,
+	 * report progress.
+	 * @param cr       to be decomposed
+	 * @param sink     to which lists of names are passed, in order
+	 * @param listener to which progress is reported
+	 */
+	public void streamNames(CommuniqueRecipient cr, Consumer<List<String>> sink,
+	                        JRegionExpander.ProgressListener listener) {
+		streamNames(cr, sink);
+	}
+
 	/**
 	 * Translates a list of nation reference names into a list of valid <code>CommuniqueRecipient</code>s.
 	 * @param list       of nation reference names
@@ -0,0 +1,134 @@
+package com.git.ifly6.communique.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link CommuniqueAutosaver} saves a configuration in the background whenever it changes, so that the program can
+ * checkpoint often without blocking the event dispatch thread or the sending thread on disc writes.
+ * <p>
+ * Changes are reported with {@link #changed()}. A save is made once no change has been reported for the delay given
+ * in the constructor, so that a burst of changes, such as typing, costs one save; but never later than the maximum
+ * delay after the first unsaved change, so that a steady stream of changes, such as sending, is still saved. Nothing
+ * is written if nothing has changed since the last save. Saves are made on one background thread with {@link
+ * CommuniqueLoader#save(CommuniqueConfig)}, which replaces the file atomically and compacts the send journal.
+ * </p>
+ */
+public class CommuniqueAutosaver implements Closeable {
+
+	private static final Logger LOGGER = Logger.getLogger(CommuniqueAutosaver.class.getName());
+
+	private final Path path;
+	private final Supplier<CommuniqueConfig> state;
+	private final long delay;
+	private final long maxDelay;
+
+	private final ScheduledExecutorService executor;
+	private final Object saving = new Object(); // held while saving, so that saves are not concurrent
+
+	private long changes = 0; // number of changes reported
+	private long saved = 0;   // number of changes reported when last saved
+	private long firstUnsaved;
+	private long deadline;
+	private ScheduledFuture<?> pending;
+	private boolean closed = false;
+
+	/**
+	 * Creates an autosaver for some configuration file.
+	 * @param path     of configuration file
+	 * @param state    gives the configuration to save, called on the autosave thread
+	 * @param delay    after the last change at which to save
+	 * @param maxDelay after the first unsaved change by which to save, even if changes continue
+	 */
+	public CommuniqueAutosaver(Path path, Supplier<CommuniqueConfig> state, Duration delay, Duration maxDelay) {
+		this.path = path;
+		this.state = state;
+		this.delay = delay.toMillis();
+		this.maxDelay = Math.max(maxDelay.toMillis(), this.delay);
+		this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "CommuniqueAutosaver " + path.getFileName());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Reports that the configuration has changed, scheduling a save.
+	 */
+	public synchronized void changed() {
+		if (closed) return;
+		changes++;
+		long now = System.currentTimeMillis();
+		if (pending == null) {
+			firstUnsaved = now;
+			deadline = now + delay;
+			pending = executor.schedule(this::run, delay, TimeUnit.MILLISECONDS);
+		} else deadline = Math.min(now + delay, firstUnsaved + maxDelay);
+	}
+
+	/** Saves if the deadline has passed, or waits until it does. */
+	private void run() {
+		synchronized (this) {
+			if (closed) return;
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining > 0) {
+				pending = executor.schedule(this::run, remaining, TimeUnit.MILLISECONDS);
+				return;
+			}
+			pending = null;
+		}
+		save();
+	}
+
+	/**
+	 * Saves the configuration now, on the calling thread, if it has changed since it was last saved.
+	 * @return true if saved
+	 */
+	public boolean save() {
+		synchronized (saving) {
+			long count;
+			synchronized (this) {
+				if (changes == saved) return false;
+				count = changes;
+			}
+
+			try {
+				new CommuniqueLoader(path).save(state.get());
+				synchronized (this) {
+					saved = count;
+				}
+				LOGGER.fine(String.format("Autosaved to %s", path));
+				return true;
+
+			} catch (IOException | RuntimeException e) { // leave changes unsaved; the next change retries
+				LOGGER.log(Level.WARNING, "Cannot autosave to " + path, e);
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Stops autosaving, saving any unsaved changes on the calling thread.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (closed) return;
+			closed = true;
+			if (pending != null) pending.cancel(false);
+			pending = null;
+		}
+		executor.shutdown();
+		save(); // waits for any save in progress
+	}
+
+}
@@ -20,6 +20,8 @@ package com.git.ifly6.communique.io;
 import com.git.ifly6.communique.CommuniqueUtilities;
 import com.git.ifly6.communique.data.Communique7Parser;
 import com.git.ifly6.communique.data.CommuniqueRecipient;
+import com.git.ifly6.communique.data.FilterType;
+import com.git.ifly6.communique.data.RecipientType;
 import com.git.ifly6.nsapi.telegram.JTelegramKeys;
 import com.git.ifly6.nsapi.telegram.JTelegramType;
 
@@ -31,7 +33,8 @@ import java.util.stream.Collectors;
 
 /**
  * <code>CommuniqueConfig</code> creates a unified object for the storage and retrieval of configuration information
- * necessary to have persistent states between Communiqué or Marconi instances.
+ * necessary to have persistent states between Communiqué or Marconi instances. Recipients can be changed while the
+ * configuration is being saved on another thread, as by {@link CommuniqueAutosaver}.
  */
 public class CommuniqueConfig implements java.io.Serializable {
 
@@ -57,7 +60,10 @@ public class CommuniqueConfig implements java.io.Serializable {
 	 * string state representations to present to the programmer a {@link CommuniqueRecipient} API but actually store
 	 * everything in strings.</p>
 	 */
-	private ArrayList<String> cRecipients; // must be mutable, use ArrayList
+	private ArrayList<String> cRecipients; // must be mutable, use ArrayList; replaced, not changed, as it may be saved
+
+	/** Nations already sent to, which are kept in their own file rather than as tokens in this one. */
+	private transient CommuniqueSentList sentNations;
 
 	// These should be deprecated, but are kept for backward compatibility
 	public String[] recipients; // consider removing
@@ -102,7 +108,7 @@ public class CommuniqueConfig implements java.io.Serializable {
 	 * Returns converted <code>cRecipients</code> to <code>List&lt;CommuniqueRecipient&gt;</code>
 	 * @return <code>cRecipients</code> converted to <code>List&lt;CommuniqueRecipient&gt;</code>
 	 */
-	public List<CommuniqueRecipient> getcRecipients() {
+	public synchronized List<CommuniqueRecipient> getcRecipients() {
 		if (cRecipients == null) return null; // deal with null case
 
 		// use imperative for speed
@@ -116,7 +122,7 @@ public class CommuniqueConfig implements java.io.Serializable {
 	 * Returns raw <code>cRecipients</code>, which is <code>List&lt;String&gt;</code>
 	 * @return <code>cRecipients</code>
 	 */
-	public List<String> getcRecipientsString() {
+	public synchronized List<String> getcRecipientsString() {
 		return cRecipients;
 	}
 
@@ -125,7 +131,7 @@ public class CommuniqueConfig implements java.io.Serializable {
 	 * <code>String</code> on the fly.
 	 * @param crs {@link CommuniqueRecipient}s to set
 	 */
-	public void setcRecipients(List<CommuniqueRecipient> crs) {
+	public synchronized void setcRecipients(List<CommuniqueRecipient> crs) {
 		// NOTE: No setcRecipients(List<String> crs) because need for verification
 		// use imperative for speed
 		ArrayList<String> list = new ArrayList<>(crs.size());
@@ -134,8 +140,58 @@ public class CommuniqueConfig implements java.io.Serializable {
 		cRecipients = list;
 	}
 
-	public void addcRecipient(CommuniqueRecipient cr) {
-		cRecipients.add(cr.toString());
+	/**
+	 * Sets raw <code>cRecipients</code> as read from file, without parsing them, so that loading a long list does not
+	 * parse each token twice. Tokens are parsed when {@link #getcRecipients()} is called.
+	 * @param list of tokens as strings
+	 */
+	synchronized void setcRecipientsString(ArrayList<String> list) {
+		cRecipients = list;
+	}
+
+	public synchronized void addcRecipient(CommuniqueRecipient cr) {
+		ArrayList<String> list = new ArrayList<>(cRecipients); // copy, as the old list may be being saved
+		list.add(cr.toString());
+		cRecipients = list;
+	}
+
+	/**
+	 * Returns the nations already sent to, which should be excluded from recipients.
+	 * @return sent list, which is saved beside the configuration file
+	 * @see CommuniqueSentList
+	 */
+	public CommuniqueSentList getSentList() {
+		if (sentNations == null) sentNations = new CommuniqueSentList();
+		return sentNations;
+	}
+
+	public void setSentList(CommuniqueSentList sentList) {
+		this.sentNations = sentList;
+	}
+
+	/**
+	 * Moves the nations sent to by versions before 13, which appended a <code>-nation:</code> token to {@link
+	 * CommuniqueConfig#cRecipients} for each, to the sent list. Only the run of such tokens at the end of the list is
+	 * moved. An exclusion followed by other tokens was written by hand, and as it applies only to the tokens before it,
+	 * moving it to the sent list, which applies after every token, would change the recipients. Files from version 13
+	 * on keep their sent list separately, and are not changed.
+	 * @return number of tokens moved
+	 */
+	synchronized int moveExclusionsToSentList() {
+		if (cRecipients == null || version >= 13) return 0;
+		String prefix = FilterType.EXCLUDE.toString() + RecipientType.NATION + ":";
+
+		int end = cRecipients.size();
+		int start = end;
+		while (start > 0 && cRecipients.get(start - 1).startsWith(prefix)) start--;
+		if (start == end) return 0;
+
+		List<String> excluded = new ArrayList<>(end - start);
+		for (String s : cRecipients.subList(start, end))
+			excluded.add(CommuniqueRecipient.parseRecipient(s).getName());
+		getSentList().addAll(excluded);
+		cRecipients = new ArrayList<>(cRecipients.subList(0, start));
+		return end - start;
 	}
 
 	/**
@@ -160,7 +216,7 @@ public class CommuniqueConfig implements java.io.Serializable {
 	 * and the <code>sentList</code>. It also updates the <code>CommuniqueConfig</code> version <i>field</i>, not the
 	 * one in the header, to the version of the program on which it was saved.
 	 */
-	void clean() {
+	synchronized void clean() {
 		version = this.defaultVersion(); // updates version
 
 		// proceeds to clean all of the fields
@@ -0,0 +1,260 @@
+package com.git.ifly6.communique.io;
+
+import com.git.ifly6.communique.data.CommuniqueRecipient;
+import com.git.ifly6.communique.data.CommuniqueRecipients;
+import com.git.ifly6.communique.data.FilterType;
+import com.git.ifly6.nsapi.telegram.JTelegramKeys;
+import com.git.ifly6.nsapi.telegram.JTelegramType;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Reads and writes {@link CommuniqueConfig} field by field with Gson's streaming {@link JsonReader} and {@link
+ * JsonWriter}, so that a configuration with a long recipients list is never held in memory as one string or as a tree
+ * of JSON elements. Files are written with the same fields, in the same order, as Gson would write them by reflection,
+ * so they remain readable by older versions.
+ * <p>
+ * Reading is one pass over the file. Fields which older versions wrote, but which are no longer kept, are translated
+ * as they are read: the version 7 <code>isRandomised</code> flag to {@link CommuniqueProcessingAction#RANDOMISE}, the
+ * <code>isRecruitment</code> flag of versions before 12 to {@link JTelegramType#RECRUIT}, and the separate recipients
+ * and sent lists of versions before 7 to tokens. Unknown fields are skipped.
+ * </p>
+ */
+@SuppressWarnings("deprecation") // translates deprecated tokens
+class CommuniqueConfigAdapter extends TypeAdapter<CommuniqueConfig> {
+
+	@Override
+	public void write(JsonWriter out, CommuniqueConfig config) throws IOException {
+		if (config == null) {
+			out.nullValue();
+			return;
+		}
+
+		out.beginObject();
+		out.name("version").value(config.version);
+		out.name("isRecruitment").value(config.isRecruitment);
+		out.name("processingAction").value(config.processingAction == null ? null : config.processingAction.name());
+		out.name("keys");
+		writeKeys(out, config.keys);
+		out.name("telegramType").value(config.telegramType == null ? null : config.telegramType.name());
+		out.name("waitString").value(config.waitString);
+		out.name("cRecipients");
+		writeStrings(out, config.getcRecipientsString());
+		out.name("recipients");
+		writeStrings(out, config.recipients == null ? null : asList(config.recipients));
+		out.name("sentList");
+		writeStrings(out, config.sentList == null ? null : asList(config.sentList));
+		out.endObject();
+	}
+
+	private static void writeKeys(JsonWriter out, JTelegramKeys keys) throws IOException {
+		if (keys == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginObject();
+		out.name("clientKey").value(keys.getClientKey());
+		out.name("secretKey").value(keys.getSecretKey());
+		out.name("telegramId").value(keys.getTelegramId());
+		out.endObject();
+	}
+
+	private static void writeStrings(JsonWriter out, List<String> list) throws IOException {
+		if (list == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginArray();
+		for (String s : list) out.value(s);
+		out.endArray();
+	}
+
+	@Override
+	public CommuniqueConfig read(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+
+		CommuniqueConfig config = new CommuniqueConfig(); // defaults for any fields not in the file
+		boolean isRandomised = false;
+
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (in.peek() == JsonToken.NULL) { // null fields are read as null, as by Gson
+				in.nextNull();
+				setNull(config, name);
+				continue;
+			}
+
+			switch (name) {
+				case "version":
+					config.version = in.nextInt();
+					break;
+				case "isRecruitment":
+					config.isRecruitment = in.nextBoolean();
+					break;
+				case "isRandomised": // version 7 only
+					isRandomised = in.nextBoolean();
+					break;
+				case "processingAction":
+					config.processingAction = readEnum(CommuniqueProcessingAction.class, in.nextString());
+					break;
+				case "keys":
+					config.keys = readKeys(in);
+					break;
+				case "telegramType":
+					config.telegramType = readEnum(JTelegramType.class, in.nextString());
+					break;
+				case "waitString":
+					config.waitString = in.nextString();
+					break;
+				case "cRecipients":
+					config.setcRecipientsString(readStrings(in));
+					break;
+				case "recipients":
+					config.recipients = readStrings(in).toArray(new String[0]);
+					break;
+				case "sentList":
+					config.sentList = readStrings(in).toArray(new String[0]);
+					break;
+				default:
+					in.skipValue();
+			}
+		}
+		in.endObject();
+
+		// Fields may come in any order, so translate old fields only once all are read
+		if (config.version == 7 && isRandomised)
+			config.processingAction = CommuniqueProcessingAction.RANDOMISE;
+		if (config.version <= 11 && config.isRecruitment)
+			config.telegramType = JTelegramType.RECRUIT;
+		if (config.version < 7)
+			unifySendList(config);
+
+		return config;
+	}
+
+	private static void setNull(CommuniqueConfig config, String name) {
+		switch (name) {
+			case "processingAction":
+				config.processingAction = null;
+				break;
+			case "keys":
+				config.keys = null;
+				break;
+			case "telegramType":
+				config.telegramType = null;
+				break;
+			case "waitString":
+				config.waitString = null;
+				break;
+			case "cRecipients":
+				config.setcRecipientsString(null);
+				break;
+			case "recipients":
+				config.recipients = null;
+				break;
+			case "sentList":
+				config.sentList = null;
+				break;
+			default: // primitives and unknown fields are left alone
+		}
+	}
+
+	private static JTelegramKeys readKeys(JsonReader in) throws IOException {
+		JTelegramKeys defaults = new JTelegramKeys();
+		String clientKey = defaults.getClientKey();
+		String secretKey = defaults.getSecretKey();
+		String telegramId = defaults.getTelegramId();
+
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			String value = null;
+			if (in.peek() == JsonToken.NULL) in.nextNull();
+			else if (name.equals("clientKey") || name.equals("secretKey") || name.equals("telegramId"))
+				value = in.nextString();
+			else {
+				in.skipValue();
+				continue;
+			}
+
+			if (name.equals("clientKey")) clientKey = value;
+			else if (name.equals("secretKey")) secretKey = value;
+			else if (name.equals("telegramId")) telegramId = value;
+		}
+		in.endObject();
+		return new JTelegramKeys(clientKey, secretKey, telegramId);
+	}
+
+	private static ArrayList<String> readStrings(JsonReader in) throws IOException {
+		ArrayList<String> list = new ArrayList<>();
+		in.beginArray();
+		while (in.hasNext()) {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				list.add(null);
+			} else list.add(in.nextString());
+		}
+		in.endArray();
+		return list;
+	}
+
+	/** Gets an enum constant by name, or <code>null</code> if it does not exist, as Gson does. */
+	private static <E extends Enum<E>> E readEnum(Class<E> type, String name) {
+		try {
+			return Enum.valueOf(type, name);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Parses and unifies {@link CommuniqueConfig#recipients} and {@link CommuniqueConfig#sentList} into a
+	 * <code>List&lt;CommuniqueRecipient&gt;</code>
+	 * <p>This exists because of an interim period before the creation of {@link CommuniqueRecipient} but after {@link
+	 * CommuniqueConfig} was turned into a serialised JSON file. In that period, strings in the old recipients format
+	 * were stored in the two (now-deprecated) <code>recipients</code> and <code>sentList</code> fields. Since it is
+	 * necessary to turn those all into the standard <code>CommuniqueRecipient</code>, keep this method.</p>
+	 *
+	 * <p>This acts in place.</p>
+	 * @param config holding {@link CommuniqueConfig#recipients} and {@link CommuniqueConfig#sentList}
+	 */
+	private static void unifySendList(CommuniqueConfig config) {
+		if (config.getcRecipientsString() == null) { // only if null is this necessary
+			List<CommuniqueRecipient> list = new ArrayList<>();
+
+			// if recipients contains things, lets deal with that
+			if (config.recipients != null && config.recipients.length != 0) {
+				List<String> recipients = CommuniqueRecipient.translateTokens(asList(config.recipients));
+				list.addAll(recipients.stream()    // add all recipients
+						.map(CommuniqueRecipient::parseRecipient)
+						.map(r -> CommuniqueRecipients.setFilter(r, FilterType.NORMAL))
+						.collect(Collectors.toList()));
+			}
+
+			// if sentList contains things, deal with that
+			if (config.sentList != null && config.sentList.length != 0) {
+				List<String> sentList = CommuniqueRecipient.translateTokens(asList(config.sentList));
+				list.addAll(sentList.stream()  // translate, then change flag as necessary
+						.map(CommuniqueRecipient::parseRecipient)
+						.map(CommuniqueRecipients::exclude) // manual cast if necessary
+						.collect(Collectors.toList()));
+			}
+
+			config.setcRecipients(list);
+		}
+	}
+
+}
@@ -0,0 +1,245 @@
+package com.git.ifly6.communique.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link CommuniqueJournal} is an append-only record of the outcome of each telegram, kept beside a configuration file
+ * while sending. Sent nations are otherwise only recorded when the configuration is saved, so if the program is killed
+ * mid-campaign, the journal is what allows the next run to resume without telegramming those nations again.
+ * <p>
+ * Each outcome is written as a line, <code>outcome \t time \t nation</code>, as it happens. Writes are synchronised to
+ * disc in batches: at most every {@link #SYNC_INTERVAL} milliseconds, so that a burst of writes costs one sync. On
+ * {@link CommuniqueLoader#load()}, the journal is replayed, adding each queued nation to the configuration's sent
+ * list. On {@link CommuniqueLoader#save(CommuniqueConfig)}, its contents are in the configuration, so it is
+ * compacted by truncation, unless it was written to during the save.
+ * </p>
+ */
+public class CommuniqueJournal implements Closeable {
+
+	private static final Logger LOGGER = Logger.getLogger(CommuniqueJournal.class.getName());
+
+	/** Maximum time between a write and its synchronisation to disc, in milliseconds. */
+	public static final long SYNC_INTERVAL = 1000;
+
+	/** Suffix appended to the configuration file name to get the journal file name. */
+	public static final String SUFFIX = ".journal";
+
+	/** Journals currently open, so that saving a configuration from anywhere compacts the open journal. */
+	private static final Map<Path, CommuniqueJournal> OPEN = new ConcurrentHashMap<>();
+
+	/** Numbers each write to any journal, so that a save can tell whether a journal was written to while saving. */
+	private static final AtomicLong SEQUENCE = new AtomicLong();
+
+	private static final ScheduledExecutorService SYNCER = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "CommuniqueJournal sync");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/** Outcomes which can be recorded. */
+	public enum Outcome {
+		QUEUED, FAILED, SKIPPED
+	}
+
+	private final Path path;
+	private final FileChannel channel;
+	private int entries = 0;
+	private boolean dirty = false;
+	private boolean syncScheduled = false;
+	private long lastWrite = SEQUENCE.incrementAndGet();
+
+	private CommuniqueJournal(Path path) throws IOException {
+		this.path = path;
+		this.channel = FileChannel.open(path,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	/**
+	 * Gets the path of the journal for some configuration file.
+	 * @param configPath of configuration file
+	 * @return path of journal
+	 */
+	public static Path pathFor(Path configPath) {
+		return configPath.resolveSibling(configPath.getFileName() + SUFFIX);
+	}
+
+	/**
+	 * Opens the journal for some configuration file, appending to any existing journal.
+	 * @param configPath of configuration file
+	 * @return open journal
+	 * @throws IOException if the journal cannot be opened
+	 */
+	static CommuniqueJournal open(Path configPath) throws IOException {
+		Path path = pathFor(configPath).toAbsolutePath();
+		CommuniqueJournal journal = new CommuniqueJournal(path);
+		CommuniqueJournal previous = OPEN.put(path, journal);
+		if (previous != null) previous.close();
+		return journal;
+	}
+
+	/**
+	 * Records that a telegram was queued for some nation.
+	 * @param nation sent to
+	 */
+	public void queued(String nation) {
+		append(Outcome.QUEUED, nation);
+	}
+
+	/**
+	 * Records that a telegram could not be delivered to some nation.
+	 * @param nation not sent to
+	 */
+	public void failed(String nation) {
+		append(Outcome.FAILED, nation);
+	}
+
+	/**
+	 * Records that some nation was skipped, as it failed checks or does not exist.
+	 * @param nation skipped
+	 */
+	public void skipped(String nation) {
+		append(Outcome.SKIPPED, nation);
+	}
+
+	private synchronized void append(Outcome outcome, String nation) {
+		if (!channel.isOpen()) return;
+		String line = String.format("%s\t%d\t%s\n", outcome, System.currentTimeMillis(), nation.trim());
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+			while (buffer.hasRemaining()) channel.write(buffer);
+			entries++;
+			lastWrite = SEQUENCE.incrementAndGet();
+			dirty = true;
+			if (!syncScheduled) {
+				syncScheduled = true;
+				SYNCER.schedule(this::sync, SYNC_INTERVAL, TimeUnit.MILLISECONDS);
+			}
+
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Cannot write to send journal " + path, e);
+		}
+	}
+
+	/**
+	 * Synchronises written outcomes to disc.
+	 */
+	public synchronized void sync() {
+		syncScheduled = false;
+		if (!dirty || !channel.isOpen()) return;
+		try {
+			channel.force(false);
+			dirty = false;
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Cannot synchronise send journal " + path, e);
+		}
+	}
+
+	/**
+	 * @return number of outcomes written since the journal was opened or last compacted
+	 */
+	public synchronized int size() {
+		return entries;
+	}
+
+	/**
+	 * Empties the journal, as its contents have been saved to the configuration, unless it was written to since it was
+	 * marked.
+	 */
+	private synchronized void truncate(long mark) throws IOException {
+		if (!channel.isOpen() || lastWrite != mark) return;
+		channel.truncate(0);
+		channel.force(false);
+		entries = 0;
+		dirty = false;
+	}
+
+	/**
+	 * Marks the journal for some configuration file before the configuration is saved, so that it is compacted only if
+	 * nothing is written to it while saving.
+	 * @param configPath of configuration file
+	 * @return mark to give to {@link #compact(Path, long)}
+	 */
+	static long mark(Path configPath) {
+		CommuniqueJournal journal = OPEN.get(pathFor(configPath).toAbsolutePath());
+		if (journal == null) return -1;
+		synchronized (journal) {
+			return journal.lastWrite;
+		}
+	}
+
+	/**
+	 * Compacts the journal for some configuration file, once the configuration has been saved. If the journal is open,
+	 * it is truncated; otherwise, it is deleted. If anything was written to it since it was marked, which can happen
+	 * when saving in the background while sending, it may not all be in the saved configuration, so the journal is kept
+	 * until the next save.
+	 * @param configPath of configuration file
+	 * @param mark       from {@link #mark(Path)}, taken before saving
+	 * @throws IOException if the journal cannot be truncated or deleted
+	 */
+	static void compact(Path configPath, long mark) throws IOException {
+		Path path = pathFor(configPath).toAbsolutePath();
+		CommuniqueJournal journal = OPEN.get(path);
+		if (journal != null) journal.truncate(mark);
+		else if (mark == -1) Files.deleteIfExists(path);
+	}
+
+	/**
+	 * Replays the journal for some configuration file into that configuration, adding each nation recorded as queued
+	 * to its sent list. Incomplete lines, left by a crash during a write, are ignored.
+	 * @param configPath of configuration file
+	 * @param config     loaded from that file
+	 * @return number of nations added
+	 * @throws IOException if the journal exists but cannot be read
+	 */
+	static int replay(Path configPath, CommuniqueConfig config) throws IOException {
+		Path path = pathFor(configPath);
+		if (!Files.exists(path)) return 0;
+
+		// only lines ending in a new line are complete
+		String content = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+		List<String> queued = new ArrayList<>();
+		for (String line : content.substring(0, content.lastIndexOf('\n') + 1).split("\n")) {
+			String[] fields = line.split("\t");
+			if (fields.length == 3 && fields[0].equals(Outcome.QUEUED.name()) && !fields[2].isEmpty())
+				queued.add(fields[2]);
+		}
+
+		int added = config.getSentList().addAll(queued);
+
+		if (added > 0) LOGGER.info(String.format("Resumed %d sent nations from journal %s", added, path));
+		return added;
+	}
+
+	/**
+	 * Synchronises and closes the journal. The file is kept until the configuration is next saved.
+	 */
+	@Override
+	public synchronized void close() {
+		OPEN.remove(path, this);
+		if (!channel.isOpen()) return;
+		sync();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Cannot close send journal " + path, e);
+		}
+	}
+
+}
@@ -8,6 +8,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Properties;
+import java.util.logging.Logger;
 
 import static com.git.ifly6.communique.ngui.components.CommuniqueLAF.appSupport;
 
@@ -20,6 +21,8 @@ import static com.git.ifly6.communique.ngui.components.CommuniqueLAF.appSupport;
  */
 public class CommuniqueLoader {
 
+	private static final Logger LOGGER = Logger.getLogger(CommuniqueLoader.class.getName());
+
 	private Path path;
 
 	// Force initialisation with appropriate variables
@@ -38,23 +41,48 @@ public class CommuniqueLoader {
 	}
 
 	/**
-	 * Saves a configuration file based on the provided {@link CommuniqueConfig}.
+	 * Saves a configuration file based on the provided {@link CommuniqueConfig}, with its sent list beside it. The
+	 * file is replaced atomically, so a crash while saving leaves the previous file intact. As the configuration then
+	 * holds everything in the send journal, the journal is compacted.
 	 * @param config to save
 	 * @throws IOException given IO error
+	 * @see CommuniqueAutosaver
 	 */
 	public void save(CommuniqueConfig config) throws IOException {
+		long mark = CommuniqueJournal.mark(path);
 		CommuniqueWriter writer = new CommuniqueWriter(path, config);
 		writer.write();
+		CommuniqueJournal.compact(path, mark);
 	}
 
 	/**
-	 * Loads a configuration file to a new CConfig.
+	 * Loads a configuration file to a new CConfig, with its sent list. Nations excluded by tokens at the end of a file
+	 * from a version before 13, which is how those versions recorded the sent list, are moved to the sent list. If a
+	 * send journal was left beside the file, for example by a crash mid-campaign, nations recorded in it as sent are
+	 * added to the sent list.
 	 * @return a {@link CommuniqueConfig} based on the loaded data from disc
 	 * @throws IOException given IO error
+	 * @see CommuniqueSentList
 	 */
 	public CommuniqueConfig load() throws IOException {
 		CommuniqueReader reader = new CommuniqueReader(path);
-		return reader.read();
+		CommuniqueConfig config = reader.read();
+		config.setSentList(CommuniqueSentList.read(path));
+		int moved = config.moveExclusionsToSentList();
+		if (moved > 0) LOGGER.info(String.format("Moved %d excluded nations to sent list", moved));
+		CommuniqueJournal.replay(path, config);
+		return config;
+	}
+
+	/**
+	 * Opens the send journal for this configuration file, to which the outcome of each telegram should be written as
+	 * it is sent. It is compacted each time the configuration is saved.
+	 * @return open journal
+	 * @throws IOException if the journal cannot be opened
+	 * @see CommuniqueJournal
+	 */
+	public CommuniqueJournal openJournal() throws IOException {
+		return CommuniqueJournal.open(path);
 	}
 
 	/**
@@ -18,19 +18,17 @@
 package com.git.ifly6.communique.io;
 
 import com.git.ifly6.communique.CommuniqueFileReader;
-import com.git.ifly6.communique.data.Communique7Parser;
 import com.git.ifly6.communique.data.CommuniqueRecipient;
-import com.git.ifly6.communique.data.CommuniqueRecipients;
-import com.git.ifly6.communique.data.FilterType;
-import com.git.ifly6.nsapi.telegram.JTelegramType;
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.google.gson.JsonIOException;
 import com.google.gson.JsonSyntaxException;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -60,9 +58,9 @@ class CommuniqueReader {
 	}
 
 	/**
-	 * Reads data in the location specified in the path in the constructor. If necessary, it employs the methods
-	 * declared in {@link Communique7Parser} to translate old Communique 6 tokens into the tokens introduced in
-	 * Communique 7. It will also automatically decode old files which throw JSON errors using the deprecated {@link
+	 * Reads data in the location specified in the path in the constructor, in one pass with {@link
+	 * CommuniqueConfigAdapter}, which translates fields and old Communique 6 tokens from older versions as it reads. It
+	 * will also automatically decode old files which throw JSON errors using the deprecated {@link
 	 * CommuniqueFileReader}.
 	 * @return a {@link CommuniqueConfig} holding the data specified
 	 * @throws IOException if there is an issue reading the data
@@ -72,26 +70,14 @@ class CommuniqueReader {
 		CommuniqueConfig config;
 
 		try { // note, this will handle future version of the class by ignoring the now-irrelevant fields
-			Gson gson = new Gson();
-			config = gson.fromJson(Files.newBufferedReader(path), CommuniqueConfig.class);
-
-			// convert from randomise flag to new enums
-			if (config.version == 7) {
-				List<String> lines = Files.readAllLines(path).stream()
-						.map(String::trim)
-						.collect(Collectors.toList());
-				for (String line : lines)
-					if (line.trim().equals("\"isRandomised\": true,")) {
-						config.processingAction = CommuniqueProcessingAction.RANDOMISE;
-						break;
-					}
+			// the adapter translates fields from older versions as it reads them
+			Gson gson = new GsonBuilder()
+					.registerTypeAdapter(CommuniqueConfig.class, new CommuniqueConfigAdapter())
+					.create();
+			try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+				config = gson.fromJson(reader, CommuniqueConfig.class);
 			}
 
-			// correct for introduction of recruitment enum instead of boolean flag
-			if (config.version <= 11)
-				if (config.isRecruitment)
-					config.telegramType = JTelegramType.RECRUIT;
-
 			// defaults for wait string are not necessary: blank accepts hard-coded defaults already. A+
 
 		} catch (JsonSyntaxException | JsonIOException e) {
@@ -118,50 +104,7 @@ class CommuniqueReader {
 
 		}
 
-		// There can be old files in Json which predate the introduction of CommuniqueRecipient in version 7
-		// Those files need to be translated too, which is problematic due to the creation of an explicit difference
-		// in those version between the standard recipients list and the sent-list.
-		if (config.version < 7)
-			unifySendList(config);
-
 		return config;
 	}
 
-	/**
-	 * Parses and unifies {@link CommuniqueConfig#recipients} and {@link CommuniqueConfig#sentList} into a
-	 * <code>List&lt;CommuniqueRecipient&gt;</code>
-	 * <p>This exists because of an interim period before the creation of {@link CommuniqueRecipient} but after {@link
-	 * CommuniqueConfig} was turned into a serialised JSON file. In that period, strings in the old recipients format
-	 * were stored in the two (now-deprecated) <code>recipients</code> and <code>sentList</code> fields. Since it is
-	 * necessary to turn those all into the standard <code>CommuniqueRecipient</code>, keep this method.</p>
-	 *
-	 * <p>This acts in place.</p>
-	 * @param config holding {@link CommuniqueConfig#recipients} and {@link CommuniqueConfig#sentList}
-	 */
-	private void unifySendList(CommuniqueConfig config) {
-		if (config.getcRecipients() == null) { // only if null is this necessary
-			List<CommuniqueRecipient> list = new ArrayList<>();
-
-			// if recipients contains things, lets deal with that
-			if (config.recipients != null && config.recipients.length != 0) {
-				List<String> recipients = CommuniqueRecipient.translateTokens(asList(config.recipients));
-				list.addAll(recipients.stream()    // add all recipients
-						.map(CommuniqueRecipient::parseRecipient)
-						.map(r -> CommuniqueRecipients.setFilter(r, FilterType.NORMAL))
-						.collect(Collectors.toList()));
-			}
-
-			// if sentList contains things, deal with that
-			if (config.sentList != null && config.sentList.length != 0) {
-				List<String> sentList = CommuniqueRecipient.translateTokens(asList(config.sentList));
-				list.addAll(sentList.stream()  // translate, then change flag as necessary
-						.map(CommuniqueRecipient::parseRecipient)
-						.map(CommuniqueRecipients::exclude) // manual cast if necessary
-						.collect(Collectors.toList()));
-			}
-
-			config.setcRecipients(list);
-		}
-	}
-
 }
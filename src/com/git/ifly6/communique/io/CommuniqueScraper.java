@@ -19,6 +19,7 @@ package com.git.ifly6.communique.io;
 
 import com.git.ifly6.communique.data.CommuniqueRecipient;
 import com.git.ifly6.communique.data.CommuniqueRecipients;
+import com.git.ifly6.nsapi.NSRateLimiter;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
@@ -50,16 +51,10 @@ public class CommuniqueScraper {
 	private static final Logger LOGGER = Logger.getLogger(CommuniqueScraper.class.getName());
 
 	/**
-	 * Makes sure that the many different instances have to compete for a single API call which is regulated to every
-	 * 1650 milliseconds.
+	 * Spaces out requests for HTML pages to one every 1650 milliseconds, in line with the scripting rules. Requests
+	 * also count against the shared {@link NSRateLimiter#instance()} limit.
 	 */
-	private static synchronized void rateLimit() {
-		try {
-			Thread.sleep(1_650);
-		} catch (InterruptedException e) {
-			System.err.println("Rate limit was interrupted.");
-		}
-	}
+	private static final NSRateLimiter PAGE_LIMITER = new NSRateLimiter(1, 1_650);
 
 	/**
 	 * Provides pertinent rate-limiting for web-scraping in line with the NationStates scripting rules.
@@ -69,7 +64,8 @@ public class CommuniqueScraper {
 	 */
 	private static String callUrl(URL url) throws IOException {
 		LOGGER.info("Implementing scraper rate-limit");
-		rateLimit();
+		PAGE_LIMITER.acquire();
+		NSRateLimiter.instance().acquire();
 
 		LOGGER.info(String.format("Calling url: %s", url));
 		URLConnection connection = url.openConnection();
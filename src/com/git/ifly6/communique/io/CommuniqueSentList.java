@@ -0,0 +1,196 @@
+package com.git.ifly6.communique.io;
+
+import com.git.ifly6.nsapi.ApiUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link CommuniqueSentList} holds the nations to which telegrams have been sent, which are excluded from later sends.
+ * It is kept in its own file beside the configuration file, rather than as <code>-nation:</code> tokens in it, so that
+ * the configuration holds only the tokens written by the user and a sent list of tens of thousands of nations is not
+ * re-serialised and re-parsed on every save and load.
+ * <p>
+ * The file holds one reference name per line. It is append-only: on {@link CommuniqueLoader#save(CommuniqueConfig)},
+ * only nations added since the file was last read or written are appended, unless the file has since been changed
+ * by something else, in which case it is rewritten. In memory, names are indexed in a hash set, so checking whether a
+ * nation has been sent to takes constant time. This class is safe to use from multiple threads.
+ * </p>
+ */
+public class CommuniqueSentList {
+
+	/** Suffix appended to the configuration file name to get the sent list file name. */
+	public static final String SUFFIX = ".sent";
+
+	private static final String HEADER = "# Communiqué sent list. One nation per line.";
+
+	private final List<String> names = new ArrayList<>();
+	private final Set<String> index = ConcurrentHashMap.newKeySet(); // read by parsers while nations are added
+
+	/** For each file to which this list has been written, what the file then held. */
+	private final Map<Path, Persisted> persisted = new HashMap<>();
+
+	/**
+	 * Creates an empty sent list.
+	 */
+	public CommuniqueSentList() {
+	}
+
+	/**
+	 * Gets the path of the sent list for some configuration file.
+	 * @param configPath of configuration file
+	 * @return path of sent list
+	 */
+	public static Path pathFor(Path configPath) {
+		return configPath.resolveSibling(configPath.getFileName() + SUFFIX);
+	}
+
+	/**
+	 * Reads the sent list for some configuration file. An incomplete last line, left by a crash during a write, is
+	 * ignored.
+	 * @param configPath of configuration file
+	 * @return sent list, empty if there is no file
+	 * @throws IOException if the file exists but cannot be read
+	 */
+	static CommuniqueSentList read(Path configPath) throws IOException {
+		CommuniqueSentList list = new CommuniqueSentList();
+		Path path = pathFor(configPath).toAbsolutePath();
+		if (!Files.exists(path)) return list;
+
+		byte[] bytes = Files.readAllBytes(path);
+		int complete = 0;
+		for (int i = bytes.length - 1; i >= 0; i--)
+			if (bytes[i] == '\n') {
+				complete = i + 1;
+				break;
+			}
+
+		String content = new String(bytes, 0, complete, StandardCharsets.UTF_8);
+		for (String line : content.split("\n"))
+			if (!line.isEmpty() && !line.startsWith("#")) list.add(line);
+		list.persisted.put(path, new Persisted(list.names.size(), complete));
+		return list;
+	}
+
+	/**
+	 * Adds a nation, if not already present.
+	 * @param nation name, in any form
+	 * @return true if the nation was not already present
+	 */
+	public synchronized boolean add(String nation) {
+		String name = ApiUtils.ref(nation);
+		if (name.isEmpty() || !index.add(name)) return false;
+		names.add(name);
+		return true;
+	}
+
+	/**
+	 * Adds nations, in order, if not already present.
+	 * @param nations names, in any form
+	 * @return number of nations added
+	 */
+	public synchronized int addAll(Collection<String> nations) {
+		int added = 0;
+		for (String nation : nations)
+			if (add(nation)) added++;
+		return added;
+	}
+
+	/**
+	 * @param nation reference name
+	 * @return true if the nation has been sent to
+	 */
+	public boolean contains(String nation) {
+		return index.contains(nation);
+	}
+
+	/**
+	 * @return unmodifiable view of the reference names sent to, which reflects later additions
+	 */
+	public Set<String> asSet() {
+		return Collections.unmodifiableSet(index);
+	}
+
+	public synchronized int size() {
+		return names.size();
+	}
+
+	/**
+	 * @return copy of the reference names sent to, in the order they were added
+	 */
+	public synchronized List<String> toList() {
+		return new ArrayList<>(names);
+	}
+
+	/**
+	 * Removes all nations. The file is rewritten when the configuration is next saved.
+	 */
+	public synchronized void clear() {
+		names.clear();
+		index.clear();
+		persisted.clear();
+	}
+
+	/**
+	 * Writes the sent list beside some configuration file, appending the nations added since it was last read or
+	 * written there, or replacing the file if it has since been changed.
+	 * @param configPath of configuration file
+	 * @throws IOException if the file cannot be written
+	 */
+	synchronized void write(Path configPath) throws IOException {
+		Path path = pathFor(configPath).toAbsolutePath();
+		Persisted p = persisted.get(path);
+		boolean exists = Files.exists(path);
+		if (!exists && names.isEmpty()) return; // no need to create the file
+
+		if (p != null && exists && Files.size(path) == p.bytes) {
+			if (p.count == names.size()) return;
+			byte[] tail = encode(names.subList(p.count, names.size()));
+			try (OutputStream out = Files.newOutputStream(path, StandardOpenOption.APPEND)) {
+				out.write(tail);
+			}
+			persisted.put(path, new Persisted(names.size(), p.bytes + tail.length));
+			return;
+		}
+
+		byte[] all = encode(names);
+		byte[] header = (HEADER + "\n").getBytes(StandardCharsets.UTF_8);
+		Path temp = CommuniqueWriter.tempFor(path);
+		try (OutputStream out = Files.newOutputStream(temp)) {
+			out.write(header);
+			out.write(all);
+		}
+		ApiUtils.replace(temp, path);
+		persisted.put(path, new Persisted(names.size(), header.length + all.length));
+	}
+
+	private static byte[] encode(List<String> list) {
+		StringBuilder sb = new StringBuilder(list.size() * 16);
+		for (String name : list) sb.append(name).append('\n');
+		return sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/** Number of names and of bytes held by a file when it was last read or written. */
+	private static class Persisted {
+		private final int count;
+		private final long bytes;
+
+		private Persisted(int count, long bytes) {
+			this.count = count;
+			this.bytes = bytes;
+		}
+	}
+
+}
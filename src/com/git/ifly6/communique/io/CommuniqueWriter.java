@@ -1,15 +1,24 @@
 package com.git.ifly6.communique.io;
 
+import com.git.ifly6.nsapi.ApiUtils;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
+import java.nio.file.StandardOpenOption;
 
 class CommuniqueWriter {
 
+	/** Suffix appended to a file name to get the name of the temporary file written before replacing it. */
+	static final String TEMP_SUFFIX = ".tmp";
+
 	private Path path;
 	private CommuniqueConfig config;
 
@@ -24,7 +33,9 @@ class CommuniqueWriter {
 	}
 
 	/**
-	 * Writes the configuration data to the path specified in the constructor.
+	 * Writes the configuration data to the path specified in the constructor. It is streamed with {@link
+	 * CommuniqueConfigAdapter}, rather than built as a string first, to a temporary file which then replaces the
+	 * configuration file, so that a crash while writing never leaves a partly written configuration.
 	 * @throws IOException if there is an error in writing the file
 	 */
 	void write() throws IOException {
@@ -32,10 +43,31 @@ class CommuniqueWriter {
 		// Have configuration clean itself
 		config.clean();
 
+		// Write the sent list first, so that nations moved to it from the configuration are always in one file
+		config.getSentList().write(path);
+
 		Gson gson = new GsonBuilder().setPrettyPrinting().create();
-		String response = gson.toJson(config);
+		Path temp = tempFor(path);
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		     BufferedWriter writer = new BufferedWriter(Channels.newWriter(channel,
+				     StandardCharsets.UTF_8.newEncoder(), -1))) {
+			JsonWriter jsonWriter = gson.newJsonWriter(writer); // same format as Gson would write
+			new CommuniqueConfigAdapter().write(jsonWriter, config);
+			jsonWriter.flush();
+			writer.newLine();
+			writer.flush();
+			channel.force(true); // on disc before it replaces the configuration
+		}
+		ApiUtils.replace(temp, path);
+	}
 
-		Files.write(path, Arrays.asList(response.split("\n")));
+	/**
+	 * @param path of file
+	 * @return path of temporary file written before replacing that file
+	 */
+	static Path tempFor(Path path) {
+		return path.resolveSibling(path.getFileName() + TEMP_SUFFIX);
 	}
 
 }
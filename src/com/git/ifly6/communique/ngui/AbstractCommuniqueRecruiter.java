@@ -1,24 +1,30 @@
 package com.git.ifly6.communique.ngui;
 
-import com.git.ifly6.communique.data.Communique7Parser;
 import com.git.ifly6.communique.data.CommuniqueRecipient;
 import com.git.ifly6.communique.data.CommuniqueRecipients;
 import com.git.ifly6.communique.data.FilterType;
+import com.git.ifly6.communique.data.RecipientFilter;
 import com.git.ifly6.communique.data.RecipientType;
 import com.git.ifly6.communique.io.CommuniqueConfig;
+import com.git.ifly6.communique.io.CommuniqueSentList;
 import com.git.ifly6.marconi.MarconiRecruiter;
 import com.git.ifly6.nsapi.ApiUtils;
-import com.git.ifly6.nsapi.NSException;
+import com.git.ifly6.nsapi.NSCircuitBreaker;
 import com.git.ifly6.nsapi.NSIOException;
-import com.git.ifly6.nsapi.NSNation;
+import com.git.ifly6.nsapi.NSRetry;
 import com.git.ifly6.nsapi.telegram.JTelegramException;
 import com.git.ifly6.nsapi.telegram.JTelegramLogger;
+import com.git.ifly6.nsapi.telegram.util.JFoundingFeed;
+import com.git.ifly6.nsapi.telegram.util.JInfoCache;
 import com.git.ifly6.nsapi.telegram.util.JInfoFetcher;
 
-import java.util.ArrayList;
-import java.util.LinkedHashSet;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -32,117 +38,227 @@ public abstract class AbstractCommuniqueRecruiter implements JTelegramLogger {
 	private static final JInfoFetcher fetcher = JInfoFetcher.instance();
 	private static final Logger LOGGER = Logger.getLogger(AbstractCommuniqueRecruiter.class.getName());
 
+	/**
+	 * Time for which what is found when fetching a recruitment candidate is kept. This is no longer than nations are
+	 * kept ready by {@link RecruitmentQualifier}, so that checking a nation again once it expires fetches it again.
+	 */
+	static final Duration VERDICT_TTL = RecruitmentQualifier.READY_TTL;
+
+	private static final JInfoCache<String, RecruitmentVerdict> verdicts =
+			new JInfoCache<>("recruitment verdicts", VERDICT_TTL, Duration.ZERO, 10_000);
+
+	/** Retries finding a recipient, from one second apart up to a minute apart. */
+	static final NSRetry RECIPIENT_RETRY = new NSRetry(6, 1_000, 60_000);
+
 	protected List<CommuniqueRecipient> filterList;
-	protected LinkedHashSet<CommuniqueRecipient> sentList;
+	protected CommuniqueSentList sentList;
 	protected Set<CommuniqueRecipient> proscribedRegions;
 
+	private volatile RecipientFilter filter;
+	private volatile Set<String> proscribedNames = Collections.emptySet();
+	private volatile RecruitmentQualifier qualifier;
+	private final Consumer<NSCircuitBreaker.State> breakerListener = this::apiStateChanged;
+
 	public void setConfig(CommuniqueConfig config) {
 		// get the sent list first
-		sentList = config.getcRecipients().stream()
-				.filter(r -> r.getRecipientType() == RecipientType.NATION)
-				.filter(r -> r.getFilterType() == FilterType.EXCLUDE)
-				.collect(Collectors.toCollection(LinkedHashSet::new));
+		sentList = config.getSentList();
 
 		// then get extra filter list things
 		RecipientType[] goodRecipientTypes = {RecipientType.NATION};
 		filterList = config.getcRecipients().stream()
 				.filter(r -> r.getFilterType() != FilterType.NORMAL) // exclude all additions
 				.filter(r -> ApiUtils.contains(goodRecipientTypes, r.getRecipientType()))
-				.filter(r -> !sentList.contains(r))
 				.collect(Collectors.toList());
+		filter = RecipientFilter.of(filterList);
+		resetQualifier();
+	}
+
+	/**
+	 * Sets the regions in which nations are not to be recruited.
+	 * @param regions proscribed, as region recipients
+	 */
+	protected void setProscribedRegions(Set<CommuniqueRecipient> regions) {
+		proscribedRegions = regions;
+
+		// API gives region names, can only do this by converting to ref names and then comparing
+		proscribedNames = regions.stream()
+				.map(CommuniqueRecipient::getName)
+				.map(ApiUtils::ref)
+				.collect(Collectors.toSet());
+		resetQualifier();
+	}
+
+	/** Discards nations checked in the background, as they were checked against filters which have changed. */
+	private void resetQualifier() {
+		RecruitmentQualifier qualifier = this.qualifier;
+		if (qualifier != null) qualifier.reset();
 	}
 
 	public abstract void send();
 
 	@Override
 	public void sentTo(String recipient, int recipientNum, int length) {
-		sentList.add(CommuniqueRecipients.createExcludedNation(recipient));
+		sentList.add(recipient);
+		JFoundingFeed.instance().remove(recipient);
 	}
 
 	/**
-	 * Returns a recipient based on the new recipients list from the NS API, filtered by whether it is proscribed. Note
-	 * that any issues or problems are dealt with my defaulting to the newest nation, ignoring the proscription filter.
-	 * It also filters by whether the nation is recruitable.
+	 * Starts searching for recipients in the background between telegrams. Nations are followed as they are founded,
+	 * so that {@link #getRecipient()} can choose from nations founded seconds ago rather than the last list of new
+	 * nations, and are checked as they are found, so that when a telegram is due, a checked recipient is ready.
+	 * Filters and proscribed regions must be set first.
+	 * @see JFoundingFeed
+	 * @see RecruitmentQualifier
+	 */
+	protected void startSearching() {
+		NSCircuitBreaker.instance().addListener(breakerListener);
+		JFoundingFeed.instance().start();
+		if (qualifier == null) qualifier = new RecruitmentQualifier(this);
+		qualifier.start();
+	}
+
+	/**
+	 * Stops searching for recipients in the background.
+	 */
+	protected void stopSearching() {
+		if (qualifier != null) qualifier.stop();
+		JFoundingFeed.instance().stop();
+		NSCircuitBreaker.instance().removeListener(breakerListener);
+		LOGGER.info(getVerdictStats().toString());
+	}
+
+	/** Tells the user when the API becomes unavailable, and when it recovers. */
+	private void apiStateChanged(NSCircuitBreaker.State state) {
+		if (state == NSCircuitBreaker.State.OPEN)
+			log(String.format("NationStates unavailable; recruitment paused, next check in %d s",
+					NSCircuitBreaker.instance().millisUntilProbe() / 1000));
+		if (state == NSCircuitBreaker.State.CLOSED)
+			log("NationStates available; recruitment resumed");
+	}
+
+	/**
+	 * Returns the newest new nation which passes {@link #passesFilters(String)}, checking the sent list and the filters
+	 * compiled into a {@link RecipientFilter} when the configuration was set, and {@link #isRecruitable(String)},
+	 * checking that it is recruitable and not in a proscribed region. If no new nation passes, the newest is returned
+	 * regardless.
+	 * <p>If searching in the background, the freshest recipient already checked is returned without calling the API.
+	 * Otherwise, or if none is ready, nations are checked now: if the founding feed is live, new nations are taken
+	 * from it, newest first; otherwise, they are fetched from the list of new nations.</p>
+	 * <p>Failures to fetch or check nations are not passed over: the search is retried with {@link
+	 * #RECIPIENT_RETRY}, which waits out outages of the API, however long, and resumes as soon as it recovers.</p>
 	 * @return a <code>String</code> with the name of the recipient
+	 * @throws RuntimeException if recipients cannot be found, though the API is available, after several attempts
+	 * @see #startSearching()
 	 */
 	public CommuniqueRecipient getRecipient() {
+		return RECIPIENT_RETRY.call("find a recipient", this::findRecipient);
+	}
+
+	/** Makes one attempt to find a recipient, as described in {@link #getRecipient()}. */
+	private CommuniqueRecipient findRecipient() {
+		RecruitmentQualifier qualifier = this.qualifier;
+		String ready = qualifier == null ? null : qualifier.take();
+		if (ready != null) {
+			LOGGER.info(String.format("Returning checked match %s", ready));
+			return CommuniqueRecipients.createNation(ready);
+		}
+
+		List<String> possibleRecipients = getNewNations();
+		for (String element : possibleRecipients) {
+
+			// if in sent list, next
+			// if otherwise prohibited by other filter rules, next
+			// if not recruitable, next
+			// otherwise, return
+
+			LOGGER.info(String.format("Checking %s", element));
+			if (!passesFilters(element)) continue;
+			if (!isRecruitable(element)) continue;
+
+			// 2017-03-18 proscription and recruit checks are now performed by JavaTelegram#predicates
+			// 2020-01-26 disregard above, they're just not done by JavaTelegram#predicates
+			LOGGER.info(String.format("Returning match %s", element));
+			return CommuniqueRecipients.createNation(element);
+		}
+
+		// if the filtering failed entirely, then simply just return the newest nation.
+		LOGGER.info(String.format("Could not find match; returning default match %s", possibleRecipients.get(0)));
+		return CommuniqueRecipients.createNation(possibleRecipients.get(0));
+	}
+
+	/**
+	 * Checks a nation against the sent list and the filters in the configuration. Both are indexed, the filters when
+	 * the configuration is set and the sent list as it is sent to, so this calls the API only for attribute filters.
+	 * @param nation reference name
+	 * @return true if it may be sent to
+	 * @see RecipientFilter
+	 */
+	boolean passesFilters(String nation) {
+		return !sentList.contains(nation) && filter.test(nation);
+	}
+
+	/**
+	 * Checks with the API whether a nation is recruitable and not in a proscribed region. What is found is cached for
+	 * {@link #VERDICT_TTL}, across telegrams and recruiters, so that nations which stay among the new nations are not
+	 * fetched again within that time; after it, whether they may be recruited is fetched afresh.
+	 * @param nation reference name
+	 * @return true if it may be recruited; false if not, or if it does not exist
+	 * @throws NSIOException if its data cannot be fetched
+	 * @see RecruitmentVerdict
+	 */
+	boolean isRecruitable(String nation) {
+		RecruitmentVerdict verdict;
 		try {
-			try {
-				List<String> possibleRecipients = ApiUtils.ref(fetcher.getNew());
-				for (String element : possibleRecipients) {
-
-					// if in sent list, next
-					// if otherwise prohibited by other filter rules, next
-					// if not recruitable, next
-					// otherwise, return
-
-					LOGGER.info(String.format("Checking %s", element));
-					Communique7Parser parser = new Communique7Parser().apply(CommuniqueRecipients.createNation(element))
-							.apply(new ArrayList<>(sentList)) // sent list filter
-							.apply(filterList); // other filters
-					if (!parser.listRecipients().contains(element)) continue;
-
-					try {
-						NSNation prNation = new NSNation(element).populateData();
-						if (!prNation.isRecruitable()) continue; // if not recruitable yeet
-						if (isProscribed(prNation)) continue; // if proscribed yeet
-
-					} catch (NSException e) {
-						// if it doesn't exist or otherwise fails, ignore this one
-						continue;
-					}
-
-					// 2017-03-18 proscription and recruit checks are now performed by JavaTelegram#predicates
-					// 2020-01-26 disregard above, they're just not done by JavaTelegram#predicates
-					LOGGER.info(String.format("Returning match %s", element));
-					return CommuniqueRecipients.createNation(element);
-				}
-
-				// if the filtering failed entirely, then simply just return the newest nation.
-				LOGGER.info(String.format("Could not find match; returning default match %s", possibleRecipients.get(0)));
-				return CommuniqueRecipients.createNation(possibleRecipients.get(0));
-
-			} catch (JTelegramException e) {
-				LOGGER.warning("Cannot fetch new nations. Retrying. Sleep one second.");
-				try {
-					Thread.sleep(1000);
-				} catch (InterruptedException ignored) {
-				}
-				return getRecipient();  // retry
-
-			} catch (NSIOException e) {
-				LOGGER.warning("NS API threw error when loading new nation data. Retrying.");
-				return getRecipient();  // retry
-
-			} catch (RuntimeException e) {
-				LOGGER.warning("Unclear reason why we cannot load new nation data. Retrying.");
-				return getRecipient();  // retry
-			}
+			verdict = verdicts.get(nation, RecruitmentVerdict::fetch);
+		} catch (IOException e) { // not thrown by fetch
+			throw new NSIOException(String.format("Cannot fetch %s: %s", nation, e.getMessage()));
+		}
 
-		} catch (StackOverflowError stackOverflow) {
-			LOGGER.severe("Too many attempts to load nation data. Check your internet connection.");
-			throw new NSIOException("Stack overflow error!");
+		if (verdict.getReason() != RecruitmentVerdict.Reason.RECRUITABLE) { // if not recruitable yeet
+			LOGGER.fine(String.format("Rejected %s, %s", nation, verdict));
+			return false;
 		}
+		if (isProscribed(verdict.getRegion())) { // if proscribed yeet
+			LOGGER.fine(String.format("Rejected %s, %s, which is proscribed", nation, verdict));
+			return false;
+		}
+		return true;
 	}
 
 	/**
-	 * Determines whether a nation is in a region excluded by the JList <code>excludeList</code>. This method acts with
+	 * @return statistics for the cache of verdicts on recruitment candidates
+	 */
+	public static JInfoCache.Stats getVerdictStats() {
+		return verdicts.getStats();
+	}
+
+	/**
+	 * @return newly founded nations, newest first, from the founding feed if live and otherwise from the API
+	 * @throws JTelegramException if new nations cannot be fetched
+	 */
+	List<String> getNewNations() {
+		JFoundingFeed feed = JFoundingFeed.instance();
+		if (feed.isLive()) {
+			List<JFoundingFeed.Founding> newest = feed.getNewest();
+			if (!newest.isEmpty()) {
+				LOGGER.fine(String.format("Choosing from %d founded nations, newest founded %d s ago",
+						newest.size(), Duration.between(newest.get(0).getFounded(), Instant.now()).getSeconds()));
+				return newest.stream().map(JFoundingFeed.Founding::getName).collect(Collectors.toList());
+			}
+		}
+		return ApiUtils.ref(fetcher.getNew());
+	}
+
+	/**
+	 * Determines whether a nation's region is excluded by the JList <code>excludeList</code>. This method acts with
 	 * two assumptions: (1) it is not all right to telegram to anyone who resides in a prescribed region and (2) if they
 	 * moved out of the region since founding, it is certainly all right to do so.
-	 * @param nation to check
+	 * @param nRegion reference name of the region in which the nation was when fetched
 	 * @return <code>boolean</code> on whether it is proscribed
+	 * @see #setProscribedRegions(Set)
 	 */
-	private boolean isProscribed(NSNation nation) {
-
-		if (!nation.hasData()) nation.populateData();
-
-		// API gives region names, can only do this by converting to ref names and then comparing
-		String nRegion = ApiUtils.ref(nation.getRegion());
-		return proscribedRegions.stream()
-				.map(CommuniqueRecipient::getName)
-				.map(ApiUtils::ref)
-				.anyMatch(regionName -> regionName.equals(nRegion));
-
+	private boolean isProscribed(String nRegion) {
+		return proscribedNames.contains(nRegion);
 	}
 
 }
\ No newline at end of file
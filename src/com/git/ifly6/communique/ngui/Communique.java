@@ -23,7 +23,9 @@ import com.git.ifly6.communique.data.CommuniqueRecipient;
 import com.git.ifly6.communique.data.CommuniqueRecipients;
 import com.git.ifly6.communique.data.FilterType;
 import com.git.ifly6.communique.data.RecipientType;
+import com.git.ifly6.communique.io.CommuniqueAutosaver;
 import com.git.ifly6.communique.io.CommuniqueConfig;
+import com.git.ifly6.communique.io.CommuniqueJournal;
 import com.git.ifly6.communique.io.CommuniqueLoader;
 import com.git.ifly6.communique.io.CommuniqueProcessingAction;
 import com.git.ifly6.communique.io.CommuniqueScraper;
@@ -35,8 +37,12 @@ import com.git.ifly6.nsapi.ApiUtils;
 import com.git.ifly6.nsapi.telegram.JTelegramException;
 import com.git.ifly6.nsapi.telegram.JTelegramKeys;
 import com.git.ifly6.nsapi.telegram.JTelegramLogger;
+import com.git.ifly6.nsapi.telegram.JTelegramRecipients;
 import com.git.ifly6.nsapi.telegram.JTelegramType;
 import com.git.ifly6.nsapi.telegram.JavaTelegram;
+import com.git.ifly6.nsapi.telegram.util.JDumpIndex;
+import com.git.ifly6.nsapi.telegram.util.JInfoDiskCache;
+import com.git.ifly6.nsapi.telegram.util.JInfoFetcher;
 
 import javax.swing.BorderFactory;
 import javax.swing.GroupLayout;
@@ -78,11 +84,13 @@ import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -103,9 +111,17 @@ public class Communique extends AbstractCommunique implements JTelegramLogger {
 
 	private static final Logger LOGGER = Logger.getLogger(Communique.class.getName());
 
+	/** Seconds to wait for recipients to resolve before offering to send as they are resolved. */
+	private static final int STREAM_AFTER = 5;
+
 	private CommuniqueConfig config = new CommuniqueConfig();
 	private JavaTelegram client; // Sending client
 	private Thread sendingThread = new Thread(); // The one sending thread
+	private volatile CommuniqueJournal journal; // records sends until the next autosave
+
+	/** Saves to the autosave file, in the background, as the configuration changes. */
+	private final CommuniqueAutosaver autosaver = new CommuniqueAutosaver(appSupport.resolve("autosave.txt"),
+			this::exportState, Duration.ofSeconds(2), Duration.ofSeconds(30));
 
 	private JFrame frame;
 	private JTextArea txtrCode;
@@ -124,6 +140,9 @@ public class Communique extends AbstractCommunique implements JTelegramLogger {
 
 	private JProgressBar progressBar;
 	private JLabel progressLabel;
+
+	/** Progress in expanding region tags, shown after the number of recipients resolved. */
+	private volatile String regionProgress = "";
 	private Timer timer;
 
 	public static void main(String[] args) {
@@ -187,6 +206,7 @@ public class Communique extends AbstractCommunique implements JTelegramLogger {
 
 		txtrCode = CommuniqueFactory.createArea(CODE_HEADER, new CommuniqueDocumentListener(e -> {
 			Communique.this.config.setcRecipients(exportRecipients()); // dynamic update config
+			autosaver.changed();
 		}));
 		JScrollPane scrollPane = new JScrollPane(txtrCode);
 
@@ -198,6 +218,7 @@ public class Communique extends AbstractCommunique implements JTelegramLogger {
 				CommuniqueLoader.getClientKey(), "Client key",
 				new CommuniqueDocumentListener(e -> {
 					config.keys.setClientKey(txtClientKey.getText().trim()); // dynamic update config
+					autosaver.changed();
 				})
 		);
 		txtSecretKey = CommuniqueFactory.createField(
@@ -205,6 +226,7 @@ public class Communique extends AbstractCommunique implements JTelegramLogger {
 				"Secret key",
 				new CommuniqueDocumentListener(e -> {
 					config.keys.setSecretKey(txtSecretKey.getText().trim()); // dynamic update config
+					autosaver.changed();
 				})
 		);
 		txtTelegramId = CommuniqueFactory.createField(
@@ -212,6 +234,7 @@ public class Communique extends AbstractCommunique implements JTelegramLogger {
 				"Telegram ID",
 				new CommuniqueDocumentListener(e -> {
 					config.keys.setTelegramId(txtTelegramId.getText().trim()); // dynamic update config
+					autosaver.changed();
 				})
 		);
 
@@ -229,6 +252,7 @@ public class Communique extends AbstractCommunique implements JTelegramLogger {
 				+ "are parsed. Select a processing action here");
 		specialAction.addActionListener(evt -> {
 			config.processingAction = specialAction.getItemAt(specialAction.getSelectedIndex());
+			autosaver.changed();
 			LOGGER.info(String.format("Set config processing action to %s",
 					specialAction.getItemAt(specialAction.getSelectedIndex())));
 		});
@@ -242,6 +266,7 @@ public class Communique extends AbstractCommunique implements JTelegramLogger {
 		telegramType.setToolTipText("Telegram types are declared in the telegram itself");
 		telegramType.addActionListener(evt -> {
 			config.telegramType = currentTelegramType();
+			autosaver.changed();
 			LOGGER.info(String.format("Set telegram type to %s", currentTelegramType()));
 		});
 
@@ -253,6 +278,7 @@ public class Communique extends AbstractCommunique implements JTelegramLogger {
 				"Leave as blank, 'default', or '-' to accept defaults. Must be in milliseconds.",
 				new CommuniqueDocumentListener(e -> {
 					config.waitString = txtWaitTime.getText().trim(); // dynamic update config
+					autosaver.changed();
 				})
 		);
 		txtWaitTime.setColumns(10);
@@ -542,6 +568,55 @@ public class Communique extends AbstractCommunique implements JTelegramLogger {
 		});
 		mnEdit.add(mntmAddExcludedNations);
 
+		JMenuItem mntmClearSentList = new JMenuItem("Clear Sent List");
+		mntmClearSentList.setToolTipText("Allows nations already sent to to be sent to again");
+		mntmClearSentList.addActionListener(e -> {
+			int size = config.getSentList().size();
+			int choice = JOptionPane.showConfirmDialog(frame, String.format("Clear the %d nations already sent to, "
+							+ "so that they are no longer excluded?", size), CommuniqueMessages.TITLE,
+					JOptionPane.YES_NO_OPTION, JOptionPane.PLAIN_MESSAGE);
+			if (choice == JOptionPane.YES_OPTION) {
+				config.getSentList().clear();
+				autosaver.changed();
+				LOGGER.info(String.format("Cleared sent list of %d nations", size));
+			}
+		});
+		mnEdit.add(mntmClearSentList);
+
+		mnEdit.addSeparator();
+
+		JMenuItem mntmExplain = new JMenuItem("Explain Recipients");
+		mntmExplain.setToolTipText("Shows how recipients would be resolved, with the API calls and time expected");
+		mntmExplain.addActionListener(e -> {
+			try {
+				CommuniqueTextDialog.createMonospacedDialog(frame, "Explain Recipients",
+						sentListParser().explain(exportRecipients()), false);
+			} catch (IllegalArgumentException iae) {
+				this.showMessageDialog(iae.getMessage(), CommuniqueMessages.ERROR);
+			}
+		});
+		mnEdit.add(mntmExplain);
+
+		JMenuItem mntmExplainAnalyze = new JMenuItem("Explain Recipients with Timing");
+		mntmExplainAnalyze.setToolTipText("Resolves recipients, showing the time, API calls, and data taken by each "
+				+ "step");
+		mntmExplainAnalyze.addActionListener(e -> {
+			List<CommuniqueRecipient> tokens = exportRecipients();
+			Thread thread = new Thread(() -> {
+				try {
+					String report = sentListParser().explainAnalyze(tokens);
+					EventQueue.invokeLater(() -> CommuniqueTextDialog.createMonospacedDialog(frame,
+							"Explain Recipients", report, false));
+				} catch (JTelegramException | IllegalArgumentException ex) {
+					LOGGER.log(Level.WARNING, "Cannot resolve recipients for explanation", ex);
+					EventQueue.invokeLater(() -> this.showMessageDialog(ex.getMessage(), CommuniqueMessages.ERROR));
+				}
+			});
+			thread.setDaemon(true);
+			thread.start();
+		});
+		mnEdit.add(mntmExplainAnalyze);
+
 		JMenu mnWindow = new JMenu("Window");
 		menuBar.add(mnWindow);
 
@@ -604,9 +679,9 @@ public class Communique extends AbstractCommunique implements JTelegramLogger {
 
 		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
 			try {
-				// Save it to application support
-				CommuniqueLoader loader = new CommuniqueLoader(appSupport.resolve("autosave.txt"));
-				loader.save(exportState());
+				// Save any unsaved changes to application support
+				autosaver.close();
+				JInfoFetcher.instance().saveCache(appSupport.resolve(JInfoDiskCache.CACHE_FILE));
 			} catch (IOException e) {
 				e.printStackTrace();
 			}
@@ -626,6 +701,23 @@ public class Communique extends AbstractCommunique implements JTelegramLogger {
 		}
 		LOGGER.info("Auto-save loaded");
 
+		// In the background, restore recipients cached last session and, if there are data dumps, load them to
+		// resolve recipients offline
+		Thread cacheLoader = new Thread(() -> {
+			try {
+				JInfoFetcher.instance().loadCache(appSupport.resolve(JInfoDiskCache.CACHE_FILE));
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Cannot load recipient cache, resolving recipients afresh", e);
+			}
+			if (Files.exists(appSupport.resolve(JDumpIndex.NATIONS_DUMP))) try {
+				JInfoFetcher.instance().setDumpIndex(JDumpIndex.load(appSupport));
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Cannot load data dumps, resolving recipients with API", e);
+			}
+		});
+		cacheLoader.setDaemon(true);
+		cacheLoader.start();
+
 	}
 
 	/**
@@ -653,37 +745,125 @@ public class Communique extends AbstractCommunique implements JTelegramLogger {
 			return;
 		}
 
+		if (!ApiUtils.contains(CommuniqueProcessingAction.values(), config.processingAction)) {
+			// if config.processingAction not in CommuniqueProcessingAction.values
+			// deal with invalid processing action
+			this.showMessageDialog("Invalid processing action.\n"
+					+ "Select a valid processing action", CommuniqueMessages.ERROR);
+			return;
+		}
+
 		// Call and do the parsing
 		LOGGER.info("Called parser");
-		Communique7Parser parser = new Communique7Parser();
+		JTelegramRecipients stream;
 		try {
-			parsedRecipients = parser.apply(tokens).listRecipients();
-			if (!ApiUtils.contains(CommuniqueProcessingAction.values(), config.processingAction)) {
-				// if config.processingAction not in CommuniqueProcessingAction.values
-				// deal with invalid processing action
-				this.showMessageDialog("Invalid processing action.\n"
-						+ "Select a valid processing action", CommuniqueMessages.ERROR);
-				return;
+			regionProgress = "";
+			stream = sentListParser()
+					.setListener((done, total, eta) -> regionProgress = String.format(", %d / %d regions", done, total))
+					.stream(tokens); // planning rejects invalid tokens, e.g. unknown attributes
+		} catch (RuntimeException e) {
+			showParseError(e);
+			return;
+		}
+
+		// Resolve in the background, so that the window stays responsive while lists are fetched
+		btnParse.setEnabled(false);
+		progressLabel.setText("0 resolved");
+		resolve(stream, config.processingAction == CommuniqueProcessingAction.NONE);
+	}
+
+	/**
+	 * Waits, in the background, for recipients to be resolved, then asks for confirmation to send to them.
+	 * @param stream    of recipients
+	 * @param mayStream if, since the order need not change, sending may start while recipients are being resolved
+	 */
+	private void resolve(JTelegramRecipients stream, boolean mayStream) {
+		Thread resolver = new Thread(() -> {
+			try {
+				// If resolving takes a while, offer to send as recipients are resolved
+				if (mayStream && !awaitResolved(stream, STREAM_AFTER)) {
+					EventQueue.invokeLater(() -> offerStreaming(stream));
+					return;
+				}
+				awaitResolved(stream, -1);
+				List<String> list = config.processingAction.apply(new ArrayList<>(stream.awaitAll()));
+				EventQueue.invokeLater(() -> confirmSend(list));
+
+			} catch (InterruptedException e) {
+				stream.cancel();
+				EventQueue.invokeLater(this::resetParse);
+
+			} catch (RuntimeException e) {
+				EventQueue.invokeLater(() -> {
+					resetParse();
+					showParseError(e);
+				});
 			}
-			parsedRecipients = config.processingAction.apply(parsedRecipients);
+		}, "Communique recipient resolver");
+		resolver.setDaemon(true);
+		resolver.start();
+	}
 
-		} catch (PatternSyntaxException pse) {
-			// note 2020-01-27: better that regex errors are shown in monospaced font
-			JLabel label = new JLabel(
-					String.format("<html>Regex pattern syntax error. <br /><pre>%s</pre></html>",
-							pse.getMessage().replace("\n", "<br />"))
-			);
-			// pass to message dialog
-			LOGGER.log(Level.SEVERE, "Exception in parsing recipients. Displaying to user", pse);
-			this.showMessageDialog(label, CommuniqueMessages.ERROR);
-			return;
+	/**
+	 * Waits for recipients to be resolved, showing in the progress label how many have been so far, and how many
+	 * regions of any region tag have been expanded.
+	 * @param stream  of recipients
+	 * @param timeout maximum seconds to wait, or -1 to wait until all are resolved
+	 * @return true if all recipients are resolved
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	private boolean awaitResolved(JTelegramRecipients stream, int timeout) throws InterruptedException {
+		for (int waited = 0; timeout < 0 || waited < timeout; waited++) {
+			if (stream.awaitComplete(1, TimeUnit.SECONDS)) return true;
+			String text = stream.size() + " resolved" + regionProgress;
+			EventQueue.invokeLater(() -> progressLabel.setText(text));
+		}
+		return stream.isComplete();
+	}
 
-		} catch (JTelegramException | IllegalArgumentException jte) {
-			LOGGER.log(Level.SEVERE, "Exception in parsing recipients. Displaying to user", jte);
-			this.showMessageDialog(jte.getMessage(), CommuniqueMessages.ERROR);
+	/**
+	 * Offers to start sending while recipients are still being resolved. If declined, sending is confirmed as usual
+	 * once all are resolved.
+	 * @param stream of recipients, which are still being resolved
+	 */
+	private void offerStreaming(JTelegramRecipients stream) {
+		int choice = JOptionPane.showConfirmDialog(frame, String.format("%d recipients resolved so far; "
+						+ "the rest are still being resolved.\n"
+						+ "Start sending now, to each recipient as it is resolved? Otherwise, wait until all are.",
+				stream.size()), CommuniqueMessages.TITLE, JOptionPane.YES_NO_CANCEL_OPTION,
+				JOptionPane.PLAIN_MESSAGE);
+		if (choice == JOptionPane.NO_OPTION) {
+			LOGGER.info("Streaming send declined, waiting for all recipients");
+			resolve(stream, false);
 			return;
 		}
+
+		if (choice == JOptionPane.YES_OPTION) {
+			// Confirm as usual, with the recipients shown as they are resolved
+			CommuniqueSendDialog sendDialog = new CommuniqueSendDialog(frame, stream, currentWaitTime());
+			LOGGER.info("CommuniqueSendDialog " + (sendDialog.getValue() == 0
+					? "cancelled"
+					: "accepted with " + sendDialog.getValue() + " while streaming"));
+			if (sendDialog.getValue() == CommuniqueSendDialog.SEND) {
+				progressLabel.setText(String.format("0 / %d+", stream.size()));
+				btnParse.setEnabled(true);
+				send(stream);
+				return;
+			}
+		}
+		LOGGER.info("Streaming send cancelled");
+		stream.cancel();
+		resetParse();
+	}
+
+	/**
+	 * Asks for confirmation to send to resolved recipients, then sends.
+	 * @param recipients all resolved
+	 */
+	private void confirmSend(List<String> recipients) {
 		LOGGER.info("Recipients Parsed");
+		resetParse();
+		parsedRecipients = recipients;
 
 		// Change GUI elements
 		progressLabel.setText("0 / " + parsedRecipients.size());
@@ -700,21 +880,46 @@ public class Communique extends AbstractCommunique implements JTelegramLogger {
 		LOGGER.info("CommuniqueSendDialog " + (sendDialog.getValue() == 0
 				? "cancelled"
 				: "accepted with " + sendDialog.getValue()));
-		if (sendDialog.getValue() == CommuniqueSendDialog.SEND) send();
+		if (sendDialog.getValue() == CommuniqueSendDialog.SEND) send(JTelegramRecipients.of(parsedRecipients));
+	}
+
+	/**
+	 * Re-enables the parse button, and resets the progress label, once recipients are no longer being resolved.
+	 */
+	private void resetParse() {
+		btnParse.setEnabled(true);
+		progressLabel.setText("? / ?");
+	}
+
+	/**
+	 * Shows why recipients could not be resolved.
+	 * @param e with which resolution failed
+	 */
+	private void showParseError(RuntimeException e) {
+		LOGGER.log(Level.SEVERE, "Exception in parsing recipients. Displaying to user", e);
+		if (e instanceof PatternSyntaxException) {
+			// note 2020-01-27: better that regex errors are shown in monospaced font
+			JLabel label = new JLabel(
+					String.format("<html>Regex pattern syntax error. <br /><pre>%s</pre></html>",
+							e.getMessage().replace("\n", "<br />"))
+			);
+			this.showMessageDialog(label, CommuniqueMessages.ERROR);
+		} else this.showMessageDialog(e.getMessage(), CommuniqueMessages.ERROR);
 	}
 
 	/**
 	 * Sending thread. It executes all of these commands in the <code>Runner</code> thread and then calls the completion
 	 * method.
+	 * @param recipients to send to, which may still be being resolved
 	 */
-	private void send() {
+	private void send(JTelegramRecipients recipients) {
 
 		// sending logic
 		if (!sendingThread.isAlive()) {
 			client.setKillThread(false);
 			Runnable runner = () -> {
 
-				client.setRecipients(parsedRecipients);    // Set recipients
+				client.setRecipients(recipients);    // Set recipients
 				client.setKeys(new JTelegramKeys(
 						txtClientKey.getText().trim(),
 						txtSecretKey.getText().trim(),
@@ -724,24 +929,23 @@ public class Communique extends AbstractCommunique implements JTelegramLogger {
 				// Set recruitment status, JavaTelegram defaults to true
 				client.setTelegramType(this.currentTelegramType());
 
-				// Save client key
-				try {
-					CommuniqueLoader.writeProperties(txtClientKey.getText());
-					CommuniqueLoader loader = new CommuniqueLoader(appSupport.resolve("autosave.txt"));
-					loader.save(exportState());
-
-				} catch (IOException e) {
-					LOGGER.severe("Exception in writing autosave or properties file");
-					e.printStackTrace();
-				}
+				// Save client key; the configuration is autosaved in the background
+				CommuniqueLoader.writeProperties(txtClientKey.getText());
+				autosaver.changed();
 
 				// set wait time
 				client.setWaitTime(this.currentWaitTime());
 
 				// Create tracker, initialise success tracking HashMap
 				rSuccessTracker = new LinkedHashMap<>();
-				parsedRecipients.forEach(r -> rSuccessTracker.put(r, false));
-				if (rSuccessTracker == null) LOGGER.severe("Success tracker is null");
+				recipients.toList().forEach(r -> rSuccessTracker.put(r, false));
+
+				// Record each telegram as it is sent, in case we are killed before the next autosave
+				try {
+					journal = new CommuniqueLoader(appSupport.resolve("autosave.txt")).openJournal();
+				} catch (IOException e) {
+					LOGGER.log(Level.WARNING, "Cannot open send journal", e);
+				}
 
 				try {
 					client.connect();
@@ -749,8 +953,18 @@ public class Communique extends AbstractCommunique implements JTelegramLogger {
 					LOGGER.log(Level.SEVERE, "JTelegramException in send", jte);
 					Communique.this.showMessageDialog(jte.getMessage(), CommuniqueMessages.ERROR);
 					return;
+				} finally {
+					if (journal != null) journal.close();
+					journal = null;
 				}
 
+				// Recipients resolved while sending are only now all known
+				parsedRecipients = recipients.toList();
+				parsedRecipients.forEach(r -> rSuccessTracker.putIfAbsent(r, false));
+				if (recipients.getFailure() != null)
+					Communique.this.showMessageDialog("Could not resolve all recipients: "
+							+ recipients.getFailure().getMessage(), CommuniqueMessages.ERROR);
+
 				cleanupSend();
 			};
 
@@ -766,6 +980,12 @@ public class Communique extends AbstractCommunique implements JTelegramLogger {
 	 */
 	private void cleanupSend() {
 		LOGGER.info("Queries complete");
+		JInfoFetcher.instance().getCacheStats().forEach(s -> LOGGER.info(s.toString()));
+		try {
+			JInfoFetcher.instance().saveCache(appSupport.resolve(JInfoDiskCache.CACHE_FILE));
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Cannot save recipient cache", e);
+		}
 
 		List<String> messages = new ArrayList<>();
 		messages.add(String.format("Successful queries to %d of %d nations.\n",
@@ -810,8 +1030,10 @@ public class Communique extends AbstractCommunique implements JTelegramLogger {
 
 		txtWaitTime.setText(config.waitString); // get wait string
 
-		// set text from cRecipients
+		// set text from cRecipients; the sent list is not shown, as it is not edited by hand
 		txtrCode.setText(CODE_HEADER + String.join("\n", config.getcRecipientsString()));
+		int sent = config.getSentList().size();
+		if (sent > 0) appendCode(String.format("\n# Excluding %d nations already sent to", sent));
 
 		LOGGER.info("Communique info imported");
 	}
@@ -823,6 +1045,13 @@ public class Communique extends AbstractCommunique implements JTelegramLogger {
 		return this.config;
 	}
 
+	/**
+	 * @return parser which excludes nations in the sent list
+	 */
+	private Communique7Parser sentListParser() {
+		return new Communique7Parser().exclude(config.getSentList().asSet());
+	}
+
 	private void appendCode(Object input) {
 		txtrCode.append("\n" + input.toString());
 	}
@@ -879,8 +1108,12 @@ public class Communique extends AbstractCommunique implements JTelegramLogger {
 	@Override
 	public void sentTo(String recipientName, int x, int length) {
 
-		String recipient = CommuniqueRecipients.createExcludedNation(recipientName).toString();
-		txtrCode.append(x == 0 ? "\n\n" + recipient : "\n" + recipient);
+		// record in the sent list, showing as a comment, as tokens in the code would be saved to the configuration
+		config.getSentList().add(recipientName);
+		txtrCode.append((x == 0 ? "\n\n" : "\n") + "# sent to " + recipientName);
+		CommuniqueJournal journal = this.journal;
+		if (journal != null) journal.queued(recipientName);
+		autosaver.changed();
 
 		// Progress bar reset code
 		if (timer != null) {
@@ -909,6 +1142,24 @@ public class Communique extends AbstractCommunique implements JTelegramLogger {
 
 	}
 
+	/**
+	 * @see com.git.ifly6.nsapi.telegram.JTelegramLogger#skipped(java.lang.String)
+	 */
+	@Override
+	public void skipped(String recipientName) {
+		CommuniqueJournal journal = this.journal;
+		if (journal != null) journal.skipped(recipientName);
+	}
+
+	/**
+	 * @see com.git.ifly6.nsapi.telegram.JTelegramLogger#failed(java.lang.String)
+	 */
+	@Override
+	public void failed(String recipientName) {
+		CommuniqueJournal journal = this.journal;
+		if (journal != null) journal.failed(recipientName);
+	}
+
 	private List<CommuniqueRecipient> exportRecipients() {
 		return Arrays.stream(txtrCode.getText().split("\n"))
 				.filter(ApiUtils::isNotEmpty)
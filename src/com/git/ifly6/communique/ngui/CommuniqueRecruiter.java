@@ -174,7 +174,7 @@ public class CommuniqueRecruiter extends AbstractCommuniqueRecruiter implements
 				send();
 
 			} else { // SHUTTING DOWN
-				thread.interrupt();
+				thread.interrupt(); // which stops searching
 				Path savePath = CommuniqueNativisation.showFileChooser(frame, FileDialog.SAVE);
 
 				// Cancel saving if null
@@ -357,7 +357,7 @@ public class CommuniqueRecruiter extends AbstractCommuniqueRecruiter implements
 		JMenuItem mntmClose = new JMenuItem("Close");
 		mntmClose.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_W, CommuniqueConstants.COMMAND_KEY));
 		mntmClose.addActionListener(e -> {
-			if (thread != null) thread.interrupt();
+			if (thread != null) thread.interrupt(); // which stops searching
 			frame.setVisible(false);
 			frame.dispose();
 		});
@@ -437,10 +437,10 @@ public class CommuniqueRecruiter extends AbstractCommuniqueRecruiter implements
 		rList.add(new CommuniqueRecipient(FilterType.NORMAL, RecipientType.FLAG, "recruit"));
 		rList.addAll(filterList); // add filtered list
 		rList.addAll(listProscribedRegions()); // add proscribed regions
-		rList.addAll(sentList); // add sent list
 
 		// Sync up with Communique
 		config.setcRecipients(rList);
+		config.setSentList(sentList);
 		communique.importState(config);
 
 	}
@@ -499,16 +499,39 @@ public class CommuniqueRecruiter extends AbstractCommuniqueRecruiter implements
 	@Override
 	public void send() {
 
-		proscribedRegions = listProscribedRegions();
+		setProscribedRegions(listProscribedRegions());
 		// note that filter list is set in cconfig
+		startSearching();
 
 		Runnable runner = () -> {
-			AtomicReference<String> nextRecipient = new AtomicReference<>(this.getRecipient().getName());
-			AtomicBoolean foundNext = new AtomicBoolean(false);
+			try {
+				recruit();
+			} finally {
+				stopSearching();
+			}
+		};
+
+		thread = new Thread(runner);
+		thread.start();    // thread#run does not work
+	}
+
+	/**
+	 * Sends a telegram about every three minutes until interrupted. No recipient is known at first, so the first pass
+	 * starts at the point where the next recipient is searched for, and retries that search as later passes do.
+	 */
+	private void recruit() {
+		AtomicReference<String> nextRecipient = new AtomicReference<>();
+		AtomicBoolean foundNext = new AtomicBoolean(false);
+		AtomicBoolean finding = new AtomicBoolean(false);
+
+		while (true) {
 
-			while (true) {
+			int start = 0;
+			if (nextRecipient.get() == null) {
+				start = 180; // none found yet, so find the first at once
 
-				JavaTelegram client = new JavaTelegram(CommuniqueRecruiter.this);
+			} else {
+				JavaTelegram client = new JavaTelegram(this);
 				client.setKeys(new JTelegramKeys(
 						clientKeyField.getText().trim(),
 						secretKeyField.getText().trim(),
@@ -526,35 +549,39 @@ public class CommuniqueRecruiter extends AbstractCommuniqueRecruiter implements
 				LOGGER.info("Next recruitment telegram probably in 180 seconds at " + nextTelegramTime);
 
 				foundNext.set(false);
+			}
 
-				for (int x = 0; ; x++) {
+			for (int x = start; ; x++) {
 
-					try {
-						progressBar.setValue(x);
-						Thread.sleep(1000);    // 1-second intervals, wake to update the progressBar
-					} catch (InterruptedException e) {
-						return; // break all the things
-					}
+				try {
+					progressBar.setValue(x);
+					Thread.sleep(1000);    // 1-second intervals, wake to update the progressBar
+				} catch (InterruptedException e) {
+					return; // break all the things
+				}
 
-					if (x == 170) {
-						Runnable runnable1 = () -> {
+				if (x >= 170 && !foundNext.get() && !finding.get()) { // again if the last search failed
+					finding.set(true);
+					Runnable runnable1 = () -> {
+						try {
 							nextRecipient.set(getRecipient().getName());
 							LOGGER.info("Got next recipient " + nextRecipient.get());
 							foundNext.set(true);
-						};
-						new Thread(runnable1).start();
-					}
-
-					if (x > 180 && foundNext.get()) {
-						LOGGER.info(String.format("Starting next loop at %d s for telegram %d", x, sentList.size()));
-						break;  // break and send the next telegram
-					}
+						} catch (RuntimeException e) {
+							LOGGER.warning("Cannot find next recipient; trying again. " + e.getMessage());
+						} finally {
+							finding.set(false);
+						}
+					};
+					new Thread(runnable1).start();
+				}
 
+				if (x > 180 && foundNext.get()) {
+					LOGGER.info(String.format("Starting next loop at %d s for telegram %d", x, sentList.size()));
+					break;  // break and send the next telegram
 				}
-			}
-		};
 
-		thread = new Thread(runner);
-		thread.start();    // thread#run does not work
+			}
+		}
 	}
 }
@@ -18,6 +18,7 @@ package com.git.ifly6.communique.ngui;
 
 import com.git.ifly6.communique.CommuniqueUtilities;
 import com.git.ifly6.communique.data.Communique7Parser;
+import com.git.ifly6.nsapi.telegram.JTelegramRecipients;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
@@ -27,6 +28,7 @@ import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTextPane;
+import javax.swing.Timer;
 import javax.swing.border.EmptyBorder;
 import java.awt.BorderLayout;
 import java.awt.Dimension;
@@ -42,7 +44,8 @@ import java.util.logging.Logger;
 
 /**
  * <code>CommuniqueSendDialog</code> shows the user the results of the parsing of the recipients and an estimate of how
- * much time it will take to send. It then returns a Send or Cancel option from the user.
+ * much time it will take to send. It then returns a Send or Cancel option from the user. Recipients which are still
+ * being resolved are shown as they are, with a running count.
  */
 public class CommuniqueSendDialog extends JDialog {
 
@@ -55,8 +58,20 @@ public class CommuniqueSendDialog extends JDialog {
 	private int returnValue = 0;
 
 	private JButton sendButton;
+	private Timer refresher;
 
 	public CommuniqueSendDialog(JFrame parent, List<String> parsedRecipients, int delay) {
+		this(parent, JTelegramRecipients.of(parsedRecipients), delay);
+	}
+
+	/**
+	 * Creates a dialog confirming sending to recipients which may still be being resolved. Until they all are, those
+	 * shown are refreshed every second.
+	 * @param parent     frame
+	 * @param recipients to send to
+	 * @param delay      between telegrams, in milliseconds
+	 */
+	public CommuniqueSendDialog(JFrame parent, JTelegramRecipients recipients, int delay) {
 		super(parent, true);
 
 		Dimension screenDimensions = Toolkit.getDefaultToolkit().getScreenSize();
@@ -80,10 +95,8 @@ public class CommuniqueSendDialog extends JDialog {
 		textPane.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
 		textPane.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 11));
 		textPane.setEditable(false);
-		textPane.setText(String.join("\n", parsedRecipients));
 
-		JLabel lblConfirmSendTo = new JLabel(String.format("Confirm send to %d recipients?",
-				parsedRecipients.size()));
+		JLabel lblConfirmSendTo = new JLabel();
 		lblConfirmSendTo.setBorder(BorderFactory.createEmptyBorder(0, 5, 5, 5));
 		contentPanel.add(lblConfirmSendTo, BorderLayout.NORTH);
 
@@ -96,8 +109,7 @@ public class CommuniqueSendDialog extends JDialog {
 		gbl_buttonPane.columnWeights = new double[]{1.0, 0.0, 0.0, Double.MIN_VALUE};
 		gbl_buttonPane.rowWeights = new double[]{0.0, Double.MIN_VALUE};
 		buttonPane.setLayout(gbl_buttonPane);
-		JLabel lblThisWillTake = new JLabel(String.format("Estimated sending time: %s",
-				estimateTime(parsedRecipients.size(), delay)));
+		JLabel lblThisWillTake = new JLabel();
 		lblThisWillTake.setBorder(BorderFactory.createEmptyBorder(0, 5, 0, 0));
 		GridBagConstraints gbc_lblThisWillTake = new GridBagConstraints();
 		gbc_lblThisWillTake.fill = GridBagConstraints.HORIZONTAL;
@@ -149,11 +161,30 @@ public class CommuniqueSendDialog extends JDialog {
 			}
 		});
 
+		Runnable refresh = () -> {
+			boolean complete = recipients.isComplete();
+			List<String> list = recipients.toList();
+			textPane.setText(String.join("\n", list));
+			lblConfirmSendTo.setText(complete
+					? String.format("Confirm send to %d recipients?", list.size())
+					: String.format("Confirm send to %d recipients resolved so far, and those still being resolved?",
+							list.size()));
+			lblThisWillTake.setText(String.format("Estimated sending time: %s%s",
+					estimateTime(list.size(), delay), complete ? "" : "+"));
+			if (complete && refresher != null) refresher.stop();
+		};
+		refresh.run();
+		if (!recipients.isComplete()) {
+			refresher = new Timer(1000, e -> refresh.run());
+			refresher.start();
+		}
+
 		this.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
 		this.setVisible(true);
 	}
 
 	private void closeDialog() {
+		if (refresher != null) refresher.stop();
 		this.setVisible(false);
 	}
 
@@ -0,0 +1,229 @@
+package com.git.ifly6.communique.ngui;
+
+import com.git.ifly6.nsapi.NSConnection;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Checks recruitment candidates in the background, between telegrams, so that when a telegram is due a checked
+ * recipient is ready at once, rather than new nations being checked one by one, each with an API call, at the moment
+ * the telegram should be sent.
+ * <p>
+ * New nations are taken from {@link AbstractCommuniqueRecruiter#getNewNations()} every few seconds and ranked by when
+ * they were first seen, newer nations ranking higher. The highest ranked nation not yet checked is checked next with
+ * {@link AbstractCommuniqueRecruiter#passesFilters(String)} and {@link
+ * AbstractCommuniqueRecruiter#isRecruitable(String)}. Checks which call the API are made at most once every {@link
+ * #CHECK_INTERVAL} milliseconds, so that checking leaves most of the rate limit to everything else. Nations which pass
+ * are kept ready, by rank, for {@link #READY_TTL}, after which they are checked again if still among the new nations,
+ * as whether a nation may be recruited can change. Expired nations are dropped at each refresh, and at most {@link
+ * #READY_CAPACITY} are kept, so that a recruiter which sends slowly does not accumulate them.
+ * </p>
+ * <p>
+ * When the filters or proscribed regions change, the recruiter calls {@link #reset()}, so that no nation checked
+ * under the old ones is taken.
+ * </p>
+ */
+class RecruitmentQualifier {
+
+	private static final Logger LOGGER = Logger.getLogger(RecruitmentQualifier.class.getName());
+
+	/** Minimum time between checks which call the API, in milliseconds. */
+	static final long CHECK_INTERVAL = 1_500;
+
+	/** Time between fetches of new nations, in milliseconds. */
+	static final long REFRESH_INTERVAL = 5_000;
+
+	/**
+	 * Time for which a checked nation is kept ready. Verdicts are cached for the same time, as {@link
+	 * AbstractCommuniqueRecruiter#VERDICT_TTL}, so that a nation checked again after this fetches a new verdict.
+	 */
+	static final Duration READY_TTL = Duration.ofMinutes(5);
+
+	/** Number of nations remembered as seen, so that they are not checked again. */
+	private static final int REMEMBERED = 2_000;
+
+	/** Maximum number of nations waiting to be checked; the lowest ranked are dropped. */
+	private static final int PENDING_CAPACITY = 200;
+
+	/** Maximum number of nations kept ready; the lowest ranked are dropped. */
+	static final int READY_CAPACITY = 200;
+
+	private final AbstractCommuniqueRecruiter recruiter;
+
+	/** Ranks of nations seen, by name, oldest seen first. */
+	private final Map<String, Long> ranks = new LinkedHashMap<String, Long>() {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+			return size() > REMEMBERED;
+		}
+	};
+	private final TreeMap<Long, String> pending = new TreeMap<>();
+	private final TreeMap<Long, Ready> ready = new TreeMap<>();
+	private long nextRank = 0;
+	private long generation = 0; // changed on reset, so that checks begun before are discarded
+
+	private Thread thread;
+
+	RecruitmentQualifier(AbstractCommuniqueRecruiter recruiter) {
+		this.recruiter = recruiter;
+	}
+
+	/**
+	 * Starts checking in the background, if not already started.
+	 */
+	synchronized void start() {
+		if (thread != null && thread.isAlive()) return;
+		thread = new Thread(this::run, "RecruitmentQualifier");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops checking. Nations already checked are kept ready.
+	 */
+	synchronized void stop() {
+		if (thread != null) thread.interrupt();
+		thread = null;
+	}
+
+	/**
+	 * Takes the highest ranked ready nation, without calling the API. Nations sent to, or checked too long ago, are
+	 * dropped.
+	 * @return reference name, or <code>null</code> if none is ready
+	 */
+	synchronized String take() {
+		Instant expiry = Instant.now().minus(READY_TTL);
+		Map.Entry<Long, Ready> entry;
+		while ((entry = ready.pollLastEntry()) != null) {
+			Ready r = entry.getValue();
+			if (r.checked.isAfter(expiry) && !recruiter.sentList.contains(r.name)) return r.name;
+			if (r.checked.isBefore(expiry)) ranks.remove(r.name); // check again if seen again
+		}
+		return null;
+	}
+
+	/**
+	 * Forgets all nations seen, so that they are checked again against filters or proscribed regions which have
+	 * changed. Checks under way are discarded when they complete.
+	 */
+	synchronized void reset() {
+		ready.clear();
+		pending.clear();
+		ranks.clear();
+		generation++;
+	}
+
+	/**
+	 * @return number of nations ready
+	 */
+	synchronized int readySize() {
+		return ready.size();
+	}
+
+	private void run() {
+		long nextRefresh = 0;
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				if (System.currentTimeMillis() >= nextRefresh) {
+					refresh();
+					nextRefresh = System.currentTimeMillis() + REFRESH_INTERVAL;
+				}
+
+				Map.Entry<Long, String> next;
+				long checkedIn;
+				synchronized (this) {
+					next = pending.pollLastEntry();
+					checkedIn = generation;
+				}
+				if (next == null) {
+					Thread.sleep(Math.max(0, nextRefresh - System.currentTimeMillis()));
+					continue;
+				}
+
+				check(next.getKey(), next.getValue(), checkedIn);
+			}
+		} catch (InterruptedException e) {
+			// stopped
+		}
+		LOGGER.info("Stopped checking recruitment candidates");
+	}
+
+	/** Adds new nations not yet seen to those waiting to be checked. */
+	private void refresh() throws InterruptedException {
+		List<String> nations;
+		try {
+			nations = recruiter.getNewNations();
+		} catch (RuntimeException e) {
+			LOGGER.log(Level.WARNING, "Cannot fetch new nations to check", e);
+			Thread.sleep(NSConnection.WAIT_TIME);
+			return;
+		}
+
+		synchronized (this) {
+			// newest first, so rank in reverse so that newer nations rank higher
+			Collections.reverse(nations);
+			for (String nation : nations)
+				if (!ranks.containsKey(nation)) {
+					long rank = nextRank++;
+					ranks.put(nation, rank);
+					pending.put(rank, nation);
+				}
+			while (pending.size() > PENDING_CAPACITY) pending.pollFirstEntry();
+			prune();
+		}
+	}
+
+	/** Drops ready nations sent to or checked too long ago. */
+	private synchronized void prune() {
+		Instant expiry = Instant.now().minus(READY_TTL);
+		ready.values().removeIf(r -> {
+			if (!r.checked.isBefore(expiry)) return recruiter.sentList.contains(r.name);
+			ranks.remove(r.name); // check again if seen again
+			return true;
+		});
+	}
+
+	/** Checks a nation, keeping it ready if it passes and there has been no reset since it was taken to check. */
+	private void check(long rank, String nation, long checkedIn) throws InterruptedException {
+		boolean recruitable;
+		try { // attribute filters may also call the API
+			if (!recruiter.passesFilters(nation)) return;
+			recruitable = recruiter.isRecruitable(nation);
+		} catch (RuntimeException e) { // cannot check now, check again later
+			LOGGER.log(Level.FINE, "Cannot check " + nation, e);
+			synchronized (this) {
+				if (generation == checkedIn) pending.put(rank, nation);
+			}
+			Thread.sleep(CHECK_INTERVAL);
+			return;
+		}
+
+		if (recruitable) synchronized (this) {
+			if (generation != checkedIn) return; // checked against filters since replaced
+			ready.put(rank, new Ready(nation, Instant.now()));
+			while (ready.size() > READY_CAPACITY) ready.pollFirstEntry();
+			LOGGER.fine(String.format("Checked %s, %d ready", nation, ready.size()));
+		}
+		Thread.sleep(CHECK_INTERVAL);
+	}
+
+	/** A nation which passed checks, and when. */
+	private static class Ready {
+		private final String name;
+		private final Instant checked;
+
+		private Ready(String name, Instant checked) {
+			this.name = name;
+			this.checked = checked;
+		}
+	}
+
+}
@@ -0,0 +1,60 @@
+package com.git.ifly6.communique.ngui;
+
+import com.git.ifly6.nsapi.ApiUtils;
+import com.git.ifly6.nsapi.NSException;
+import com.git.ifly6.nsapi.NSNation;
+
+/**
+ * What was found when a recruitment candidate was fetched: whether it exists and is recruitable, and the region in
+ * which it was. Verdicts are cached by {@link AbstractCommuniqueRecruiter}, so that a nation which stays in the list of
+ * new nations for several telegrams is fetched once. Whether its region is proscribed is not part of the verdict, but
+ * tested against the proscribed regions each time, so that changing them does not require fetching it again.
+ */
+class RecruitmentVerdict {
+
+	/** Reasons for a verdict. */
+	enum Reason {
+		RECRUITABLE, NOT_RECRUITABLE, NONEXISTENT
+	}
+
+	private final Reason reason;
+	private final String region;
+
+	private RecruitmentVerdict(Reason reason, String region) {
+		this.reason = reason;
+		this.region = region;
+	}
+
+	/**
+	 * Fetches a nation and gives the verdict on it.
+	 * @param nation reference name
+	 * @return verdict
+	 * @throws com.git.ifly6.nsapi.NSIOException if the nation cannot be fetched
+	 */
+	static RecruitmentVerdict fetch(String nation) {
+		try {
+			NSNation prNation = new NSNation(nation).populateData();
+			return new RecruitmentVerdict(prNation.isRecruitable() ? Reason.RECRUITABLE : Reason.NOT_RECRUITABLE,
+					ApiUtils.ref(prNation.getRegion()));
+
+		} catch (NSException e) {
+			// if it doesn't exist or otherwise fails, ignore this one
+			return new RecruitmentVerdict(Reason.NONEXISTENT, null);
+		}
+	}
+
+	Reason getReason() {
+		return reason;
+	}
+
+	/** @return reference name of region in which the nation was, or <code>null</code> if it does not exist */
+	String getRegion() {
+		return region;
+	}
+
+	@Override
+	public String toString() {
+		return region == null ? reason.toString() : String.format("%s in %s", reason, region);
+	}
+
+}
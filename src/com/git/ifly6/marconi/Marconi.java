@@ -19,13 +19,23 @@ package com.git.ifly6.marconi;
 
 import com.git.ifly6.communique.CommuniqueUtilities;
 import com.git.ifly6.communique.data.Communique7Parser;
-import com.git.ifly6.communique.data.CommuniqueRecipients;
+import com.git.ifly6.communique.io.CommuniqueAutosaver;
 import com.git.ifly6.communique.io.CommuniqueConfig;
+import com.git.ifly6.communique.io.CommuniqueJournal;
+import com.git.ifly6.communique.io.CommuniqueLoader;
+import com.git.ifly6.communique.io.CommuniqueProcessingAction;
 import com.git.ifly6.communique.ngui.AbstractCommunique;
 import com.git.ifly6.nsapi.telegram.JTelegramLogger;
+import com.git.ifly6.nsapi.telegram.JTelegramRecipients;
 import com.git.ifly6.nsapi.telegram.JavaTelegram;
+import com.git.ifly6.nsapi.telegram.util.JInfoFetcher;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.FileHandler;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -35,21 +45,46 @@ public class Marconi extends AbstractCommunique implements JTelegramLogger {
 	private static final Logger LOGGER = Logger.getLogger(Marconi.class.getName());
 	private static FileHandler handler;
 
+	/** Seconds after a telegram is sent at which the configuration is saved, unless more are sent in the meantime. */
+	private static final int AUTOSAVE_DELAY = 5;
+
+	/** Maximum seconds for which the configuration can be left unsaved while sending. */
+	private static final int AUTOSAVE_MAX_DELAY = 60;
+
+	/** Seconds to wait for all recipients to be resolved before starting to send to them as they are. */
+	private static final int STREAM_AFTER = 5;
+
 	private JavaTelegram client = new JavaTelegram(this);
 	private CommuniqueConfig config;
 
 	private boolean skipChecks;
 	private boolean recruiting;
 
+	private CommuniqueJournal journal;
+	private CommuniqueAutosaver autosaver;
+
 	public Marconi(boolean recruiting) {
 		this.recruiting = recruiting;
 	}
 
 	public void send() {
 
-		// Process the Recipients list into a string with two columns.
-		Communique7Parser parser = new Communique7Parser();
-		List<String> expandedRecipients = parser.apply(config.getcRecipients()).listRecipients();
+		// Resolve recipients in the background; if that takes a while, and the order need not be changed, start
+		// sending to them as they are resolved
+		JTelegramRecipients recipients = parser().stream(config.getcRecipients());
+		List<String> expandedRecipients;
+		try {
+			if (config.getProcessingAction() == CommuniqueProcessingAction.NONE
+					&& !recipients.awaitComplete(STREAM_AFTER, TimeUnit.SECONDS)) {
+				sendStreaming(recipients);
+				return;
+			}
+			expandedRecipients = new ArrayList<>(recipients.awaitAll());
+		} catch (InterruptedException e) {
+			recipients.cancel();
+			Thread.currentThread().interrupt();
+			return;
+		}
 
 		// Apply processing action
 		expandedRecipients = config.getProcessingAction().apply(expandedRecipients);
@@ -78,14 +113,67 @@ public class Marconi extends AbstractCommunique implements JTelegramLogger {
 		}
 
 		// Set the client up and go.
+		client.setRecipients(expandedRecipients);
+		connect();
+	}
+
+	/**
+	 * Sends to recipients as they are resolved, after confirming, as they cannot all be shown in advance.
+	 */
+	private void sendStreaming(JTelegramRecipients recipients) {
+		System.out.println();
+		System.out.printf("Resolved %d recipients so far; the rest are still being resolved and will be sent to as "
+				+ "they are%n", recipients.size());
+
+		if (!skipChecks) {
+			String recipientsReponse = MarconiUtilities
+					.promptYN("Are you sure you want to start sending now? [Yes] or [No]?");
+			if (recipientsReponse.startsWith("n")) {
+				recipients.cancel();
+				System.exit(0);
+			}
+		}
+
+		client.setRecipients(recipients);
+		connect();
+	}
+
+	private void connect() {
 		client.setKeys(config.keys);
 		client.setTelegramType(config.getTelegramType());
-		client.setRecipients(expandedRecipients);
 
 		// Check for file lock
 		if (!MarconiUtilities.isFileLocked()) client.connect();
 		else throw new RuntimeException("Cannot send, as another instance of Marconi is already sending.");
 
+		JInfoFetcher.instance().getCacheStats().forEach(s -> LOGGER.info(s.toString()));
+	}
+
+	/**
+	 * Describes how the recipients in the configuration would be resolved, without sending anything.
+	 * @param analyze if true, resolves the recipients, reporting the time, API calls, and data taken by each step;
+	 *                otherwise, only plans them, estimating API calls and time without calling the API
+	 * @return description
+	 * @see Communique7Parser#explain(List)
+	 */
+	public String explainRecipients(boolean analyze) {
+		Communique7Parser parser = parser();
+		return analyze
+				? parser.explainAnalyze(config.getcRecipients())
+				: parser.explain(config.getcRecipients());
+	}
+
+	/**
+	 * @return parser excluding the sent list, which prints progress in expanding region tags to the console
+	 */
+	private Communique7Parser parser() {
+		return new Communique7Parser()
+				.exclude(config.getSentList().asSet())
+				.setListener((done, total, eta) -> {
+					if (done % 25 == 0 || done == total)
+						System.out.printf("Expanded %d of %d regions, about %s remaining%n", done, total,
+								CommuniqueUtilities.time((int) eta.getSeconds()));
+				});
 	}
 
 	/**
@@ -115,9 +203,44 @@ public class Marconi extends AbstractCommunique implements JTelegramLogger {
 		LOGGER.info(input);
 	}
 
+	/**
+	 * Opens the send journal beside the configuration file, so that each telegram is recorded as it is sent, and
+	 * starts saving the configuration in the background as telegrams are sent. Nations left in the journal by a
+	 * previous run were added to the sent list when the configuration was loaded.
+	 * @param path of configuration file
+	 * @throws IOException if the journal cannot be opened
+	 */
+	public void openJournal(Path path) throws IOException {
+		this.journal = new CommuniqueLoader(path).openJournal();
+		this.autosaver = new CommuniqueAutosaver(path, this::exportState,
+				Duration.ofSeconds(AUTOSAVE_DELAY), Duration.ofSeconds(AUTOSAVE_MAX_DELAY));
+	}
+
+	/**
+	 * Saves any changes not yet saved in the background, then closes the send journal, if open.
+	 */
+	public void closeJournal() {
+		if (autosaver != null) autosaver.close();
+		if (journal != null) journal.close();
+	}
+
 	/** @see com.git.ifly6.nsapi.telegram.JTelegramLogger#sentTo(java.lang.String, int, int) */
 	@Override
 	public void sentTo(String nationName, int x, int length) {
-		config.addcRecipient(CommuniqueRecipients.createExcludedNation(nationName));
+		config.getSentList().add(nationName);
+		if (journal != null) journal.queued(nationName);
+		if (autosaver != null) autosaver.changed(); // also compacts journal
+	}
+
+	/** @see com.git.ifly6.nsapi.telegram.JTelegramLogger#skipped(java.lang.String) */
+	@Override
+	public void skipped(String nationName) {
+		if (journal != null) journal.skipped(nationName);
+	}
+
+	/** @see com.git.ifly6.nsapi.telegram.JTelegramLogger#failed(java.lang.String) */
+	@Override
+	public void failed(String nationName) {
+		if (journal != null) journal.failed(nationName);
 	}
 }
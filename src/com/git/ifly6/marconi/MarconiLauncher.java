@@ -20,6 +20,8 @@ package com.git.ifly6.marconi;
 import com.git.ifly6.communique.CommuniqueUtilities;
 import com.git.ifly6.communique.data.Communique7Parser;
 import com.git.ifly6.communique.data.CommuniqueRecipients;
+import com.git.ifly6.nsapi.telegram.util.JDumpIndex;
+import com.git.ifly6.nsapi.telegram.util.JInfoFetcher;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -49,12 +51,23 @@ public class MarconiLauncher {
 	// Deal with command line options
 	private static final Options COMMAND_LINE_OPTIONS;
 	private static boolean recruiting = false;
+	private static Path cachePath = null;
+	private static boolean explain = false;
+	private static boolean explainAnalyze = false;
 
 	static {
 		Options options = new Options();
 		options.addOption("h", "help", false, "Displays this message");
 		options.addOption("R", false, "Uses input data as configuration to call a recruiter that sends infinitely");
 		options.addOption("v", "version", false, "Prints version");
+		options.addOption("d", "dump", true, "Directory holding NationStates daily data dumps (nations.xml.gz and "
+				+ "optionally regions.xml.gz) from which to resolve recipients instead of the API");
+		options.addOption("c", "cache", true, "File in which to keep resolved recipient lists between runs, so that "
+				+ "unexpired lists are not fetched again");
+		options.addOption("e", "explain", false, "Prints the plan for resolving recipients, with the API calls and "
+				+ "time expected for each step, without calling the API or sending");
+		options.addOption("E", "explain-analyze", false, "Resolves recipients and prints the time, API calls, and "
+				+ "data taken by each step, without sending");
 
 		COMMAND_LINE_OPTIONS = options;
 	}
@@ -109,12 +122,28 @@ public class MarconiLauncher {
 				return;
 			}
 			if (commandLine.hasOption("R")) recruiting = true;
+			if (commandLine.hasOption("e")) explain = true;
+			if (commandLine.hasOption("E")) explainAnalyze = true;
 			if (commandLine.hasOption("v")) {
 				System.out.println("Marconi version " + Communique7Parser.version + "\n"
 						+ "Please visit https://github.com/iFlyCode/Communique/releases.\n");
 				return; // exit
 			}
 
+			if (commandLine.hasOption("d")) {
+				Path dumpPath = Paths.get(commandLine.getOptionValue("d"));
+				JInfoFetcher.instance().setDumpIndex(JDumpIndex.load(dumpPath));
+			}
+
+			if (commandLine.hasOption("c")) {
+				cachePath = Paths.get(commandLine.getOptionValue("c"));
+				try {
+					JInfoFetcher.instance().loadCache(cachePath);
+				} catch (IOException e) {
+					LOGGER.log(Level.WARNING, "Cannot load recipient cache, resolving recipients afresh", e);
+				}
+			}
+
 			Path configPath = Paths.get(commandLine.getArgs()[0]);
 			initSend(configPath);
 
@@ -133,6 +162,14 @@ public class MarconiLauncher {
 		Marconi marconi = new Marconi(recruiting);
 		marconi.load(configPath);
 
+		if (explain || explainAnalyze) {
+			System.out.println(marconi.explainRecipients(explainAnalyze));
+			if (cachePath != null) JInfoFetcher.instance().saveCache(cachePath);
+			return;
+		}
+
+		marconi.openJournal(configPath);
+
 		// If there is a recruit flag, set it to true
 		boolean recruiting = marconi.exportState().getcRecipients()
 				.contains(CommuniqueRecipients.createFlag("recruit"));
@@ -141,7 +178,8 @@ public class MarconiLauncher {
 		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
 			try {
 				LOGGER.info("Attempting to save to:" + configPath.toAbsolutePath().toString());    // save config
-				marconi.save(configPath);
+				marconi.closeJournal(); // saves any changes not yet autosaved
+				if (cachePath != null) JInfoFetcher.instance().saveCache(cachePath);
 				if (Files.deleteIfExists(MarconiUtilities.lockFile))
 					LOGGER.info("Removed file lock");    // remove file lock, if it exists
 			} catch (IOException e) {
@@ -157,7 +195,7 @@ public class MarconiLauncher {
 
 		} else {
 			marconi.send();
-			marconi.save(configPath);
+			marconi.closeJournal(); // saves any changes not yet autosaved
 
 		}
 	}
@@ -40,17 +40,37 @@ public class MarconiRecruiter extends AbstractCommuniqueRecruiter implements JTe
 
 		Runnable runner = () -> {
 
-			proscribedRegions = getProscribedRegions();
+			setProscribedRegions(getProscribedRegions());
+			startSearching();
+			try {
+				recruit();
+			} finally {
+				stopSearching();
+			}
+		};
 
-			// init with first recipient so we can immediately start sending
-			AtomicReference<String> nextRecipient = new AtomicReference<>(getRecipient().getName());
-			AtomicBoolean foundNext = new AtomicBoolean(false);
+		Thread thread = new Thread(runner);
+		thread.start();
 
-			while (true) {
+	}
 
-				int setX;
+	/**
+	 * Sends telegrams until interrupted. The first recipient is found as later ones are, in the background and again
+	 * if the search fails, but at once, so that sending can start immediately.
+	 */
+	private void recruit() {
+		AtomicReference<String> nextRecipient = new AtomicReference<>();
+		AtomicBoolean foundNext = new AtomicBoolean(false);
+		AtomicBoolean finding = new AtomicBoolean(false);
 
-				// Otherwise, start sending.
+		while (true) {
+
+			int setX;
+
+			if (nextRecipient.get() == null) {
+				setX = RECRUITMENT_DELAY; // none found yet, so find the first at once
+
+			} else { // Otherwise, start sending.
 				try {
 					JavaTelegram client = new JavaTelegram(this);
 					client.setKeys(marconi.exportState().keys);
@@ -81,42 +101,48 @@ public class MarconiRecruiter extends AbstractCommuniqueRecruiter implements JTe
 
 				}
 
-				// new 2017-03-25
-				for (AtomicInteger x = new AtomicInteger(setX); ; x.getAndIncrement()) {
+			}
 
-					try {
-						Thread.sleep(1000); // 1-second intervals, wake to update the progressBar
-						LOGGER.finest("Interval " + x.get());
-					} catch (InterruptedException e) {
-						return; // break out of it all
-					}
+			// new 2017-03-25
+			for (AtomicInteger x = new AtomicInteger(setX); ; x.getAndIncrement()) {
 
-					if (x.get() == RECRUITMENT_DELAY - FIND_NEXT_TIME) {
-						Runnable runnable1 = () -> {
+				try {
+					Thread.sleep(1000); // 1-second intervals, wake to update the progressBar
+					LOGGER.finest("Interval " + x.get());
+				} catch (InterruptedException e) {
+					return; // break out of it all
+				}
+
+				// again if the last search failed
+				if (x.get() >= RECRUITMENT_DELAY - FIND_NEXT_TIME && !foundNext.get() && !finding.get()) {
+					finding.set(true);
+					Runnable runnable1 = () -> {
+						try {
 							nextRecipient.set(getRecipient().getName());
 							LOGGER.fine("Found next recipient, " + nextRecipient.get() + ", at " + x.get());
 							foundNext.set(true);
-						};
-						LOGGER.fine("Running runnable to find next recipient at " + x.get());
-						new Thread(runnable1).start();
-						// note: this runnable will continue until it finds the next recipient
-					}
-
-					if (x.get() >= RECRUITMENT_DELAY && foundNext.get()) { // delay until recipient is found by runnable1's thread
-						// note: x.get() -> time; time - expected = delay; time - 180 = delay
-						LOGGER.info(String.format("Starting next loop, delay of %d s for telegram %d", x.get() - 180,
-								sentList.size()));
-						break; // break this loop, and dispatch the next telegram
-					}
+						} catch (RuntimeException e) {
+							marconi.log("Cannot find next recipient; trying again. " + e.getMessage());
+						} finally {
+							finding.set(false);
+						}
+					};
+					LOGGER.fine("Running runnable to find next recipient at " + x.get());
+					new Thread(runnable1).start();
+					// note: this runnable will continue until it finds the next recipient
+				}
 
+				// delay until recipient is found by runnable1's thread
+				if (x.get() >= RECRUITMENT_DELAY && foundNext.get()) {
+					// note: x.get() -> time; time - expected = delay; time - 180 = delay
+					LOGGER.info(String.format("Starting next loop, delay of %d s for telegram %d", x.get() - 180,
+							sentList.size()));
+					break; // break this loop, and dispatch the next telegram
 				}
 
 			}
-		};
-
-		Thread thread = new Thread(runner);
-		thread.start();
 
+		}
 	}
 
 	/** @return the regions currently specified as excluded in the recipients code */
@@ -0,0 +1,192 @@
+package com.git.ifly6.nsapi;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Stops requests to NationStates while it is unavailable, so that an outage is not met with a stream of requests
+ * which are bound to fail.
+ * <p>
+ * The breaker starts closed, letting all requests through. After {@link #FAILURE_THRESHOLD} consecutive failures, it
+ * opens: requests are refused at once with an {@link NSIOException}, without calling the API. Once it has been open
+ * for a while, it lets one request through as a probe. If the probe succeeds, the breaker closes and requests resume
+ * at full speed; if it fails, the breaker opens again, for twice as long, up to {@link #MAX_OPEN_TIME}.
+ * </p>
+ * <p>
+ * Only failures to reach the API, dropped connections and server errors, count as failures. Any other response,
+ * including an error such as an unknown nation or an exceeded rate limit, shows that the API is available. Changes of
+ * state are logged and given to listeners added with {@link #addListener(Consumer)}.
+ * </p>
+ * <p>
+ * There is one shared API breaker, accessible via {@link #instance()}, through which {@link NSConnection} makes every
+ * request.
+ * </p>
+ */
+public class NSCircuitBreaker {
+
+	/** States of a breaker. */
+	public enum State {
+		/** Requests are let through. */
+		CLOSED,
+		/** Requests are refused until it is time to probe. */
+		OPEN,
+		/** One request is let through as a probe; others are refused until it completes. */
+		HALF_OPEN
+	}
+
+	/** Number of consecutive failures after which the API breaker opens. */
+	public static final int FAILURE_THRESHOLD = 5;
+
+	/** Time for which the API breaker first stays open before probing, in milliseconds. */
+	public static final long MIN_OPEN_TIME = 5_000;
+
+	/** Maximum time for which the API breaker stays open before probing, in milliseconds. */
+	public static final long MAX_OPEN_TIME = 120_000;
+
+	private static final Logger LOGGER = Logger.getLogger(NSCircuitBreaker.class.getName());
+	private static final NSCircuitBreaker API_BREAKER =
+			new NSCircuitBreaker(FAILURE_THRESHOLD, MIN_OPEN_TIME, MAX_OPEN_TIME);
+
+	private final int threshold;
+	private final long minOpenNanos;
+	private final long maxOpenNanos;
+
+	private final List<Consumer<State>> listeners = new CopyOnWriteArrayList<>();
+
+	private State state = State.CLOSED;
+	private int failures = 0;
+	private long openNanos;
+	private long probeAt;
+	private boolean probing = false;
+	private Thread prober;
+
+	/**
+	 * Creates a breaker.
+	 * @param threshold      number of consecutive failures after which it opens
+	 * @param minOpenMillis  time for which it first stays open before probing, in milliseconds
+	 * @param maxOpenMillis  maximum time for which it stays open before probing, in milliseconds
+	 */
+	public NSCircuitBreaker(int threshold, long minOpenMillis, long maxOpenMillis) {
+		if (threshold < 1) throw new IllegalArgumentException("Breaker must allow at least one failure");
+		if (minOpenMillis < 0 || maxOpenMillis < minOpenMillis)
+			throw new IllegalArgumentException("Breaker open times must be non-negative and in order");
+		this.threshold = threshold;
+		this.minOpenNanos = TimeUnit.MILLISECONDS.toNanos(minOpenMillis);
+		this.maxOpenNanos = TimeUnit.MILLISECONDS.toNanos(maxOpenMillis);
+	}
+
+	/**
+	 * Returns the breaker shared by all callers of the NationStates API in this process.
+	 * @return shared API breaker
+	 */
+	public static NSCircuitBreaker instance() {
+		return API_BREAKER;
+	}
+
+	/**
+	 * Asks to make a request. Every request let through must be followed by {@link #succeeded()} or {@link
+	 * #failed()}, or by {@link #release()} if it is not made after all.
+	 * @throws NSIOException if the breaker is open, or half open with a probe already made
+	 */
+	public void acquire() {
+		boolean probe;
+		synchronized (this) {
+			if (state == State.CLOSED) return;
+			if (probing || System.nanoTime() - probeAt < 0)
+				throw new NSIOException(String.format("NationStates unavailable; next attempt in %d ms",
+						millisUntilProbe()));
+			probing = true;
+			prober = Thread.currentThread();
+			probe = state == State.OPEN;
+			state = State.HALF_OPEN;
+		}
+		if (probe) changed(State.HALF_OPEN);
+	}
+
+	/**
+	 * Records that a request reached the API, closing the breaker.
+	 */
+	public void succeeded() {
+		synchronized (this) {
+			failures = 0;
+			probing = false;
+			prober = null;
+			if (state == State.CLOSED) return;
+			state = State.CLOSED;
+		}
+		changed(State.CLOSED);
+	}
+
+	/**
+	 * Records that a request let through on this thread was not made, so that, if it was to be the probe, another
+	 * request may probe in its place. Neither a success nor a failure is counted.
+	 */
+	public synchronized void release() {
+		if (prober != Thread.currentThread()) return;
+		probing = false;
+		prober = null;
+	}
+
+	/**
+	 * Records that a request could not reach the API, opening the breaker if it is the last allowed failure or a
+	 * failed probe.
+	 */
+	public void failed() {
+		long open;
+		synchronized (this) {
+			if (state == State.OPEN) return; // made before the breaker opened
+			if (state == State.CLOSED) {
+				if (++failures < threshold) return;
+				openNanos = minOpenNanos;
+			} else openNanos = Math.min(maxOpenNanos, openNanos * 2); // probe failed, wait longer
+			open = openNanos;
+			probing = false;
+			prober = null;
+			probeAt = System.nanoTime() + openNanos;
+			state = State.OPEN;
+		}
+		LOGGER.warning(String.format("NationStates unavailable; pausing requests for %d s",
+				TimeUnit.NANOSECONDS.toSeconds(open)));
+		changed(State.OPEN);
+	}
+
+	/**
+	 * @return current state
+	 */
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * @return milliseconds until a probe may be made; zero if the breaker is closed or a probe may be made now
+	 */
+	public synchronized long millisUntilProbe() {
+		if (state == State.CLOSED) return 0;
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(probeAt - System.nanoTime()));
+	}
+
+	/**
+	 * Adds a listener, called with the new state on every change of state, on the thread which caused it.
+	 * @param listener to add
+	 */
+	public void addListener(Consumer<State> listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * @param listener to remove
+	 */
+	public void removeListener(Consumer<State> listener) {
+		listeners.remove(listener);
+	}
+
+	private void changed(State newState) {
+		if (newState == State.HALF_OPEN) LOGGER.info("Probing whether NationStates is available");
+		if (newState == State.CLOSED) LOGGER.info("NationStates available; resuming requests");
+		for (Consumer<State> listener : listeners) listener.accept(newState);
+	}
+
+}
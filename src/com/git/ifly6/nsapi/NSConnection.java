@@ -3,26 +3,31 @@ package com.git.ifly6.nsapi;
 import com.git.ifly6.nsapi.telegram.JTelegramException;
 
 import java.io.BufferedReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 /**
  * This class regulates how the program connects to the NationStates API.
  * <p>
  * It only operates for one program at a time. If you run multiple instances, it will go over the API rate limit and
- * will result in your computer getting locked out from the API for 15 minutes. The program uses a
- * <code>synchronized</code> block to force that only one connection exists at one time.
+ * will result in your computer getting locked out from the API for 15 minutes. Within the program, every connection
+ * acquires a permit from the shared {@link NSRateLimiter} before calling the API.
  * </p>
  */
 public class NSConnection {
 
 	/**
-	 * This is the API delay timer, in milliseconds.
+	 * This is the API delay timer, in milliseconds. It is the average spacing between requests at the API rate limit;
+	 * actual spacing is handled by {@link NSRateLimiter}.
 	 */
 	public final static int WAIT_TIME = 610;
 
@@ -36,6 +41,17 @@ public class NSConnection {
 	 */
 	public static final String QUERY_PREFIX = "&q=";
 
+	/**
+	 * Number of times a request rejected for exceeding the rate limit is retried before giving up.
+	 */
+	public static final int MAX_RETRIES = 2;
+
+	/** Number of requests made to the API in this process, including those retried. */
+	private static final LongAdder REQUESTS = new LongAdder();
+
+	/** Number of bytes of successful responses read from the API in this process. */
+	private static final LongAdder BYTES_READ = new LongAdder();
+
 	private URL url;
 	private String xml_raw;
 	private boolean hasConnected;
@@ -54,43 +70,111 @@ public class NSConnection {
 		}
 	}
 
+	/**
+	 * Connects to the API and reads the response. See {@link #openResponse()} for details on how the connection is
+	 * made.
+	 * @return this connection
+	 * @throws IOException from {@link java.net.URLConnection}
+	 */
 	public NSConnection connect() throws IOException {
-		// Implement the rate limit
-		rateLimit();
-
-		// Create connection, add request properties
-		HttpURLConnection apiConnection = (HttpURLConnection) url.openConnection();
-		apiConnection.addRequestProperty("User-Agent",
-				"NS API request; maintained by Imperium Anglorum, email: cyrilparsons.london@gmail.com; see IP");
-		if (entries != null && !entries.isEmpty())
-			for (Map.Entry<String, String> entry : entries.entrySet())
-				apiConnection.addRequestProperty(entry.getKey(), entry.getValue());
-
-		apiConnection.connect(); // do connection
-		hasConnected = true; // update API
-
-		if (apiConnection.getResponseCode() == 200) { // if normal
-			BufferedReader reader = new BufferedReader(new InputStreamReader(apiConnection.getInputStream()));
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(openStream()))) {
 			xml_raw = reader.lines().collect(Collectors.joining("\n"));
-			reader.close();
+		}
+		return this;
+	}
 
-		} else { // otherwise, read error stream
-			BufferedReader reader = new BufferedReader(new InputStreamReader(apiConnection.getErrorStream()));
-			xml_raw = reader.lines().collect(Collectors.joining("\n"));
-			reader.close();
+	/**
+	 * Connects to the API and returns the response body as a stream, without reading it into memory. This is meant for
+	 * large responses which should be parsed incrementally. The caller is responsible for closing the stream.
+	 * @return stream of the response body
+	 * @throws IOException from {@link java.net.URLConnection}
+	 */
+	public InputStream openStream() throws IOException {
+		return new CountingInputStream(openResponse().getInputStream());
+	}
 
-			if (apiConnection.getResponseCode() == 429)
-				throw new NSIOException("Api ratelimit exceeded");
+	/**
+	 * @return number of requests made to the API in this process, including those retried
+	 */
+	public static long getRequestCount() {
+		return REQUESTS.sum();
+	}
 
-			if (xml_raw.contains("Unknown nation"))
-				throw new NSException("Nation does not exist");
+	/**
+	 * @return number of bytes of successful responses read from the API in this process
+	 */
+	public static long getBytesRead() {
+		return BYTES_READ.sum();
+	}
 
-			System.err.println(String.format("API called URL:\t%s", url.toString()));
-			throw new JTelegramException(String.format("Cannot get data from the API,\nHTTP response code %d",
-					apiConnection.getResponseCode()));
+	/**
+	 * Makes the connection to the API. The rate limit headers of every response are passed to {@link NSRateLimiter} to
+	 * pace further requests. If the API rejects the request for exceeding the rate limit, the request is retried after
+	 * the <code>Retry-After</code> period, up to {@link #MAX_RETRIES} times. Every request goes through the shared
+	 * {@link NSCircuitBreaker}, so that none is made while NationStates is unavailable. The breaker is asked before the
+	 * rate limiter, so that requests during an outage fail at once rather than after waiting for a permit.
+	 * @return connection with a successful response waiting to be read
+	 * @throws IOException   from {@link java.net.URLConnection}
+	 * @throws NSIOException if the circuit breaker is open
+	 */
+	private HttpURLConnection openResponse() throws IOException {
+		NSCircuitBreaker breaker = NSCircuitBreaker.instance();
+		for (int attempt = 0; ; attempt++) {
+			breaker.acquire(); // fail fast during an outage, without waiting for the rate limit
+
+			// Implement the rate limit
+			long ticket;
+			try {
+				ticket = NSRateLimiter.instance().acquire();
+			} catch (InterruptedIOException e) {
+				breaker.release(); // no request was made, so none can be a probe
+				throw e;
+			}
+
+			boolean available = false;
+			try {
+				REQUESTS.increment();
+
+				// Create connection, add request properties
+				HttpURLConnection apiConnection = (HttpURLConnection) url.openConnection();
+				apiConnection.addRequestProperty("User-Agent",
+						"NS API request; maintained by Imperium Anglorum, "
+								+ "email: cyrilparsons.london@gmail.com; see IP");
+				if (entries != null && !entries.isEmpty())
+					for (Map.Entry<String, String> entry : entries.entrySet())
+						apiConnection.addRequestProperty(entry.getKey(), entry.getValue());
+
+				apiConnection.connect(); // do connection
+				hasConnected = true; // update API
+
+				int responseCode = apiConnection.getResponseCode();
+				available = responseCode < 500; // anything other than a server error means it is up
+				long retryAfter = NSRateLimiter.instance().observe(ticket, apiConnection);
+				if (responseCode == 200) return apiConnection; // if normal
+
+				// otherwise, read error stream
+				BufferedReader reader = new BufferedReader(new InputStreamReader(apiConnection.getErrorStream()));
+				xml_raw = reader.lines().collect(Collectors.joining("\n"));
+				reader.close();
+
+				if (responseCode == 429) {
+					if (attempt >= MAX_RETRIES) throw new NSIOException("Api ratelimit exceeded");
+					if (retryAfter < 0) NSRateLimiter.instance().pause(NSRateLimiter.API_WINDOW);
+					continue; // limiter holds the next attempt back until the server is ready
+				}
+
+				if (xml_raw.contains("Unknown nation"))
+					throw new NSException("Nation does not exist");
+
+				System.err.println(String.format("API called URL:\t%s", url.toString()));
+				throw new JTelegramException(String.format("Cannot get data from the API,\nHTTP response code %d",
+						responseCode));
+
+			} finally {
+				if (available) breaker.succeeded();
+				else breaker.failed();
+			}
 		}
-
-		return this;
 	}
 
 	public NSConnection setHeaders(Map<String, String> entries) {
@@ -98,18 +182,6 @@ public class NSConnection {
 		return this;
 	}
 
-	/**
-	 * Makes sure that the many different instances have to compete for a single API call which is regulated to at least
-	 * the number of milliseconds defined in {@link NSConnection#WAIT_TIME}.
-	 */
-	private synchronized void rateLimit() {
-		try {
-			Thread.sleep(WAIT_TIME);
-		} catch (InterruptedException e) {
-			System.err.println("Rate limit was interrupted.");
-		}
-	}
-
 	/**
 	 * Gets response from server as a <code>String</code>.
 	 * @return response in a String form
@@ -120,4 +192,33 @@ public class NSConnection {
 		// if it has connected, get response. otherwise, connect and return response
 		return hasConnected ? xml_raw : connect().xml_raw;
 	}
+
+	/** Counts bytes read from a response into {@link #BYTES_READ}. */
+	private static class CountingInputStream extends FilterInputStream {
+
+		private CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) BYTES_READ.increment();
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0) BYTES_READ.add(n);
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			BYTES_READ.add(skipped);
+			return skipped;
+		}
+	}
 }
\ No newline at end of file
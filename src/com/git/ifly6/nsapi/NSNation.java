@@ -131,6 +131,33 @@ public class NSNation {
 		return this;
 	}
 
+	/**
+	 * Populates the nation with data already known, such as from a data dump, rather than querying the API.
+	 * @param properName   of the nation
+	 * @param region       in which the nation resides
+	 * @param category     of the nation's government
+	 * @param endorsements list of nations endorsing the nation
+	 * @param influence    score
+	 * @param canRecruit   whether the nation accepts recruitment telegrams
+	 * @param canCampaign  whether the nation accepts campaign telegrams
+	 * @return this nation
+	 */
+	public NSNation populateData(String properName, String region, String category, List<String> endorsements,
+	                             double influence, boolean canRecruit, boolean canCampaign) {
+		this.properName = properName;
+		this.region = region;
+		this.category = category;
+		this.endorsingNations = endorsements;
+		this.endoCount = endorsements.size();
+		this.infuCount = influence;
+		this.canRecruit = canRecruit;
+		this.canCampaign = canCampaign;
+
+		datePopulated = new GregorianCalendar().getTime();
+		isPopulated = true;
+		return this;
+	}
+
 	/**
 	 * Returns the reference name of the nation in computer form, that is, in lower case and with underscores.
 	 * @return the computerised name of the nation
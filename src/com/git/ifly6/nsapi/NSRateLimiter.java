@@ -0,0 +1,198 @@
+package com.git.ifly6.nsapi;
+
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Regulates the rate at which requests are made to NationStates. The NationStates API permits 50 requests in any
+ * rolling 30 second window; exceeding that locks the client out for 15 minutes.
+ * <p>
+ * Rather than sleeping a fixed time before every call, this limiter remembers when each of the last <i>n</i> permits
+ * was granted. A caller is only blocked if granting another permit would put more than <i>n</i> requests in the
+ * window. Bursts therefore go through immediately when there is headroom and callers wait exactly as long as necessary
+ * when there is not.
+ * </p>
+ * <p>
+ * Where NationStates reports its own view of the budget, in the <code>RateLimit-Remaining</code> and
+ * <code>RateLimit-Reset</code> headers, that view is fed back via {@link #observe(long, HttpURLConnection)} and
+ * checked as well as the local record until the server's window resets: a request is granted only if both have room.
+ * When the server rejects a request and asks for a <code>Retry-After</code> period, all callers are held back for
+ * exactly that period.
+ * </p>
+ * <p>
+ * There is one shared API limiter, accessible via {@link #instance()}, from which every caller in the process which
+ * touches the API must acquire a permit. Separate instances can be constructed for other budgets, such as that for
+ * scraping HTML pages.
+ * </p>
+ */
+public class NSRateLimiter {
+
+	/** Number of requests NationStates permits in the window {@link #API_WINDOW}. */
+	public static final int API_REQUESTS = 50;
+
+	/**
+	 * Length of the rolling API window, in milliseconds. Includes a small margin above the 30 seconds specified by
+	 * NationStates to account for differences in latency between requests.
+	 */
+	public static final long API_WINDOW = 30_050;
+
+	private static final Logger LOGGER = Logger.getLogger(NSRateLimiter.class.getName());
+	private static final NSRateLimiter API_LIMITER = new NSRateLimiter(API_REQUESTS, API_WINDOW);
+
+	private final long windowNanos;
+
+	/** Ring buffer holding the times, from {@link System#nanoTime()}, at which the last permits were granted. */
+	private final long[] grants;
+	private int next = 0;
+	private int granted = 0;
+
+	/** Number of permits ever issued; used as a ticket to match server responses to requests. */
+	private long issued = 0;
+
+	// Server view of the budget, valid until serverResetAt
+	private boolean serverKnown = false;
+	private long serverTicket = 0;
+	private int serverRemaining;
+	private long serverResetAt;
+
+	/** Time before which no permits are granted, set on <code>Retry-After</code>. */
+	private long pausedUntil = System.nanoTime();
+
+	/**
+	 * Creates a limiter permitting at most some number of requests in any rolling window.
+	 * @param permits      number of requests allowed in any window
+	 * @param windowMillis length of window, in milliseconds
+	 */
+	public NSRateLimiter(int permits, long windowMillis) {
+		if (permits < 1) throw new IllegalArgumentException("Rate limiter must permit at least one request");
+		if (windowMillis < 0) throw new IllegalArgumentException("Rate limiter window cannot be negative");
+		this.grants = new long[permits];
+		this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+	}
+
+	/**
+	 * Returns the limiter shared by all callers of the NationStates API in this process.
+	 * @return shared API limiter
+	 */
+	public static NSRateLimiter instance() {
+		return API_LIMITER;
+	}
+
+	/**
+	 * Blocks until a request can be made without exceeding the rate limit, then records that request.
+	 * @return ticket identifying the request, to be passed to {@link #observe(long, HttpURLConnection)}
+	 * @throws InterruptedIOException if interrupted while waiting; the interrupt flag is restored
+	 */
+	public synchronized long acquire() throws InterruptedIOException {
+		try {
+			long wait;
+			while ((wait = nanosUntilFree()) > 0)
+				TimeUnit.NANOSECONDS.timedWait(this, wait);
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for rate limit");
+		}
+
+		long now = System.nanoTime();
+		if (serverKnown && serverResetAt - now > 0) serverRemaining--;
+
+		grants[next] = now;
+		next = (next + 1) % grants.length;
+		if (granted < grants.length) granted++;
+		return ++issued;
+	}
+
+	/**
+	 * Updates the limiter with the server's view of the budget, as reported in the rate limit headers of a response.
+	 * Requests granted after the request with the provided ticket are not yet reflected by the server and are deducted
+	 * from the reported remainder. Responses older than one already observed are ignored.
+	 * @param ticket       from {@link #acquire()} for the request which produced the response
+	 * @param remaining    requests remaining in the server's window
+	 * @param resetSeconds seconds until the server's window resets
+	 */
+	public synchronized void update(long ticket, int remaining, int resetSeconds) {
+		if (ticket < serverTicket) return;
+		serverTicket = ticket;
+		serverKnown = true;
+		serverRemaining = (int) Math.max(0, remaining - (issued - ticket));
+		serverResetAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(resetSeconds);
+		notifyAll(); // headroom may have changed
+	}
+
+	/**
+	 * Stops all permits from being granted for some period.
+	 * @param millis to pause for, in milliseconds
+	 */
+	public synchronized void pause(long millis) {
+		long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+		if (until - pausedUntil > 0) pausedUntil = until;
+		LOGGER.warning(String.format("Rate limit exceeded; pausing requests for %.2f seconds", millis / 1000D));
+	}
+
+	/**
+	 * Reads the rate limit headers from a connection's response and updates the limiter accordingly. If the server
+	 * specifies a <code>Retry-After</code> period, the limiter is paused for that period.
+	 * @param ticket     from {@link #acquire()} for the request made on the connection
+	 * @param connection which has received a response
+	 * @return the <code>Retry-After</code> period in milliseconds, or <code>-1</code> if none was specified
+	 */
+	public long observe(long ticket, HttpURLConnection connection) {
+		Integer remaining = parseHeader(connection, "RateLimit-Remaining");
+		Integer reset = parseHeader(connection, "RateLimit-Reset");
+		if (remaining != null && reset != null) update(ticket, remaining, reset);
+
+		Integer retryAfter = parseHeader(connection, "Retry-After");
+		if (retryAfter == null) retryAfter = parseHeader(connection, "X-Retry-After");
+		if (retryAfter == null) return -1;
+
+		long millis = TimeUnit.SECONDS.toMillis(retryAfter);
+		pause(millis);
+		return millis;
+	}
+
+	/**
+	 * Gets the number of requests which could be made immediately without waiting.
+	 * @return number of requests available in the current window
+	 */
+	public synchronized int available() {
+		long now = System.nanoTime();
+		if (pausedUntil - now > 0) return 0;
+
+		int inWindow = 0;
+		for (int i = 0; i < granted; i++)
+			if (now - grants[i] < windowNanos) inWindow++;
+		int local = grants.length - inWindow;
+		return serverKnown && serverResetAt - now > 0 ? Math.min(local, Math.max(0, serverRemaining)) : local;
+	}
+
+	/**
+	 * Determines how long until a permit is available. If paused, that is until the pause ends. Otherwise, a permit
+	 * must be free in both the local window and, while its view of the budget is current, the server's. Locally, the
+	 * slot which will be overwritten by the next grant holds the oldest grant; a permit is free once that grant has
+	 * left the window. On the server, a permit is free if it reports requests remaining, and otherwise once its window
+	 * resets.
+	 * @return nanoseconds until a permit is free, or a non-positive number if one is free now
+	 */
+	private long nanosUntilFree() {
+		long now = System.nanoTime();
+		if (pausedUntil - now > 0) return pausedUntil - now;
+
+		long local = granted < grants.length ? 0 : grants[next] + windowNanos - now;
+		long server = serverKnown && serverResetAt - now > 0 && serverRemaining <= 0 ? serverResetAt - now : 0;
+		return Math.max(local, server);
+	}
+
+	private static Integer parseHeader(HttpURLConnection connection, String header) {
+		String value = connection.getHeaderField(header);
+		if (ApiUtils.isEmpty(value)) return null;
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+}
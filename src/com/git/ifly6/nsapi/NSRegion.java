@@ -29,12 +29,21 @@ public class NSRegion {
 
 	public NSRegion(String name) {
 		regionName = ApiUtils.ref(name);
+	}
+
+	/**
+	 * Fetches world World Assembly members on first use, rather than on construction, so that regions fetched only for
+	 * their members, possibly on several threads at once, do not each fetch the list.
+	 */
+	private static synchronized Set<String> worldWAMembers() {
 		if (worldWAMembers == null || worldWAMembers.isEmpty()) // populate world data
 			try {
 				worldWAMembers = new HashSet<>(NSWorld.getWAMembers());
 			} catch (IOException e) {
 				e.printStackTrace();
+				return new HashSet<>();
 			}
+		return worldWAMembers;
 	}
 
 	/**
@@ -90,8 +99,9 @@ public class NSRegion {
 	 */
 	public List<String> getWAMembers() {
 		if (waMembers.isEmpty()) {
+			Set<String> world = worldWAMembers();
 			waMembers = regionMembers.stream()
-					.filter(n -> worldWAMembers.contains(n))
+					.filter(world::contains)
 					.collect(Collectors.toList());
 		}
 		return waMembers;
@@ -0,0 +1,95 @@
+package com.git.ifly6.nsapi;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Retries a task which calls the NationStates API until it succeeds, in a loop, waiting longer after each failure.
+ * <p>
+ * After each failure, the task is retried after a delay which starts at the base delay and doubles, up to the maximum
+ * delay. Each delay is jittered, to between half and all of its length, so that callers which failed together do not
+ * retry together. Failures are bounded: once the task has failed the given number of times, the last failure is
+ * thrown.
+ * </p>
+ * <p>
+ * While the shared {@link NSCircuitBreaker} is open, failures are not counted, as they are the outage rather than the
+ * task: the task is instead retried when the breaker next probes the API. The caller therefore waits out an outage,
+ * however long, without calling the API; once the breaker closes, the delay starts again from the base delay.
+ * {@link NSException}s, which mean that what was asked for does not exist, are thrown at once.
+ * </p>
+ */
+public class NSRetry {
+
+	private static final Logger LOGGER = Logger.getLogger(NSRetry.class.getName());
+
+	private final int maxFailures;
+	private final long baseDelay;
+	private final long maxDelay;
+
+	/**
+	 * Creates a retry policy.
+	 * @param maxFailures     number of failures, while the API is available, after which to give up
+	 * @param baseDelayMillis delay before the first retry, in milliseconds
+	 * @param maxDelayMillis  maximum delay before any retry, in milliseconds
+	 */
+	public NSRetry(int maxFailures, long baseDelayMillis, long maxDelayMillis) {
+		if (maxFailures < 1) throw new IllegalArgumentException("Must allow at least one failure");
+		this.maxFailures = maxFailures;
+		this.baseDelay = baseDelayMillis;
+		this.maxDelay = Math.max(baseDelayMillis, maxDelayMillis);
+	}
+
+	/**
+	 * Calls a task until it succeeds.
+	 * @param description of the task, for the log, e.g. <code>"fetch new nations"</code>
+	 * @param task        to call
+	 * @param <T>         type returned
+	 * @return what the task returns
+	 * @throws RuntimeException the last failure, if the task failed too many times
+	 * @throws NSIOException    if interrupted while waiting to retry
+	 */
+	public <T> T call(String description, Supplier<T> task) {
+		NSCircuitBreaker breaker = NSCircuitBreaker.instance();
+		int failures = 0;
+		long delay = baseDelay;
+		while (true) {
+			try {
+				return task.get();
+
+			} catch (NSException e) {
+				throw e;
+
+			} catch (RuntimeException e) {
+				long wait;
+				if (breaker.getState() != NSCircuitBreaker.State.CLOSED) {
+					wait = Math.max(breaker.millisUntilProbe(), baseDelay);
+					failures = 0; // start again once it recovers
+					delay = baseDelay;
+
+				} else {
+					if (++failures >= maxFailures) {
+						LOGGER.warning(String.format("Cannot %s; giving up after %d attempts", description, failures));
+						throw e;
+					}
+					wait = jitter(delay);
+					delay = Math.min(maxDelay, delay * 2);
+				}
+
+				LOGGER.warning(String.format("Cannot %s: %s; retrying in %d ms", description, e.getMessage(), wait));
+				try {
+					Thread.sleep(wait);
+				} catch (InterruptedException interrupted) {
+					Thread.currentThread().interrupt();
+					throw new NSIOException(String.format("Interrupted while waiting to %s", description));
+				}
+			}
+		}
+	}
+
+	/** @return a random delay between half and all of some delay */
+	private static long jitter(long delay) {
+		return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+	}
+
+}
@@ -1,15 +1,24 @@
 package com.git.ifly6.nsapi;
 
-import com.jcabi.xml.XMLDocument;
-
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /* There is only one World, so this is going to be static. */
 public class NSWorld {
 
+	private static final XMLInputFactory XML_FACTORY = XMLInputFactory.newInstance();
+
+	static {
+		XML_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, false); // keep text in chunks, don't join
+		XML_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+	}
+
 	private NSWorld() {
 	}
 
@@ -19,8 +28,7 @@ public class NSWorld {
 	 * @throws IOException from {@link java.net.URLConnection}
 	 */
 	public static List<String> getAllNations() throws IOException {
-		String x = new NSConnection(NSConnection.API_PREFIX + "q=nations").getResponse();
-		return processArray(new XMLDocument(x).xpath("/WORLD/NATIONS/text()").get(0).split(","));
+		return streamList(NSConnection.API_PREFIX + "q=nations", "NATIONS");
 	}
 
 	/**
@@ -29,8 +37,7 @@ public class NSWorld {
 	 * @throws IOException from {@link java.net.URLConnection}
 	 */
 	public static List<String> getWAMembers() throws IOException {
-		String x = new NSConnection(NSConnection.API_PREFIX + "wa=1&q=members").getResponse();
-		return processArray(new XMLDocument(x).xpath("/WA/MEMBERS/text()").get(0).split(","));
+		return streamList(NSConnection.API_PREFIX + "wa=1&q=members", "MEMBERS");
 	}
 
 	/**
@@ -39,34 +46,87 @@ public class NSWorld {
 	 * @throws IOException from {@link java.net.URLConnection}
 	 */
 	public static List<String> getDelegates() throws IOException {
-		String x = new NSConnection(NSConnection.API_PREFIX + "wa=1&q=delegates").getResponse();
-		return processArray(new XMLDocument(x).xpath("/WA/DELEGATES/text()").get(0).split(","));
+		return streamList(NSConnection.API_PREFIX + "wa=1&q=delegates", "DELEGATES");
 	}
 
 	/**
 	 * Queries the NS API for list of regions which declare the parameter tag.
 	 * @param regionTag to declare
-	 * @return list of regions with names by string
+	 * @return list of regions with names by string; empty if no region declares the tag
 	 * @throws IOException from {@link java.net.URLConnection}
 	 */
 	public static List<String> getRegionTag(String regionTag) throws IOException {
 		// https://www.nationstates.net/cgi-bin/api.cgi?q=regionsbytag;tags=-medium,class,-minuscule
-		String content = new NSConnection(NSConnection.API_PREFIX + "q=regionsbytag;tags=" + regionTag)
-				.getResponse();
-		return processArray(new XMLDocument(content).xpath("/WORLD/REGIONS/text()").get(0).split(","));
+		return streamList(NSConnection.API_PREFIX + "q=regionsbytag;tags=" + regionTag, "REGIONS");
+	}
+
+	/**
+	 * Streams the response from some API call and reads the comma-separated list held in some element. Names are
+	 * tokenised as text arrives, so the response is never held in memory as a whole. Each name is trimmed, empty names
+	 * are removed, and the rest converted to reference name form.
+	 * @param url     to query
+	 * @param element holding the comma-separated list, e.g. <code>NATIONS</code>
+	 * @return list of strings in NationStates reference name form
+	 * @throws IOException from {@link java.net.URLConnection} or if the response is malformed
+	 */
+	private static List<String> streamList(String url, String element) throws IOException {
+		try (InputStream stream = new NSConnection(url).openStream()) {
+			return readList(stream, element);
+		}
 	}
 
 	/**
-	 * Processes input array by trimming all elements, removing empty elements, forcing lower-case, replacing spaces
-	 * with an underscore, and then collecting to a list.
-	 * @param input array to be processed
+	 * Reads the comma-separated list in the first element with some name from an XML stream.
+	 * @param stream  of XML
+	 * @param element holding the comma-separated list
 	 * @return list of strings in NationStates reference name form
+	 * @throws IOException if the stream is malformed
 	 */
-	private static List<String> processArray(String[] input) {
-		return Stream.of(input)
-				.filter(ApiUtils::isNotEmpty)
-				.map(ApiUtils::ref)
-				.collect(Collectors.toList());
+	static List<String> readList(InputStream stream, String element) throws IOException {
+		List<String> list = new ArrayList<>();
+		XMLStreamReader reader = null;
+		try {
+			reader = XML_FACTORY.createXMLStreamReader(stream);
+			boolean inElement = false;
+			StringBuilder token = new StringBuilder(64); // holds name split across text chunks
+
+			while (reader.hasNext()) {
+				int event = reader.next();
+				if (event == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals(element))
+					inElement = true;
+
+				else if (inElement && event == XMLStreamConstants.CHARACTERS) {
+					char[] text = reader.getTextCharacters();
+					int end = reader.getTextStart() + reader.getTextLength();
+					for (int i = reader.getTextStart(); i < end; i++) {
+						if (text[i] == ',') {
+							addToken(list, token);
+							token.setLength(0);
+						} else token.append(text[i]);
+					}
+
+				} else if (inElement && event == XMLStreamConstants.END_ELEMENT) {
+					addToken(list, token);
+					break; // nothing else to read
+				}
+			}
+
+		} catch (XMLStreamException e) {
+			throw new IOException("Malformed response from NationStates API", e);
+
+		} finally {
+			if (reader != null) try {
+				reader.close();
+			} catch (XMLStreamException ignored) {
+			}
+		}
+
+		return list;
+	}
+
+	private static void addToken(List<String> list, StringBuilder token) {
+		String s = token.toString();
+		if (ApiUtils.isNotEmpty(s)) list.add(ApiUtils.ref(s));
 	}
 
-}
\ No newline at end of file
+}
@@ -28,6 +28,18 @@ public class NSRegionQueryBuilder {
 		return this;
 	}
 
+	/**
+	 * Adds the census ranking of the region's nations on one scale, which the API gives twenty nations at a time.
+	 * @param scale census id, e.g. 65 for influence
+	 * @param start rank of the first nation given, counting from 1
+	 * @return the builder
+	 */
+	public NSRegionQueryBuilder addCensusRanks(int scale, int start) {
+		addQuery(NSRegionShard.CENSUS_RANKS);
+		builder.append(String.format(";scale=%d;start=%d", scale, start));
+		return this;
+	}
+
 	/**
 	 * Adds multiple shards to the query
 	 * @param queries to add
@@ -35,6 +35,13 @@ public enum NSRegionShard {
 		public String toString() {
 			return "nations";
 		}
+	},
+
+	CENSUS_RANKS {
+		@Override
+		public String toString() {
+			return "censusranks";
+		}
 	}
 
 }
@@ -1,10 +1,14 @@
 package com.git.ifly6.nsapi.telegram;
 
+import com.git.ifly6.nsapi.NSCircuitBreaker;
 import com.git.ifly6.nsapi.NSConnection;
+import com.git.ifly6.nsapi.NSIOException;
+import com.git.ifly6.nsapi.NSRateLimiter;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.logging.Logger;
@@ -19,7 +23,9 @@ import java.util.stream.Collectors;
  * </p>
  * <p>
  * <p>
- * This class is utilised by {@link JavaTelegram} to actually send the relevant data to the NationStates API.
+ * This class is utilised by {@link JavaTelegram} to actually send the relevant data to the NationStates API. Like
+ * every other request, sending goes through the shared {@link NSCircuitBreaker} and {@link NSRateLimiter}, so that no
+ * telegram is sent while NationStates is unavailable.
  * </p>
  */
 public class JTelegramConnection {
@@ -33,6 +39,7 @@ public class JTelegramConnection {
 	static final int NO_SUCH_TELEGRAM = 6;
 
 	private HttpURLConnection apiConnection;
+	private long ticket;
 
 	/**
 	 * Creates and establishes a <code>JTelegramConenction</code> with the relevant codes and keys (Death Cab for
@@ -42,15 +49,30 @@ public class JTelegramConnection {
 	 * @param telegramId is a <code>String</code> which contains the telegram ID
 	 * @param recipient  is a <code>String</code> which contains the name of the recipient in NationStates back-end
 	 *                   format (that is, all spaces turned into underscores)
-	 * @throws IOException if there is a problem in connecting to the API
+	 * @throws IOException   if there is a problem in connecting to the API
+	 * @throws NSIOException if the circuit breaker is open
 	 */
 	public JTelegramConnection(String clientKey, String secretKey, String telegramId, String recipient) throws IOException {
 		URL tgURL = new URL(NSConnection.API_PREFIX + "a=sendTG&client=" + clientKey + "&key=" + secretKey + "&tgid="
 				+ telegramId + "&to=" + recipient);
-		apiConnection = (HttpURLConnection) tgURL.openConnection();
-		apiConnection.setRequestProperty("User-Agent",
-				"NationStates JavaTelegram (maintained by Imperium Anglorum, used by " + clientKey + ")");
-		apiConnection.connect();
+		NSCircuitBreaker breaker = NSCircuitBreaker.instance();
+		breaker.acquire(); // fail fast during an outage, without waiting for the rate limit
+		try {
+			ticket = NSRateLimiter.instance().acquire(); // telegram calls count against the API limit
+		} catch (InterruptedIOException e) {
+			breaker.release(); // no request was made, so none can be a probe
+			throw e;
+		}
+
+		try {
+			apiConnection = (HttpURLConnection) tgURL.openConnection();
+			apiConnection.setRequestProperty("User-Agent",
+					"NationStates JavaTelegram (maintained by Imperium Anglorum, used by " + clientKey + ")");
+			apiConnection.connect();
+		} catch (IOException | RuntimeException e) {
+			breaker.failed();
+			throw e;
+		}
 	}
 
 	/**
@@ -76,7 +98,20 @@ public class JTelegramConnection {
 	 */
 	int verify() throws IOException {
 
-		BufferedReader webReader = apiConnection.getResponseCode() < HttpURLConnection.HTTP_BAD_REQUEST
+		// Record whether the API was reached, as NSConnection does
+		int responseCode;
+		boolean available = false;
+		try {
+			responseCode = apiConnection.getResponseCode();
+			available = responseCode < 500; // anything other than a server error means it is up
+		} finally {
+			if (available) NSCircuitBreaker.instance().succeeded();
+			else NSCircuitBreaker.instance().failed();
+		}
+
+		NSRateLimiter.instance().observe(ticket, apiConnection);
+
+		BufferedReader webReader = responseCode < HttpURLConnection.HTTP_BAD_REQUEST
 				? new BufferedReader(new InputStreamReader(apiConnection.getInputStream()))
 				: new BufferedReader(new InputStreamReader(apiConnection.getErrorStream()));
 		String response = webReader.lines().collect(Collectors.joining("\n"));
@@ -91,7 +126,7 @@ public class JTelegramConnection {
 
 		// else, print and return
 		Logger.getLogger(this.getClass().getName()).warning(String.format("Unknown error at code (%d):\n%s",
-				apiConnection.getResponseCode(), response));
+				responseCode, response));
 		return UNKNOWN_ERROR;
 	}
 
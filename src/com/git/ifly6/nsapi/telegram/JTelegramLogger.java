@@ -27,4 +27,20 @@ public interface JTelegramLogger {
 	 */
 	void sentTo(String recipient, int recipientNum, int length);
 
+	/**
+	 * Inform the logger that some <code>recipient</code> was skipped, because it does not exist or failed a check.
+	 * Does nothing by default.
+	 * @param recipient name
+	 */
+	default void skipped(String recipient) {
+	}
+
+	/**
+	 * Inform the logger that a telegram could not be delivered to some <code>recipient</code>, and will not be retried.
+	 * Does nothing by default.
+	 * @param recipient name
+	 */
+	default void failed(String recipient) {
+	}
+
 }
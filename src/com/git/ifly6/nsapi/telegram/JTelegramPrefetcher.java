@@ -0,0 +1,87 @@
+package com.git.ifly6.nsapi.telegram;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Validates recipients ahead of {@link JavaTelegram#connect()}. While the sender waits out the telegram interval, the
+ * next few recipients are populated and checked in the background, so that by the time a slot opens, the sender knows
+ * whether the next recipient may be sent to. Recipients which are skipped therefore cost no time in the critical path.
+ */
+class JTelegramPrefetcher implements AutoCloseable {
+
+	/** Outcome of validating a recipient. */
+	enum Status {
+		/** Recipient passed all checks. */
+		PASSED,
+		/** Recipient failed a check and should be skipped. */
+		FAILED_CHECKS,
+		/** Recipient does not exist. */
+		NOT_FOUND,
+		/** Recipient could not be checked, as the API could not be reached or returned an error. */
+		UNCHECKED
+	}
+
+	private static final int WORKERS = 2;
+
+	private final JTelegramRecipients recipients;
+	private final int lookahead;
+	private final Function<String, Status> validator;
+
+	private final Map<Integer, Future<Status>> pending = new HashMap<>();
+	private final ExecutorService executor = Executors.newFixedThreadPool(WORKERS, r -> {
+		Thread thread = new Thread(r, "JTelegramPrefetcher");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Creates a prefetcher. Nothing is validated until {@link #await(int)} is first called.
+	 * @param recipients to validate
+	 * @param lookahead  number of recipients after the current one to validate in advance
+	 * @param validator  to apply to each recipient; called from background threads
+	 */
+	JTelegramPrefetcher(JTelegramRecipients recipients, int lookahead, Function<String, Status> validator) {
+		this.recipients = recipients;
+		this.lookahead = lookahead;
+		this.validator = validator;
+	}
+
+	/**
+	 * Gets the outcome of validating a recipient, waiting if it is not yet known. Validation of the recipients which
+	 * follow is started, if it has not been already and they have been resolved.
+	 * @param index of recipient, which must have been resolved
+	 * @return outcome of validation
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	Status await(int index) throws InterruptedException {
+		for (int i = index; i <= index + lookahead; i++) {
+			String recipient = recipients.get(i);
+			if (recipient == null) break; // not yet resolved
+			pending.computeIfAbsent(i, k -> executor.submit(() -> validator.apply(recipient)));
+		}
+
+		try {
+			return pending.remove(index).get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new JTelegramException("Failed to validate " + recipients.get(index), cause);
+		}
+	}
+
+	/**
+	 * Stops validation of recipients which have not yet been reached.
+	 */
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+}
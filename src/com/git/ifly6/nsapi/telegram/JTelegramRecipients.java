@@ -0,0 +1,201 @@
+package com.git.ifly6.nsapi.telegram;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recipients for {@link JavaTelegram}, which may still be being resolved while telegrams are sent. A producer adds
+ * recipients, in order, as they become known, then calls {@link #complete()}; the sender reads them by index, waiting
+ * for those not yet resolved. Sending can therefore start as soon as the first recipients are known, rather than once
+ * every list has been fetched.
+ * <p>
+ * A list of recipients known in advance is wrapped with {@link #of(List)}. This class is safe to use from multiple
+ * threads.
+ * </p>
+ */
+public class JTelegramRecipients {
+
+	private final List<String> recipients = new ArrayList<>();
+	private boolean complete = false;
+	private boolean cancelled = false;
+	private RuntimeException failure;
+	private final List<Runnable> cancelListeners = new ArrayList<>();
+
+	/**
+	 * Creates an empty, incomplete list of recipients, to which a producer adds.
+	 */
+	public JTelegramRecipients() {
+	}
+
+	/**
+	 * Creates a complete list of recipients.
+	 * @param list of recipients
+	 * @return recipients
+	 */
+	public static JTelegramRecipients of(List<String> list) {
+		JTelegramRecipients recipients = new JTelegramRecipients();
+		recipients.addAll(list);
+		recipients.complete();
+		return recipients;
+	}
+
+	/**
+	 * Adds a recipient.
+	 * @param recipient to add
+	 * @throws CancellationException if the consumer has stopped reading, so that the producer may stop
+	 */
+	public synchronized void add(String recipient) {
+		if (cancelled) throw new CancellationException("Recipients no longer wanted");
+		if (complete) throw new IllegalStateException("Cannot add recipients once complete");
+		recipients.add(recipient);
+		notifyAll();
+	}
+
+	/**
+	 * Adds recipients in order.
+	 * @param list of recipients
+	 * @throws CancellationException if the consumer has stopped reading, so that the producer may stop
+	 */
+	public synchronized void addAll(Collection<String> list) {
+		for (String recipient : list) add(recipient);
+	}
+
+	/**
+	 * Marks that all recipients have been added.
+	 */
+	public synchronized void complete() {
+		complete = true;
+		notifyAll();
+	}
+
+	/**
+	 * Marks that recipients could not all be resolved. Recipients already added may still be read.
+	 * @param e cause of failure
+	 */
+	public synchronized void fail(RuntimeException e) {
+		failure = e;
+		complete();
+	}
+
+	/**
+	 * Marks that no further recipients are wanted. Further calls to {@link #add(String)} throw, stopping the producer,
+	 * and listeners added with {@link #onCancel(Runnable)} are run, so that it may also stop work in progress.
+	 */
+	public void cancel() {
+		List<Runnable> listeners;
+		synchronized (this) {
+			if (cancelled) return;
+			cancelled = true;
+			complete();
+			listeners = new ArrayList<>(cancelListeners);
+			cancelListeners.clear();
+		}
+		for (Runnable listener : listeners) listener.run();
+	}
+
+	/**
+	 * Adds an action to run when the recipients are cancelled, such as interrupting the producer. It is run at once if
+	 * they already are.
+	 * @param listener to run, from the thread cancelling
+	 */
+	public void onCancel(Runnable listener) {
+		synchronized (this) {
+			if (!cancelled) {
+				cancelListeners.add(listener);
+				return;
+			}
+		}
+		listener.run();
+	}
+
+	/**
+	 * @return true if the recipients have been cancelled
+	 */
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Waits until the recipient at some index is resolved, or it is known there is none.
+	 * @param index   of recipient
+	 * @param timeout maximum time to wait
+	 * @param unit    of timeout
+	 * @return true if {@link #get(int)} will now give the recipient or <code>null</code>; false if the wait timed out
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public synchronized boolean await(int index, long timeout, TimeUnit unit) throws InterruptedException {
+		long remaining = unit.toNanos(timeout);
+		while (index >= recipients.size() && !complete) {
+			if (remaining <= 0) return false;
+			long start = System.nanoTime();
+			TimeUnit.NANOSECONDS.timedWait(this, remaining);
+			remaining -= System.nanoTime() - start;
+		}
+		return true;
+	}
+
+	/**
+	 * Waits until all recipients are resolved.
+	 * @param timeout maximum time to wait
+	 * @param unit    of timeout
+	 * @return true if complete; false if the wait timed out
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public synchronized boolean awaitComplete(long timeout, TimeUnit unit) throws InterruptedException {
+		return await(Integer.MAX_VALUE, timeout, unit);
+	}
+
+	/**
+	 * Waits until all recipients are resolved.
+	 * @return all recipients
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws RuntimeException     with which resolution failed, if it did
+	 */
+	public synchronized List<String> awaitAll() throws InterruptedException {
+		awaitComplete(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		if (failure != null) throw failure;
+		return toList();
+	}
+
+	/**
+	 * Gets the recipient at some index, without waiting.
+	 * @param index of recipient
+	 * @return recipient, or <code>null</code> if it is not yet resolved or there is none
+	 */
+	public synchronized String get(int index) {
+		return index < recipients.size() ? recipients.get(index) : null;
+	}
+
+	/**
+	 * @return number of recipients resolved so far
+	 */
+	public synchronized int size() {
+		return recipients.size();
+	}
+
+	/**
+	 * @return true if all recipients have been resolved, resolution failed, or it was cancelled
+	 */
+	public synchronized boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * @return exception with which resolution failed, or <code>null</code> if it has not
+	 */
+	public synchronized RuntimeException getFailure() {
+		return failure;
+	}
+
+	/**
+	 * @return copy of the recipients resolved so far
+	 */
+	public synchronized List<String> toList() {
+		return Collections.unmodifiableList(new ArrayList<>(recipients));
+	}
+
+}
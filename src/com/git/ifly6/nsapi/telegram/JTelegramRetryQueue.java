@@ -0,0 +1,127 @@
+package com.git.ifly6.nsapi.telegram;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds recipients to whom a telegram could not be queued for transient reasons, such as a rate limit or a dropped
+ * connection, until they are due to be tried again. Each further failure doubles the delay before the next attempt, up
+ * to a limit; once a recipient has used all its attempts, it is recorded as a permanent failure.
+ */
+class JTelegramRetryQueue {
+
+	/** Number of retries allowed per recipient, after the first attempt. */
+	static final int MAX_RETRIES = 3;
+
+	private final long baseDelayNanos;
+	private final long maxDelayNanos;
+
+	private final PriorityQueue<Retry> queue = new PriorityQueue<>((a, b) -> Long.compare(a.dueAt - b.dueAt, 0));
+	private final Map<String, Integer> attempts = new HashMap<>();
+	private final Set<String> recovered = new LinkedHashSet<>();
+	private final Set<String> failed = new LinkedHashSet<>();
+
+	/**
+	 * Creates a retry queue.
+	 * @param baseDelayMillis delay before the first retry, in milliseconds
+	 * @param maxDelayMillis  maximum delay before any retry, in milliseconds
+	 */
+	JTelegramRetryQueue(long baseDelayMillis, long maxDelayMillis) {
+		this.baseDelayNanos = TimeUnit.MILLISECONDS.toNanos(baseDelayMillis);
+		this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+	}
+
+	/**
+	 * Records that an attempt to send to some recipient failed, scheduling a retry if it has any left.
+	 * @param recipient which failed
+	 * @param index     of recipient in the recipients list
+	 * @return milliseconds until the retry; <code>-1</code> if the recipient has failed permanently
+	 */
+	long failed(String recipient, int index) {
+		int attempt = attempts.merge(recipient, 1, Integer::sum);
+		if (attempt > MAX_RETRIES) {
+			failed.add(recipient);
+			return -1;
+		}
+
+		long delay = Math.min(maxDelayNanos, baseDelayNanos << (attempt - 1));
+		queue.add(new Retry(recipient, index, System.nanoTime() + delay));
+		return TimeUnit.NANOSECONDS.toMillis(delay);
+	}
+
+	/**
+	 * Records that some recipient was sent to. If it had failed before, it is recorded as recovered.
+	 * @param recipient sent to
+	 */
+	void succeeded(String recipient) {
+		if (attempts.containsKey(recipient)) recovered.add(recipient);
+	}
+
+	/**
+	 * Takes the retry which is due soonest, if it is due now.
+	 * @return retry due now, or <code>null</code> if none is due
+	 */
+	Retry pollDue() {
+		Retry retry = queue.peek();
+		if (retry == null || retry.dueAt - System.nanoTime() > 0) return null;
+		return queue.poll();
+	}
+
+	/**
+	 * @return nanoseconds until the next retry is due; zero if one is due now or there are none
+	 */
+	long nanosUntilDue() {
+		Retry retry = queue.peek();
+		return retry == null ? 0 : Math.max(0, retry.dueAt - System.nanoTime());
+	}
+
+	boolean isEmpty() {
+		return queue.isEmpty();
+	}
+
+	/**
+	 * @return recipients which failed at least once and were later sent to
+	 */
+	List<String> getRecovered() {
+		return Collections.unmodifiableList(new ArrayList<>(recovered));
+	}
+
+	/**
+	 * @return recipients which failed on every attempt and have no retries left
+	 */
+	List<String> getPermanentFailures() {
+		return Collections.unmodifiableList(new ArrayList<>(failed));
+	}
+
+	/**
+	 * @return recipients still awaiting retry, soonest due first
+	 */
+	List<String> getPending() {
+		List<Retry> pending = new ArrayList<>(queue);
+		pending.sort(queue.comparator());
+		List<String> list = new ArrayList<>();
+		for (Retry retry : pending) list.add(retry.recipient);
+		return Collections.unmodifiableList(list);
+	}
+
+	/** A recipient awaiting retry. */
+	static class Retry {
+		final String recipient;
+		final int index;
+		private final long dueAt;
+
+		private Retry(String recipient, int index, long dueAt) {
+			this.recipient = recipient;
+			this.index = index;
+			this.dueAt = dueAt;
+		}
+	}
+
+}
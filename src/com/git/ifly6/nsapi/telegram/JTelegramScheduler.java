@@ -0,0 +1,103 @@
+package com.git.ifly6.nsapi.telegram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Schedules telegrams against absolute deadlines. The NationStates telegram API requires some minimum interval between
+ * telegrams. Rather than sleeping for that interval after doing a variable amount of other work, which lets intervals
+ * drift above the minimum, the scheduler computes the earliest time the next telegram may be sent from the time the
+ * last was queued, and waits only until then.
+ * <p>
+ * The time between each deadline and the telegram actually being sent is recorded as slack. Slack is time in which a
+ * telegram could have been sent but was not, for example because the next recipient was still being validated.
+ * </p>
+ */
+public class JTelegramScheduler {
+
+	private static final Logger LOGGER = Logger.getLogger(JTelegramScheduler.class.getName());
+
+	private final long intervalNanos;
+
+	/** Time, from {@link System#nanoTime()}, before which the next telegram may not be sent. */
+	private long deadline;
+	private boolean hasDeadline = false;
+
+	private int intervals = 0;
+	private long totalSlackNanos = 0;
+	private long maxSlackNanos = 0;
+
+	/**
+	 * Creates a scheduler.
+	 * @param intervalMillis minimum time between telegrams, in milliseconds
+	 */
+	public JTelegramScheduler(long intervalMillis) {
+		this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+	}
+
+	/**
+	 * Blocks until the next telegram may be sent. If no telegram has been queued, returns immediately. Otherwise,
+	 * records the slack between the deadline and the return of this method.
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void awaitSlot() throws InterruptedException {
+		if (!hasDeadline) return;
+
+		long remaining;
+		while ((remaining = deadline - System.nanoTime()) > 0)
+			TimeUnit.NANOSECONDS.sleep(remaining);
+
+		long slack = -remaining;
+		intervals++;
+		totalSlackNanos += slack;
+		maxSlackNanos = Math.max(maxSlackNanos, slack);
+		LOGGER.fine(String.format("Telegram slot opened with %.1f ms slack", slack / 1e6));
+		hasDeadline = false; // slack is recorded once per interval
+	}
+
+	/**
+	 * Records that a telegram has been queued, or that an attempt to send one failed. Should be called on receiving the
+	 * response, so that the interval is measured from a time no earlier than that at which NationStates received the
+	 * request.
+	 */
+	public void queued() {
+		deadline = System.nanoTime() + intervalNanos;
+		hasDeadline = true;
+	}
+
+	/**
+	 * @return milliseconds until the next telegram may be sent; zero if it may be sent now
+	 */
+	public long millisUntilSlot() {
+		if (!hasDeadline) return 0;
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+	}
+
+	/**
+	 * @return number of intervals for which slack was recorded
+	 */
+	public int getIntervals() {
+		return intervals;
+	}
+
+	/**
+	 * @return mean slack per interval, in milliseconds
+	 */
+	public double getMeanSlackMillis() {
+		return intervals == 0 ? 0 : totalSlackNanos / 1e6 / intervals;
+	}
+
+	/**
+	 * @return greatest slack in any interval, in milliseconds
+	 */
+	public double getMaxSlackMillis() {
+		return maxSlackNanos / 1e6;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d intervals, mean slack %.1f ms, max slack %.1f ms",
+				intervals, getMeanSlackMillis(), getMaxSlackMillis());
+	}
+
+}
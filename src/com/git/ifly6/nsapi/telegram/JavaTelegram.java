@@ -17,16 +17,22 @@
 
 package com.git.ifly6.nsapi.telegram;
 
+import com.git.ifly6.nsapi.NSCircuitBreaker;
 import com.git.ifly6.nsapi.NSConnection;
 import com.git.ifly6.nsapi.NSException;
 import com.git.ifly6.nsapi.NSIOException;
 import com.git.ifly6.nsapi.NSNation;
+import com.git.ifly6.nsapi.NSRetry;
+import com.git.ifly6.nsapi.telegram.util.JDumpIndex;
+import com.git.ifly6.nsapi.telegram.util.JInfoFetcher;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -40,7 +46,7 @@ import java.util.stream.Collectors;
  * implementations of output change from different implementations to another, it requires a {@link JTelegramLogger} to
  * operate with the provision of output. The system accepts input by using <code>set</code> methods, setting three
  * different fields, the keys (contained in a {@link JTelegramKeys}), the <code>boolean</code> recruitment flag, and the
- * recipients contained in a <code>String[]</code>.
+ * recipients contained in a {@link JTelegramRecipients}, which may still be being resolved as telegrams are sent.
  * </p>
  * <p>
  * The function, due to its use inside a thread, provides a system for shutting down all threads with the volatile
@@ -56,17 +62,34 @@ import java.util.stream.Collectors;
 public class JavaTelegram {
 
 	public static final Logger LOGGER = Logger.getLogger(JavaTelegram.class.getName());
+
+	/** Number of recipients after the current one which are validated in advance. */
+	private static final int PREFETCH_DEPTH = 3;
+
+	/** Maximum delay before retrying a recipient, in milliseconds; NationStates lockouts last 15 minutes. */
+	private static final long RETRY_MAX_DELAY = 15 * 60 * 1000;
+
+	/**
+	 * Retry policy for validating recipients. Validation waits out an outage, rather than letting recipients through
+	 * unchecked while the circuit breaker is open.
+	 */
+	private static final NSRetry VALIDATE_RETRY = new NSRetry(2, 1_000, 5_000);
+
+	/** Minimum time to wait before trying to send again while NationStates is unavailable, in milliseconds. */
+	private static final long UNAVAILABLE_WAIT = 1_000;
 	private static volatile boolean killThread = false;
 
 	protected JTelegramKeys keys = new JTelegramKeys();
 
-	private List<String> recipients = new ArrayList<>();
+	private JTelegramRecipients recipients = JTelegramRecipients.of(Collections.emptyList());
 	private List<String> sentList = new ArrayList<>();
 
 	private final JTelegramLogger util;
 
 	private JTelegramType telegramType = JTelegramType.RECRUIT;   // Defaults to 'true' to keep on the safe side.
 	private int waitTime = telegramType.getWaitTime();
+	private JTelegramScheduler scheduler = new JTelegramScheduler(waitTime);
+	private JTelegramRetryQueue retries = new JTelegramRetryQueue(waitTime, RETRY_MAX_DELAY);
 
 	/**
 	 * A list of tests to run on each recipient. A <code>NSNation</code> is created for each recipient in {@link
@@ -78,7 +101,7 @@ public class JavaTelegram {
 	 * <br /> else (we are campaigning) and nation is not campaignable -> false</code>
 	 * </p>
 	 */
-	private List<Predicate<NSNation>> predicates = new ArrayList<>();  // additional predicates here
+	private List<Predicate<NSNation>> predicates = new CopyOnWriteArrayList<>();  // additional predicates here
 
 	{
 		predicates.add(n -> {
@@ -115,9 +138,9 @@ public class JavaTelegram {
 	}
 
 	/**
-	 * Sets the time between telegrams which the program is set to wait. Note that this is implemented in {@link
-	 * JavaTelegram#connect()} to automatically deduct the time necessary to populate <code>NSNation</code> data and
-	 * check the provided predicates.
+	 * Sets the time between telegrams which the program is set to wait. This is measured from the response to each
+	 * attempt to send, by {@link JTelegramScheduler}. Recipients are populated and checked against the provided
+	 * predicates during this wait, rather than after it, in {@link JavaTelegram#connect()}.
 	 * @param waitTime is the time to wait between telegrams, in milliseconds
 	 */
 	public void setWaitTime(int waitTime) {
@@ -149,11 +172,20 @@ public class JavaTelegram {
 	 * @param list is an array of all the recipients, each one for each index
 	 */
 	public void setRecipients(List<String> list) {
-		recipients = list;
+		recipients = JTelegramRecipients.of(list);
+	}
+
+	/**
+	 * Sets recipients which may still be being resolved. Telegrams are sent to each as soon as it is resolved; if
+	 * sending stops first, the recipients are cancelled, so that resolution may stop.
+	 * @param recipients to send to
+	 */
+	public void setRecipients(JTelegramRecipients recipients) {
+		this.recipients = recipients;
 	}
 
 	public void setRecipient(String recipient) {
-		recipients = Collections.singletonList(recipient);
+		recipients = JTelegramRecipients.of(Collections.singletonList(recipient));
 	}
 
 	/**
@@ -184,6 +216,20 @@ public class JavaTelegram {
 		return sentList;
 	}
 
+	/**
+	 * @return recipients which could not be sent to in the last call to {@link #connect()}, even after retrying
+	 */
+	public List<String> getFailedList() {
+		return retries.getPermanentFailures();
+	}
+
+	/**
+	 * @return scheduler used in the last call to {@link #connect()}, holding statistics on slack in telegram pacing
+	 */
+	public JTelegramScheduler getScheduler() {
+		return scheduler;
+	}
+
 	/**
 	 * Connects to the NationStates API and starts sending telegrams to the provided recipients with the provided keys.
 	 * Note that checks are made in this method ({@link JavaTelegram#predicates}) to make sure that telegrams are sent
@@ -199,114 +245,290 @@ public class JavaTelegram {
 			return;
 		}
 
-		if (recipients == null || recipients.isEmpty()) {
+		if (recipients == null || recipients.isComplete() && recipients.size() == 0) {
 			util.log("Error, no recipients.");
 			return;
 		}
 
 		// Make sure we can actually run a cycle
 		killThread = false;
-		int totalTelegrams = recipients.size();
-		for (int i = 0; i < recipients.size(); i++) { // No iterator due to need for indexing
+		scheduler = new JTelegramScheduler(waitTime);
+		retries = new JTelegramRetryQueue(waitTime, RETRY_MAX_DELAY);
+		try (JTelegramPrefetcher prefetcher = new JTelegramPrefetcher(recipients, PREFETCH_DEPTH, this::validate)) {
+			int i = 0;
+			while (true) { // No iterator due to need for indexing
+				if (!sendDueRetries()) break;
+
+				// Wait for the next recipient to be resolved, but not past when the next retry is due
+				try {
+					long wait = retries.isEmpty() ? Long.MAX_VALUE : retries.nanosUntilDue();
+					if (!recipients.await(i, wait, TimeUnit.NANOSECONDS)) continue;
+				} catch (InterruptedException e) {
+					util.log("Sending thread was forced to terminate.");    // Report.
+					killThread = true;
+					break;
+				}
 
-			String recipient = recipients.get(i);
+				String recipient = recipients.get(i);
+				if (recipient == null) break; // no more recipients
+				if (!sendTo(prefetcher, i, recipient)) break;
+				i++;
+			}
 
-			// Verify the defaultPredicate
-			boolean passedChecks = true;
-			NSNation nation = new NSNation(recipient);
-			try {
-				nation.populateData();
-				for (Predicate<NSNation> predicate : predicates) {
-					if (predicate == null) continue; // skip null predicates
-					if (!predicate.test(nation)) {
-						passedChecks = false;
-						break;
-					}
+			// Then wait for retries which are not yet due
+			while (!killThread && !retries.isEmpty()) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(retries.nanosUntilDue());
+				} catch (InterruptedException e) {
+					util.log("Sending thread was forced to terminate.");    // Report.
+					killThread = true;
+					break;
 				}
+				if (!sendDueRetries()) break;
+			}
 
-			} catch (NSException e) {
-				util.log(String.format("Nation %s does not exist. Skipping nation.", recipient));
-				continue;
+		} finally {
+			if (!recipients.isComplete()) recipients.cancel(); // stop resolving recipients no one will send to
+		}
 
-			} catch (NSIOException e) {
-				util.log(String.format("Cannot query for data on %s, assuming check passed, continuing", recipient));
-				e.printStackTrace();
+		if (recipients.getFailure() != null)
+			util.log("Could not resolve all recipients: " + recipients.getFailure().getMessage());
+		if (!killThread) util.log("API Queries Complete.");
+		if (!retries.getRecovered().isEmpty())
+			util.log("Delivered after retrying: " + String.join(", ", retries.getRecovered()));
+		if (!retries.getPermanentFailures().isEmpty())
+			util.log("Failed to deliver, even after retrying: " + String.join(", ", retries.getPermanentFailures()));
+		if (!retries.getPending().isEmpty())
+			util.log("Not retried, as sending stopped: " + String.join(", ", retries.getPending()));
+		LOGGER.info("Telegram pacing: " + scheduler);
+	}
 
-			}
+	/**
+	 * Sends to the recipient at some index once it has been validated.
+	 * @return false if sending should stop
+	 */
+	private boolean sendTo(JTelegramPrefetcher prefetcher, int i, String recipient) {
+
+		// Verify the predicates, which will usually have been done while waiting for the last telegram
+		JTelegramPrefetcher.Status status;
+		try {
+			status = prefetcher.await(i);
+		} catch (InterruptedException e) {
+			util.log("Sending thread was forced to terminate.");    // Report.
+			killThread = true;
+			return false;
+		}
 
-			if (!passedChecks) {
+		switch (status) {
+			case NOT_FOUND:
+				util.log(String.format("Nation %s does not exist. Skipping nation.", recipient));
+				util.skipped(recipient);
+				return !killThread;
+			case FAILED_CHECKS:
 				util.log("Failed predicate check, skipping " + recipient);
-				continue;
-			}
+				util.skipped(recipient);
+				return !killThread;
+			case UNCHECKED:
+				util.log(String.format("Cannot query for data on %s, assuming check passed, continuing", recipient));
+				break;
+			default:
+				break;
+		}
 
-			try {
+		return dispatch(recipient, i);
+	}
 
-				// Connect to the API
-				JTelegramConnection connection = new JTelegramConnection(keys, recipient);
-				int errorCode = connection.verify();
+	/**
+	 * Sends to each recipient whose retry is due. Retries take the next telegram slots, ahead of the recipients which
+	 * have not yet been tried.
+	 * @return false if sending should stop
+	 */
+	private boolean sendDueRetries() {
+		JTelegramRetryQueue.Retry retry;
+		while ((retry = retries.pollDue()) != null) {
+			util.log("Retrying delivery to " + retry.recipient);
+			if (!dispatch(retry.recipient, retry.index)) return false;
+		}
+		return true;
+	}
 
-				// Verify Status, then deal with all the possible error codes...
-				if (errorCode == JTelegramConnection.QUEUED) {
-					util.sentTo(recipient, i, totalTelegrams);
-					sentList.add(recipient);
+	/**
+	 * Sends to some recipient once the telegram interval since the last telegram has passed. If the telegram cannot
+	 * be queued for a transient reason, the recipient is scheduled for retry. A full interval is waited after every
+	 * attempt, whether or not the telegram was queued. If the keys are wrong, so that no telegram can be sent, sending
+	 * stops. While NationStates is unavailable, sending waits for it, without using up the recipient's retries.
+	 * @return false if sending should stop
+	 */
+	private boolean dispatch(String recipient, int i) {
+
+		// Wait until the telegram interval has passed
+		try {
+			scheduler.awaitSlot();
+		} catch (InterruptedException e) {
+			util.log("Sending thread was forced to terminate.");    // Report.
+			killThread = true;
+			return false;
+		}
 
-				} else if (errorCode == JTelegramConnection.REGION_MISMATCH)
-					util.log(formatError("Region key mismatch.", recipient, i + 1, totalTelegrams));
+		boolean fatal = false; // if the same error would recur for every recipient
+		try {
 
-				else if (errorCode == JTelegramConnection.RATE_LIMIT_EXCEEDED)
-					util.log(formatError("Client exceeded rate limit. Check for multiple recruiter instances",
-							recipient,i + 1, totalTelegrams));
+			// Connect to the API
+			JTelegramConnection connection = open(recipient);
+			int errorCode = connection.verify();
+			int totalTelegrams = recipients.size(); // so far, if recipients are still being resolved
 
-				else if (errorCode == JTelegramConnection.CLIENT_NOT_REGISTERED)
-					util.log(formatError("Client key not registered with API, verify client key", recipient,
-							i + 1, totalTelegrams));
+			// Verify Status, then deal with all the possible error codes...
+			if (errorCode == JTelegramConnection.QUEUED) {
+				retries.succeeded(recipient);
+				util.sentTo(recipient, i, totalTelegrams);
+				sentList.add(recipient);
 
-				else if (errorCode == JTelegramConnection.SECRET_KEY_MISMATCH)
-					util.log(formatError("Secret key incorrect, verify secret key", recipient,
-							i + 1, totalTelegrams));
+			} else if (errorCode == JTelegramConnection.REGION_MISMATCH) {
+				util.log(formatError("Region key mismatch.", recipient, i + 1, totalTelegrams));
+				util.failed(recipient);
+				fatal = true;
 
-				else if (errorCode == JTelegramConnection.NO_SUCH_TELEGRAM)
-					util.log(formatError("No such telegram by id: " + keys.getTelegramId(), recipient,
-							i + 1, totalTelegrams));
+			} else if (errorCode == JTelegramConnection.RATE_LIMIT_EXCEEDED) {
+				util.log(formatError("Client exceeded rate limit. Check for multiple recruiter instances",
+						recipient, i + 1, totalTelegrams));
+				retry(recipient, i);
+
+			} else if (errorCode == JTelegramConnection.CLIENT_NOT_REGISTERED) {
+				util.log(formatError("Client key not registered with API, verify client key", recipient,
+						i + 1, totalTelegrams));
+				util.failed(recipient);
+				fatal = true;
+
+			} else if (errorCode == JTelegramConnection.SECRET_KEY_MISMATCH) {
+				util.log(formatError("Secret key incorrect, verify secret key", recipient,
+						i + 1, totalTelegrams));
+				util.failed(recipient);
+				fatal = true;
+
+			} else if (errorCode == JTelegramConnection.NO_SUCH_TELEGRAM) {
+				util.log(formatError("No such telegram by id: " + keys.getTelegramId(), recipient,
+						i + 1, totalTelegrams));
+				util.failed(recipient);
+				fatal = true;
+
+			} else if (errorCode == JTelegramConnection.UNKNOWN_ERROR) {
+				util.log(formatError("Unknown connection error", recipient, i + 1, totalTelegrams));
+				retry(recipient, i);
+
+			} else {
+				util.log(formatError("Unknown internal error", recipient, i + 1, totalTelegrams));
+				util.failed(recipient); // should literally never happen
+			}
 
-				else if (errorCode == JTelegramConnection.UNKNOWN_ERROR)
-					util.log(formatError("Unknown connection error", recipient, i + 1, totalTelegrams));
+		} catch (IOException e) {
+			util.log(formatError("Error in queuing. Check your Internet connection",
+					recipient, i + 1, recipients.size()));
+			LOGGER.log(Level.SEVERE, "IO Exception in JavaTelegram sending thread", e);
+			LOGGER.severe("Stack trace:\n" + Arrays.stream(e.getStackTrace())
+					.map(st -> "\t" + st.toString())
+					.collect(Collectors.joining("\n")));
+			e.printStackTrace();
+			retry(recipient, i);
+
+		} catch (InterruptedException e) {
+			util.log("Sending thread was forced to terminate.");    // Report.
+			killThread = true;
+			return false;
+		}
 
-				else util.log(formatError("Unknown internal error", recipient, i + 1, totalTelegrams));
-				// above should literally never happen
+		// next interval runs from the response, also after failures, so that they do not run through the list
+		scheduler.queued();
 
-			} catch (IOException e) {
-				util.log(formatError("Error in queuing. Check your Internet connection",
-						recipient, i + 1, totalTelegrams));
-				LOGGER.log(Level.SEVERE, "IO Exception in JavaTelegram sending thread", e);
-				LOGGER.severe("Stack trace:\n" + Arrays.stream(e.getStackTrace())
-						.map(st -> "\t" + st.toString())
-						.collect(Collectors.joining("\n")));
-				e.printStackTrace();
-			}
+		if (fatal) {
+			util.log("Stopping, as no telegram can be sent until the keys are corrected.");
+			killThread = true;
+			return false;
+		}
 
-			// Implement the rate limit, is skipped if campaign not possible
-			try {
+		if (killThread) { // terminate if requested
+			util.log("Sending thread terminated quietly.");
+			return false;
+		}
 
-				if (killThread) { // terminate if requested
-					util.log("Sending thread terminated quietly.");
-					break;
+		if (i + 1 < recipients.size() || !recipients.isComplete() || !retries.isEmpty())
+			util.log(String.format("[%d of %d%s] Queried for %s, next delivery in %.2f seconds",
+					i + 1, recipients.size(), recipients.isComplete() ? "" : "+", recipient,
+					scheduler.millisUntilSlot() / 1000D));
+		return true;
+	}
 
-				} else if (i + 1 == totalTelegrams) util.log("API Queries Complete.");
-				else {
-					util.log(String.format("[%d of %d] Queried for %s, next delivery in %.2f seconds",
-							i + 1, totalTelegrams, recipient, (double) waitTime / 1000));
-					Thread.sleep(waitTime - NSConnection.WAIT_TIME);
-				}
+	/**
+	 * Opens a connection to send to some recipient, waiting while the circuit breaker is open.
+	 * @throws IOException          if there is a problem in connecting to the API
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	private JTelegramConnection open(String recipient) throws IOException, InterruptedException {
+		while (true) {
+			try {
+				return new JTelegramConnection(keys, recipient);
+			} catch (NSIOException e) { // breaker open
+				long wait = Math.max(NSCircuitBreaker.instance().millisUntilProbe(), UNAVAILABLE_WAIT);
+				util.log(String.format("NationStates unavailable; waiting %.0f seconds to send to %s",
+						wait / 1000D, recipient));
+				TimeUnit.MILLISECONDS.sleep(wait);
+			}
+		}
+	}
 
-			} catch (InterruptedException e) {
-				util.log("Sending thread was forced to terminate.");    // Report.
-				killThread = true;
-				break;
+	/**
+	 * Schedules a retry for a recipient which failed for a transient reason, if it has retries left.
+	 */
+	private void retry(String recipient, int i) {
+		long delay = retries.failed(recipient, i);
+		if (delay >= 0)
+			util.log(String.format("Will retry delivery to %s in %.0f seconds or later", recipient, delay / 1000D));
+		else {
+			util.log(String.format("Giving up on %s after %d retries", recipient, JTelegramRetryQueue.MAX_RETRIES));
+			util.failed(recipient);
+		}
+	}
+
+	/**
+	 * Populates a recipient and tests it against the predicates. This is called on a background thread by {@link
+	 * JTelegramPrefetcher}. While the circuit breaker is open, population waits for NationStates to become available,
+	 * so that the recipient is not sent to unchecked.
+	 * @param recipient to validate
+	 * @return outcome of validation
+	 */
+	private JTelegramPrefetcher.Status validate(String recipient) {
+		NSNation nation = new NSNation(recipient);
+		try {
+			VALIDATE_RETRY.call("query for data on " + recipient, () -> populate(nation));
+			for (Predicate<NSNation> predicate : predicates) {
+				if (predicate == null) continue; // skip null predicates
+				if (!predicate.test(nation)) return JTelegramPrefetcher.Status.FAILED_CHECKS;
 			}
+			return JTelegramPrefetcher.Status.PASSED;
+
+		} catch (NSException e) {
+			return JTelegramPrefetcher.Status.NOT_FOUND;
+
+		} catch (NSIOException | JTelegramException e) { // one bad lookup must not stop sending
+			LOGGER.log(Level.WARNING, "Cannot query for data on " + recipient, e);
+			return JTelegramPrefetcher.Status.UNCHECKED;
 		}
 	}
 
+	/**
+	 * Populates data for a nation, from the data dump if it holds the nation's telegram flags and otherwise from the
+	 * API.
+	 * @param nation to populate
+	 * @return populated nation
+	 */
+	private NSNation populate(NSNation nation) {
+		JDumpIndex dump = JInfoFetcher.instance().getDumpIndex();
+		JDumpIndex.DumpNation dumpNation = dump == null ? null : dump.getNation(nation.getRefName());
+		if (dumpNation != null && dumpNation.hasTelegramFlags()) dumpNation.populate(nation);
+		else nation.populateData();
+		return nation;
+	}
+
 	/**
 	 * Generates an error message in form: <code>Failed to queue delivery to: $rName, $i of $ofI. $message</code>
 	 */
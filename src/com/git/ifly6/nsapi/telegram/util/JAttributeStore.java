@@ -0,0 +1,497 @@
+package com.git.ifly6.nsapi.telegram.util;
+
+import com.git.ifly6.nsapi.ApiUtils;
+import com.git.ifly6.nsapi.NSConnection;
+import com.git.ifly6.nsapi.NSException;
+import com.git.ifly6.nsapi.NSIOException;
+import com.git.ifly6.nsapi.builders.NSNationQueryBuilder;
+import com.git.ifly6.nsapi.builders.NSNationShard;
+import com.git.ifly6.nsapi.builders.NSRegionQueryBuilder;
+import com.git.ifly6.nsapi.telegram.JTelegramException;
+import com.jcabi.xml.XML;
+import com.jcabi.xml.XMLDocument;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Holds attributes of nations, such as endorsements, influence, and category, so that recipients can be filtered by
+ * them. Attributes are loaded in bulk for a whole list of nations at once: from the data dump, if one is set on {@link
+ * JInfoFetcher}; then from the cache; and only then from the API, one nation per request, on a bounded pool of worker
+ * threads as {@link JRegionExpander} does. World Assembly membership and delegacy come from the world lists, so never
+ * need a request per nation.
+ * <p>
+ * Requests to the API ask only for the shards of the {@link Field}s needed. As each is still one request per nation,
+ * limited by the shared rate limit, {@link #getAll(Collection, Set)} refuses to fetch more than {@link #MAX_FETCHES}
+ * nations at once; larger lists must be filtered with the data dump. A list filtered in parts shares one {@link
+ * FetchLimit} across them, so that the limit applies to the whole list.
+ * </p>
+ * <p>
+ * Where the nations come from known regions, as those of <code>region:europe</code> do, endorsements and influence
+ * are instead read from the regions' census rankings when that takes fewer requests. Each request gives twenty
+ * nations, so a region of 10,000 nations takes 500 requests rather than 10,000. Categories are not ranked, so are
+ * always fetched per nation.
+ * </p>
+ * <p>
+ * Attributes from the API are cached for an hour; those from the dump are read from it each time. Nations which do not
+ * exist are cached as such. This class is safe to use from multiple threads.
+ * </p>
+ */
+public class JAttributeStore {
+
+	/** Attributes held per nation, each loaded from its own shard of the API. */
+	public enum Field {
+		ENDORSEMENTS, INFLUENCE, CATEGORY
+	}
+
+	/** Default number of nations fetched at once. */
+	public static final int DEFAULT_WORKERS = 4;
+
+	/**
+	 * Maximum number of requests made to the API in one call to {@link #getAll(Collection, Set)}, each for one nation
+	 * or for part of the census ranking of a region. At the API rate limit, this takes about five minutes.
+	 */
+	public static final int MAX_FETCHES = 500;
+
+	/** Number of nations given by each request for the census rankings of a region. */
+	public static final int RANKS_PER_REQUEST = 20;
+
+	private static final int ENDORSEMENTS_SCALE = 66;
+	private static final int INFLUENCE_SCALE = 65;
+
+	private static final JAttributeStore SINGLETON = new JAttributeStore();
+	private static final Logger LOGGER = Logger.getLogger(JAttributeStore.class.getName());
+	private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+	/** Cached for nations which do not exist, so that they are not fetched again. */
+	private static final Attributes MISSING =
+			new Attributes(null, null, null, -1, Double.NaN, EnumSet.allOf(Field.class));
+
+	private final JInfoCache<String, Attributes> cache =
+			new JInfoCache<>("nation attributes", Duration.ofHours(1), Duration.ZERO, 100_000);
+
+	/** World lists from {@link JInfoFetcher} and sets made from them, remade when the fetcher reloads a list. */
+	private List<String> waList;
+	private Set<String> waSet;
+	private List<String> delegateList;
+	private Set<String> delegateSet;
+
+	private JAttributeStore() {
+	}
+
+	public static JAttributeStore instance() {
+		return SINGLETON;
+	}
+
+	/**
+	 * @return statistics for the cache of attributes fetched from the API
+	 */
+	public JInfoCache.Stats getCacheStats() {
+		return cache.getStats();
+	}
+
+	/**
+	 * Gets attributes of one nation, from the data dump, the cache, or the API, in that order. Unlike {@link
+	 * #getAll(Collection, Set)}, any fetch is made on the calling thread, so that testing nations one at a time does not
+	 * start a pool of workers for each.
+	 * @param nation reference name
+	 * @param fields needed
+	 * @return attributes, or <code>null</code> if the nation does not exist
+	 * @throws JTelegramException if the nation cannot be fetched
+	 */
+	public Attributes get(String nation, Set<Field> fields) throws JTelegramException {
+		JDumpIndex dump = JInfoFetcher.instance().getDumpIndex();
+		JDumpIndex.DumpNation dumpNation = dump == null ? null : dump.getNation(nation);
+		if (dumpNation != null) return Attributes.of(dumpNation);
+
+		try {
+			Attributes attributes = fetch(nation, fields);
+			return attributes == MISSING ? null : attributes;
+		} catch (NSIOException | IOException e) {
+			throw new JTelegramException("Failed to fetch attributes of " + nation, e);
+		}
+	}
+
+	/**
+	 * Gets attributes of many nations, fetching those neither in the data dump nor cached several at a time. If some
+	 * nations cannot be fetched, they are left out, as are those which do not exist, and the rest are returned.
+	 * @param nations reference names
+	 * @param fields  needed
+	 * @return map from each nation which exists, and could be fetched, to its attributes
+	 * @throws JTelegramException    if more than {@link #MAX_FETCHES} requests would be made, or none could be
+	 * @throws CancellationException if interrupted
+	 */
+	public Map<String, Attributes> getAll(Collection<String> nations, Set<Field> fields) throws JTelegramException {
+		return getAll(nations, fields, new FetchLimit());
+	}
+
+	/**
+	 * Gets attributes of many nations, as {@link #getAll(Collection, Set)} does, counting nations fetched against a
+	 * limit shared with other calls, e.g. those for the other parts of a list filtered as it is fetched.
+	 * @param nations reference names
+	 * @param fields  needed
+	 * @param limit   on nations fetched, shared with other calls
+	 * @return map from each nation which exists, and could be fetched, to its attributes
+	 * @throws JTelegramException    if more nations would be fetched than remain in the limit, or none could be
+	 * @throws CancellationException if interrupted
+	 */
+	public Map<String, Attributes> getAll(Collection<String> nations, Set<Field> fields, FetchLimit limit)
+			throws JTelegramException {
+		Map<String, Attributes> result = new HashMap<>();
+		List<String> missing = collect(nations, fields, result);
+		if (!missing.isEmpty() && loadRanks(missing.size(), fields, limit)) {
+			result.clear();
+			missing = collect(nations, fields, result);
+		}
+		if (missing.isEmpty()) return result;
+		if (!limit.take(missing.size()))
+			throw new JTelegramException(String.format("Filtering by attribute would make over %d requests to the "
+					+ "API; load a data dump to filter this many nations", MAX_FETCHES));
+
+		LOGGER.info(String.format("Fetching attributes of %d nations (%d from dump or cache)",
+				missing.size(), result.size()));
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(DEFAULT_WORKERS, missing.size()), r -> {
+			Thread thread = new Thread(r, "JAttributeStore-" + POOL_COUNT.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			List<Future<Attributes>> futures = new ArrayList<>(missing.size());
+			for (String nation : missing)
+				futures.add(pool.submit(() -> fetch(nation, fields)));
+
+			List<String> failed = new ArrayList<>();
+			Throwable failure = null;
+			for (int i = 0; i < missing.size(); i++) {
+				try {
+					Attributes attributes = futures.get(i).get();
+					if (attributes != MISSING) result.put(missing.get(i), attributes);
+				} catch (ExecutionException e) {
+					failed.add(missing.get(i));
+					failure = e.getCause();
+				}
+				if ((i + 1) % 100 == 0)
+					LOGGER.info(String.format("Fetched attributes of %d of %d nations", i + 1, missing.size()));
+			}
+
+			if (failed.size() == missing.size())
+				throw new JTelegramException("Failed to fetch nation attributes", failure);
+			if (!failed.isEmpty())
+				LOGGER.warning(String.format("Cannot fetch attributes of %d nations, leaving them out: %s",
+						failed.size(), String.join(", ", failed)));
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Attribute fetch interrupted");
+
+		} finally {
+			pool.shutdownNow(); // stops outstanding fetches on cancellation
+		}
+		return result;
+	}
+
+	/**
+	 * Puts the attributes of nations in the data dump or cache into a map.
+	 * @return nations neither in the dump nor cached with the fields needed
+	 */
+	private List<String> collect(Collection<String> nations, Set<Field> fields, Map<String, Attributes> result) {
+		List<String> missing = new ArrayList<>();
+		JDumpIndex dump = JInfoFetcher.instance().getDumpIndex();
+		for (String nation : new LinkedHashSet<>(nations)) {
+			JDumpIndex.DumpNation dumpNation = dump == null ? null : dump.getNation(nation);
+			Attributes attributes = dumpNation != null ? Attributes.of(dumpNation) : cache.peek(nation);
+			if (attributes == null || !attributes.has(fields)) missing.add(nation);
+			else if (attributes != MISSING) result.put(nation, attributes);
+		}
+		return missing;
+	}
+
+	/**
+	 * Loads fields of every nation in the regions of a limit from their census rankings, if the fields are ranked and
+	 * that takes fewer requests than fetching the nations missing. Only regions whose members are already known, and
+	 * whose rankings have not been loaded for the limit, are loaded; the requests are taken from the limit.
+	 * @param missing number of nations which would otherwise be fetched
+	 * @return true if any rankings were loaded
+	 */
+	private boolean loadRanks(int missing, Set<Field> fields, FetchLimit limit) throws JTelegramException {
+		if (fields.isEmpty() || fields.contains(Field.CATEGORY)) return false;
+
+		Map<String, List<String>> regions = new HashMap<>();
+		int requests = 0;
+		for (String region : limit.regions) {
+			if (limit.ranked.contains(region)) continue;
+			List<String> members = JInfoFetcher.instance().peekRegion(region);
+			if (members == null) continue; // not yet fetched
+			regions.put(region, members);
+			requests += fields.size() * ((members.size() + RANKS_PER_REQUEST - 1) / RANKS_PER_REQUEST);
+		}
+		if (regions.isEmpty() || requests >= missing || !limit.take(requests)) return false;
+
+		LOGGER.info(String.format("Loading census rankings of %d regions in %d requests, rather than fetching %d "
+				+ "nations", regions.size(), requests, missing));
+		for (Map.Entry<String, List<String>> entry : regions.entrySet()) {
+			for (Field field : fields)
+				loadRanks(entry.getKey(), entry.getValue().size(), field);
+			limit.ranked.add(entry.getKey());
+		}
+		return true;
+	}
+
+	/**
+	 * Loads one field of every nation in a region from its census ranking, merging it into those cached.
+	 * @param size number of nations in the region, which bounds the requests made
+	 * @throws JTelegramException    if the ranking cannot be fetched
+	 * @throws CancellationException if interrupted
+	 */
+	private void loadRanks(String region, int size, Field field) throws JTelegramException {
+		int scale = field == Field.ENDORSEMENTS ? ENDORSEMENTS_SCALE : INFLUENCE_SCALE;
+		try {
+			for (int start = 1; start <= size; start += RANKS_PER_REQUEST) {
+				if (Thread.currentThread().isInterrupted())
+					throw new CancellationException("Census ranking fetch interrupted");
+
+				String query = new NSRegionQueryBuilder(region).addCensusRanks(scale, start).toString();
+				List<XML> nations = new XMLDocument(new NSConnection(query).getResponse())
+						.nodes("/REGION/CENSUSRANKS/NATIONS/NATION");
+				for (XML nation : nations) {
+					List<String> name = nation.xpath("NAME/text()");
+					List<String> score = nation.xpath("SCORE/text()");
+					if (name.isEmpty() || score.isEmpty()) continue;
+					try {
+						merge(ApiUtils.ref(name.get(0)), field, Double.parseDouble(score.get(0).trim()));
+					} catch (NumberFormatException e) {
+						LOGGER.warning(String.format("Cannot read census score of %s from %s", name.get(0),
+								score.get(0)));
+					}
+				}
+				if (nations.size() < RANKS_PER_REQUEST) return;
+			}
+		} catch (NSIOException | IOException e) {
+			throw new JTelegramException("Failed to fetch census ranking of region " + region, e);
+		}
+	}
+
+	/**
+	 * Caches one field of a nation, keeping any other fields cached for it.
+	 */
+	private void merge(String nation, Field field, double score) {
+		Attributes cached = cache.peek(nation);
+		if (cached == MISSING) cached = null; // ranked, so it exists after all
+
+		Set<Field> fields = EnumSet.of(field);
+		if (cached != null) fields.addAll(cached.fields);
+		int endorsements = field == Field.ENDORSEMENTS
+				? (int) Math.round(score)
+				: cached == null ? -1 : cached.endorsements;
+		double influence = field == Field.INFLUENCE
+				? score
+				: cached == null ? Double.NaN : cached.influence;
+		cache.restore(nation, new Attributes(nation, null, cached == null ? null : cached.category,
+				endorsements, influence, fields), System.currentTimeMillis());
+	}
+
+	/**
+	 * Gets attributes of a nation from the cache, if it holds the fields needed, and otherwise from the API. When a
+	 * cached nation lacks some of the fields, it is fetched again with both those it has and those needed.
+	 */
+	private Attributes fetch(String nation, Set<Field> fields) throws IOException {
+		Attributes cached = cache.peek(nation);
+		if (cached == null) return cache.get(nation, k -> load(k, fields));
+		if (cached.has(fields)) return cached;
+
+		Set<Field> union = EnumSet.noneOf(Field.class);
+		union.addAll(fields);
+		union.addAll(cached.fields);
+		Attributes loaded = load(nation, union);
+		cache.restore(nation, loaded, System.currentTimeMillis());
+		return loaded;
+	}
+
+	/**
+	 * Loads some fields of a nation from the API, asking only for their shards.
+	 */
+	private static Attributes load(String nation, Set<Field> fields) throws IOException {
+		NSNationQueryBuilder query = new NSNationQueryBuilder(nation);
+		if (fields.contains(Field.ENDORSEMENTS)) query.addQuery(NSNationShard.ENDORSEMENT_LIST);
+		if (fields.contains(Field.CATEGORY)) query.addQuery(NSNationShard.CATEGORY);
+		if (fields.contains(Field.INFLUENCE)) query.addQuery(NSNationShard.CENSUS, INFLUENCE_SCALE);
+
+		XML xml;
+		try {
+			xml = new XMLDocument(new NSConnection(query.toString()).getResponse());
+		} catch (NSException e) { // nation does not exist
+			return MISSING;
+		}
+
+		int endorsements = -1;
+		if (fields.contains(Field.ENDORSEMENTS)) {
+			List<String> list = xml.xpath("/NATION/ENDORSEMENTS/text()");
+			endorsements = list.isEmpty() || list.get(0).trim().isEmpty() ? 0 : list.get(0).split(",").length;
+		}
+		String category = null;
+		if (fields.contains(Field.CATEGORY)) {
+			List<String> list = xml.xpath("/NATION/CATEGORY/text()");
+			if (!list.isEmpty()) category = list.get(0).trim();
+		}
+		double influence = Double.NaN;
+		if (fields.contains(Field.INFLUENCE)) {
+			List<String> list = xml.xpath("/NATION/CENSUS/SCALE[@id=65]/SCORE/text()");
+			if (!list.isEmpty()) try {
+				influence = Double.parseDouble(list.get(0).trim());
+			} catch (NumberFormatException e) {
+				LOGGER.warning(String.format("Cannot read influence of %s from %s", nation, list.get(0)));
+			}
+		}
+		Set<Field> loaded = EnumSet.noneOf(Field.class);
+		loaded.addAll(fields);
+		return new Attributes(nation, null, category, endorsements, influence, loaded);
+	}
+
+	/**
+	 * @return reference names of all World Assembly members, as a set
+	 * @throws JTelegramException if the list cannot be fetched
+	 */
+	public Set<String> getWAMembers() throws JTelegramException {
+		List<String> list = JInfoFetcher.instance().getWAMembers();
+		synchronized (this) {
+			if (list != waList) {
+				waSet = new HashSet<>(list);
+				waList = list;
+			}
+			return waSet;
+		}
+	}
+
+	/**
+	 * @return reference names of all World Assembly delegates, as a set
+	 * @throws JTelegramException if the list cannot be fetched
+	 */
+	public Set<String> getDelegates() throws JTelegramException {
+		List<String> list = JInfoFetcher.instance().getDelegates();
+		synchronized (this) {
+			if (list != delegateList) {
+				delegateSet = new HashSet<>(list);
+				delegateList = list;
+			}
+			return delegateSet;
+		}
+	}
+
+	/**
+	 * Number of requests which may still be made to the API, starting at {@link #MAX_FETCHES}, for calls to {@link
+	 * #getAll(Collection, Set, FetchLimit)} which share it. Each nation fetched takes one request; the census rankings
+	 * of its regions, if given, take one request per {@link #RANKS_PER_REQUEST} nations of each region.
+	 */
+	public static class FetchLimit {
+
+		private final List<String> regions;
+		private final Set<String> ranked = Collections.synchronizedSet(new HashSet<>());
+		private int remaining = MAX_FETCHES;
+
+		/**
+		 * Creates a limit for nations from anywhere.
+		 */
+		public FetchLimit() {
+			this(Collections.emptyList());
+		}
+
+		/**
+		 * Creates a limit for nations from some regions, whose census rankings may be loaded instead of fetching each
+		 * nation.
+		 * @param regions reference names of regions from which the nations come
+		 */
+		public FetchLimit(List<String> regions) {
+			this.regions = regions;
+		}
+
+		/**
+		 * Takes some nations from the limit, if that many remain.
+		 * @param count of nations to be fetched
+		 * @return true if they may be fetched
+		 */
+		private synchronized boolean take(int count) {
+			if (count > remaining) return false;
+			remaining -= count;
+			return true;
+		}
+	}
+
+	/**
+	 * Attributes of a nation by which recipients can be filtered.
+	 */
+	public static class Attributes {
+
+		private final String name;
+		private final String region;
+		private final String category;
+		private final int endorsements;
+		private final double influence;
+		private final Set<Field> fields;
+
+		private Attributes(String name, String region, String category, int endorsements, double influence,
+		                   Set<Field> fields) {
+			this.name = name;
+			this.region = region;
+			this.category = category;
+			this.endorsements = endorsements;
+			this.influence = influence;
+			this.fields = Collections.unmodifiableSet(fields);
+		}
+
+		private static Attributes of(JDumpIndex.DumpNation nation) {
+			return new Attributes(nation.getName(), nation.getRegion(), nation.getCategory(),
+					nation.getEndorsements().size(), nation.getInfluence(), EnumSet.allOf(Field.class));
+		}
+
+		/**
+		 * @param needed fields
+		 * @return true if all the fields needed were loaded
+		 */
+		public boolean has(Set<Field> needed) {
+			return fields.containsAll(needed);
+		}
+
+		/** @return reference name */
+		public String getName() {
+			return name;
+		}
+
+		/** @return reference name of region, or <code>null</code> if the data came from the API */
+		public String getRegion() {
+			return region;
+		}
+
+		/** @return government category, e.g. <code>Left Wing Utopia</code>, or <code>null</code> if not loaded */
+		public String getCategory() {
+			return category;
+		}
+
+		/** @return number of endorsements, or <code>-1</code> if not loaded */
+		public int getEndorsements() {
+			return endorsements;
+		}
+
+		/** @return influence score, or <code>NaN</code> if not known */
+		public double getInfluence() {
+			return influence;
+		}
+	}
+
+}
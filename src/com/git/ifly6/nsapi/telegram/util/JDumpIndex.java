@@ -0,0 +1,369 @@
+package com.git.ifly6.nsapi.telegram.util;
+
+import com.git.ifly6.nsapi.ApiUtils;
+import com.git.ifly6.nsapi.NSNation;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * <code>JDumpIndex</code> is an in-memory index of the NationStates daily data dumps, <code>nations.xml.gz</code> and
+ * <code>regions.xml.gz</code>. It allows recipients to be resolved without calling the API: regions into their
+ * members, and World Assembly members, delegates, and all nations into lists.
+ * <p>
+ * Dumps are read with streaming decompression and streaming XML parsing, so the document is never held in memory. Only
+ * the fields needed to resolve recipients are kept. The nations dump is required; the regions dump is optional and, if
+ * present, is used to order region members as the API does.
+ * </p>
+ * <p>
+ * Dumps are produced once a day, so data may be up to a day stale. Recipients which are not in the dump (e.g. nations
+ * founded since) should be resolved through the API.
+ * </p>
+ * @see JInfoFetcher#setDumpIndex(JDumpIndex)
+ */
+public class JDumpIndex {
+
+	public static final String NATIONS_DUMP = "nations.xml.gz";
+	public static final String REGIONS_DUMP = "regions.xml.gz";
+
+	private static final Logger LOGGER = Logger.getLogger(JDumpIndex.class.getName());
+	private static final String INFLUENCE_SCALE = "65";
+
+	private final Instant timestamp;
+	private final Map<String, DumpNation> nations = new LinkedHashMap<>(300_000);
+	private final Map<String, List<String>> regions = new HashMap<>();
+
+	private JDumpIndex(Instant timestamp) {
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * Loads the dumps in some directory. The directory must contain {@link #NATIONS_DUMP} and may contain {@link
+	 * #REGIONS_DUMP}.
+	 * @param directory holding the dumps
+	 * @return index of the dumps
+	 * @throws IOException if the nations dump cannot be read
+	 */
+	public static JDumpIndex load(Path directory) throws IOException {
+		Path regionsDump = directory.resolve(REGIONS_DUMP);
+		return load(directory.resolve(NATIONS_DUMP), Files.exists(regionsDump) ? regionsDump : null);
+	}
+
+	/**
+	 * Loads the provided dumps.
+	 * @param nationsDump path to <code>nations.xml.gz</code>
+	 * @param regionsDump path to <code>regions.xml.gz</code>, or <code>null</code> if there is none
+	 * @return index of the dumps
+	 * @throws IOException if either dump cannot be read
+	 */
+	public static JDumpIndex load(Path nationsDump, Path regionsDump) throws IOException {
+		long start = System.currentTimeMillis();
+		JDumpIndex index = new JDumpIndex(Files.getLastModifiedTime(nationsDump).toInstant());
+		try {
+			try (InputStream stream = openDump(nationsDump)) {
+				index.readNations(stream);
+			}
+			if (regionsDump != null) try (InputStream stream = openDump(regionsDump)) {
+				index.readRegions(stream);
+			}
+
+		} catch (XMLStreamException e) {
+			throw new IOException("Malformed NationStates data dump", e);
+		}
+
+		LOGGER.info(String.format("Loaded dump of %d nations in %d regions in %d ms",
+				index.nations.size(), index.regions.size(), System.currentTimeMillis() - start));
+		return index;
+	}
+
+	private static InputStream openDump(Path path) throws IOException {
+		return new GZIPInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16), 1 << 16);
+	}
+
+	private static XMLStreamReader createReader(InputStream stream) throws XMLStreamException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		return factory.createXMLStreamReader(stream);
+	}
+
+	/**
+	 * Reads the nations dump, collecting the fields of each <code>NATION</code> element and indexing each nation under
+	 * its region.
+	 */
+	private void readNations(InputStream stream) throws XMLStreamException {
+		XMLStreamReader reader = createReader(stream);
+		Map<String, String> regionNames = new HashMap<>(); // so each region name, in each form, is only held once
+
+		DumpNation nation = null;
+		String scaleId = null;
+		int depth = 0;
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+				String element = reader.getLocalName();
+				if (depth == 2 && element.equals("NATION")) nation = new DumpNation();
+				else if (nation != null && element.equals("SCALE")) scaleId = reader.getAttributeValue(null, "id");
+				else if (nation != null && depth == 3) readNationField(reader, element, nation, regionNames);
+				else if (nation != null && element.equals("SCORE") && INFLUENCE_SCALE.equals(scaleId))
+					nation.influence = parseDouble(reader.getElementText());
+
+				// getElementText consumes the end element
+				if (reader.getEventType() == XMLStreamConstants.END_ELEMENT) depth--;
+
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+				if (depth == 1 && nation != null) {
+					if (nation.name != null) {
+						nations.put(nation.name, nation);
+						if (nation.region != null)
+							regions.computeIfAbsent(nation.region, k -> new ArrayList<>()).add(nation.name);
+					}
+					nation = null;
+				}
+			}
+		}
+		reader.close();
+	}
+
+	private static void readNationField(XMLStreamReader reader, String element, DumpNation nation,
+	                                    Map<String, String> regionNames) throws XMLStreamException {
+		switch (element) {
+			case "NAME":
+				nation.properName = reader.getElementText();
+				nation.name = toRef(nation.properName);
+				break;
+			case "REGION":
+				String regionName = reader.getElementText();
+				nation.regionName = regionNames.computeIfAbsent(regionName, k -> k);
+				nation.region = regionNames.computeIfAbsent(toRef(regionName), k -> k);
+				break;
+			case "UNSTATUS":
+				String status = reader.getElementText();
+				nation.waMember = status.startsWith("WA");
+				nation.delegate = status.equals("WA Delegate");
+				break;
+			case "CATEGORY":
+				nation.category = reader.getElementText().intern(); // few distinct categories
+				break;
+			case "ENDORSEMENTS":
+				String endorsements = reader.getElementText();
+				nation.endorsements = ApiUtils.isEmpty(endorsements)
+						? Collections.emptyList()
+						: Arrays.asList(endorsements.split(","));
+				break;
+			case "TGCANRECRUIT":
+				nation.canRecruit = reader.getElementText().trim().equals("1");
+				break;
+			case "TGCANCAMPAIGN":
+				nation.canCampaign = reader.getElementText().trim().equals("1");
+				break;
+			default:
+				// not indexed
+		}
+	}
+
+	/**
+	 * Reads the regions dump, replacing the member lists built from the nations dump with the ordered lists provided
+	 * by the regions dump.
+	 */
+	private void readRegions(InputStream stream) throws XMLStreamException {
+		XMLStreamReader reader = createReader(stream);
+
+		String region = null;
+		int depth = 0;
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+				String element = reader.getLocalName();
+				if (depth == 3 && element.equals("NAME")) region = toRef(reader.getElementText());
+				else if (depth == 3 && element.equals("NATIONS") && region != null) {
+					List<String> members = new ArrayList<>();
+					for (String s : reader.getElementText().split(":"))
+						if (ApiUtils.isNotEmpty(s)) members.add(toRef(s));
+					regions.put(region, members);
+				}
+				if (reader.getEventType() == XMLStreamConstants.END_ELEMENT) depth--;
+
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+				if (depth == 1) region = null;
+			}
+		}
+		reader.close();
+	}
+
+	/**
+	 * Converts a proper name from the dump, like <code>The Pacific</code>, to its reference name,
+	 * <code>the_pacific</code>.
+	 */
+	static String toRef(String s) {
+		return ApiUtils.ref(s).replace(' ', '_');
+	}
+
+	private static double parseDouble(String s) {
+		try {
+			return Double.parseDouble(s.trim());
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * @return time at which the nations dump was last modified
+	 */
+	public Instant getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Determines whether the dump is older than some age.
+	 * @param maxAge of the dump
+	 * @return true if dump is older
+	 */
+	public boolean isOlderThan(Duration maxAge) {
+		return timestamp.plus(maxAge).isBefore(Instant.now());
+	}
+
+	/**
+	 * Gets data on a nation.
+	 * @param nation name, in any form
+	 * @return nation data, or <code>null</code> if the nation is not in the dump
+	 */
+	public DumpNation getNation(String nation) {
+		return nations.get(toRef(nation));
+	}
+
+	/**
+	 * Gets members of a region.
+	 * @param region name, in any form
+	 * @return reference names of members, or <code>null</code> if the region is not in the dump
+	 */
+	public List<String> getRegion(String region) {
+		List<String> members = regions.get(toRef(region));
+		return members == null ? null : Collections.unmodifiableList(members);
+	}
+
+	/**
+	 * @return reference names of all nations in the dump
+	 */
+	public List<String> getAll() {
+		return new ArrayList<>(nations.keySet());
+	}
+
+	/**
+	 * @return reference names of all World Assembly members in the dump
+	 */
+	public List<String> getWAMembers() {
+		List<String> list = new ArrayList<>();
+		for (DumpNation n : nations.values()) if (n.waMember) list.add(n.name);
+		return list;
+	}
+
+	/**
+	 * @return reference names of all World Assembly delegates in the dump
+	 */
+	public List<String> getDelegates() {
+		List<String> list = new ArrayList<>();
+		for (DumpNation n : nations.values()) if (n.delegate) list.add(n.name);
+		return list;
+	}
+
+	/**
+	 * Data on a nation as of the dump.
+	 */
+	public static class DumpNation {
+
+		private String name;
+		private String properName;
+		private String region;
+		private String regionName;
+		private String category;
+		private boolean waMember;
+		private boolean delegate;
+		private List<String> endorsements = Collections.emptyList();
+		private double influence = Double.NaN;
+		private Boolean canRecruit;
+		private Boolean canCampaign;
+
+		private DumpNation() {
+		}
+
+		/** @return reference name */
+		public String getName() {
+			return name;
+		}
+
+		/** @return reference name of region */
+		public String getRegion() {
+			return region;
+		}
+
+		/** @return name of region, as given by the API, e.g. <code>The Pacific</code> */
+		public String getRegionName() {
+			return regionName;
+		}
+
+		public String getCategory() {
+			return category;
+		}
+
+		public boolean isWAMember() {
+			return waMember;
+		}
+
+		public boolean isDelegate() {
+			return delegate;
+		}
+
+		public List<String> getEndorsements() {
+			return endorsements;
+		}
+
+		/** @return influence score, or <code>NaN</code> if not in dump */
+		public double getInfluence() {
+			return influence;
+		}
+
+		/**
+		 * Determines whether the dump recorded whether the nation accepts recruitment and campaign telegrams. Dumps
+		 * which do not contain those flags cannot be used to check whether a nation can be sent to.
+		 * @return true if the flags are known
+		 */
+		public boolean hasTelegramFlags() {
+			return canRecruit != null && canCampaign != null;
+		}
+
+		/**
+		 * Populates a <code>NSNation</code> with data from the dump, rather than from the API. Names are given in the
+		 * same form as the API gives them, so that the nation is the same wherever its data came from.
+		 * @param nation to populate
+		 * @return the same nation
+		 * @throws IllegalStateException if the dump does not record telegram flags
+		 */
+		public NSNation populate(NSNation nation) {
+			if (!hasTelegramFlags()) throw new IllegalStateException("Dump does not have telegram flags for " + name);
+			return nation.populateData(properName, regionName, category, endorsements, influence,
+					canRecruit, canCampaign);
+		}
+	}
+}
@@ -0,0 +1,210 @@
+package com.git.ifly6.nsapi.telegram.util;
+
+import com.git.ifly6.nsapi.ApiUtils;
+import com.git.ifly6.nsapi.NSConnection;
+import com.jcabi.xml.XML;
+import com.jcabi.xml.XMLDocument;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Follows nations as they are founded, from the founding happenings in the NationStates API, so that recruiters can
+ * telegram a nation within seconds of its founding rather than when they next ask for the list of new nations.
+ * <p>
+ * Once started, the happenings are polled every few seconds on a background thread. Each poll asks only for events
+ * after the newest already seen, with <code>sinceid</code>, so it is one small request however often it is made.
+ * Founded and refounded nations are kept in a pool of at most {@link #CAPACITY} nations, newest first and without
+ * duplicates, from which {@link #getNewest()} gives a snapshot. Polls remain subject to the shared {@link
+ * com.git.ifly6.nsapi.NSRateLimiter}. This class is safe to use from multiple threads.
+ * </p>
+ */
+public class JFoundingFeed {
+
+	private static final JFoundingFeed SINGLETON = new JFoundingFeed();
+	private static final Logger LOGGER = Logger.getLogger(JFoundingFeed.class.getName());
+
+	/** Time between polls of the happenings. */
+	public static final Duration POLL_INTERVAL = Duration.ofSeconds(5);
+
+	/** Maximum number of nations kept in the pool; the oldest are dropped first. */
+	public static final int CAPACITY = 200;
+
+	/** Polls missed after which the feed is no longer live, and callers should fall back on new nations. */
+	private static final int LIVE_POLLS = 3;
+
+	private static final String HAPPENINGS_QUERY = "q=happenings;filter=founding";
+	private static final Pattern FOUNDING = Pattern.compile("@@(.+?)@@ was (?:re)?founded in %%(.+?)%%");
+
+	/** Newest first; events with the same time by event ID. */
+	private final TreeSet<Founding> pool = new TreeSet<>(Comparator.comparing(Founding::getFounded)
+			.thenComparingLong(Founding::getEventId).reversed());
+	private final Map<String, Founding> byName = new HashMap<>();
+
+	private long sinceId = -1;
+	private volatile Instant lastPoll = Instant.EPOCH;
+	private ScheduledExecutorService executor;
+
+	private JFoundingFeed() {
+	}
+
+	public static JFoundingFeed instance() {
+		return SINGLETON;
+	}
+
+	/**
+	 * Starts polling the founding happenings in the background, if not already started.
+	 */
+	public synchronized void start() {
+		if (executor != null) return;
+		executor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "JFoundingFeed");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.scheduleWithFixedDelay(this::poll, 0, POLL_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+		LOGGER.info("Started following founding happenings");
+	}
+
+	/**
+	 * Stops polling. The pool is kept, and polling resumes after the last event seen if started again.
+	 */
+	public synchronized void stop() {
+		if (executor == null) return;
+		executor.shutdownNow();
+		executor = null;
+		LOGGER.info("Stopped following founding happenings");
+	}
+
+	/**
+	 * @return true if polling and the last poll succeeded recently, so that the pool holds the newest nations
+	 */
+	public boolean isLive() {
+		synchronized (this) {
+			if (executor == null) return false;
+		}
+		return lastPoll.isAfter(Instant.now().minus(POLL_INTERVAL.multipliedBy(LIVE_POLLS)));
+	}
+
+	/**
+	 * @return nations in the pool, newest first
+	 */
+	public synchronized List<Founding> getNewest() {
+		return new ArrayList<>(pool);
+	}
+
+	/**
+	 * Removes a nation from the pool, e.g. once it has been telegrammed.
+	 * @param nation reference name
+	 * @return true if it was in the pool
+	 */
+	public synchronized boolean remove(String nation) {
+		Founding founding = byName.remove(nation);
+		return founding != null && pool.remove(founding);
+	}
+
+	/** Fetches events after the last seen and adds them to the pool. */
+	private void poll() {
+		long since;
+		synchronized (this) {
+			since = sinceId;
+		}
+
+		try {
+			String query = NSConnection.API_PREFIX + HAPPENINGS_QUERY + (since >= 0 ? ";sinceid=" + since : "");
+			List<Founding> events = parse(new NSConnection(query).connect().getResponse());
+			lastPoll = Instant.now();
+			if (!events.isEmpty()) {
+				add(events);
+				LOGGER.fine(String.format("Found %d newly founded nations", events.size()));
+			}
+
+		} catch (IOException | RuntimeException e) { // keep polling; callers see the feed is not live
+			LOGGER.log(Level.WARNING, "Cannot fetch founding happenings", e);
+		}
+	}
+
+	private synchronized void add(List<Founding> events) {
+		for (Founding founding : events) {
+			sinceId = Math.max(sinceId, founding.eventId);
+			Founding previous = byName.put(founding.name, founding);
+			if (previous != null) pool.remove(previous); // refounded, keep the newest
+			pool.add(founding);
+		}
+		while (pool.size() > CAPACITY) byName.remove(pool.pollLast().name);
+	}
+
+	/**
+	 * Parses founding events from a happenings response.
+	 * @param response from API
+	 * @return founding events, in the order given
+	 */
+	static List<Founding> parse(String response) {
+		List<Founding> events = new ArrayList<>();
+		for (XML event : new XMLDocument(response).nodes("/WORLD/HAPPENINGS/EVENT")) {
+			Matcher matcher = FOUNDING.matcher(event.xpath("TEXT/text()").get(0));
+			if (!matcher.find()) continue; // not a founding
+			events.add(new Founding(ApiUtils.ref(matcher.group(1)), ApiUtils.ref(matcher.group(2)),
+					Instant.ofEpochSecond(Long.parseLong(event.xpath("TIMESTAMP/text()").get(0))),
+					Long.parseLong(event.xpath("@id").get(0))));
+		}
+		return events;
+	}
+
+	/**
+	 * A nation founded, or refounded, and when.
+	 */
+	public static class Founding {
+
+		private final String name;
+		private final String region;
+		private final Instant founded;
+		private final long eventId;
+
+		private Founding(String name, String region, Instant founded, long eventId) {
+			this.name = name;
+			this.region = region;
+			this.founded = founded;
+			this.eventId = eventId;
+		}
+
+		/** @return reference name */
+		public String getName() {
+			return name;
+		}
+
+		/** @return reference name of region in which the nation was founded */
+		public String getRegion() {
+			return region;
+		}
+
+		public Instant getFounded() {
+			return founded;
+		}
+
+		/** @return ID of the founding event, which increases with each event */
+		public long getEventId() {
+			return eventId;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+}
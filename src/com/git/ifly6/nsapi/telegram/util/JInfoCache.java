@@ -0,0 +1,332 @@
+package com.git.ifly6.nsapi.telegram.util;
+
+import com.git.ifly6.nsapi.telegram.JTelegramException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A thread-safe cache for data fetched from the NationStates API, used by {@link JInfoFetcher}.
+ * <p>
+ * Entries expire after a time-to-live. If several threads ask for the same missing entry at once, only one of them
+ * loads it; the rest wait for and share its result. Optionally, an entry which has expired but is within a stale window
+ * is returned immediately while a fresh copy is loaded in the background. The cache can be bounded in size, in which
+ * case the least recently used entries are evicted first.
+ * </p>
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class JInfoCache<K, V> {
+
+	private static final Logger LOGGER = Logger.getLogger(JInfoCache.class.getName());
+
+	/** Shared by all caches to refresh stale entries in the background. */
+	private static final ExecutorService REFRESHER = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "JInfoCache refresh");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Loads values for a cache.
+	 * @param <K> key type
+	 * @param <V> value type
+	 */
+	@FunctionalInterface
+	public interface Loader<K, V> {
+		V load(K key) throws IOException;
+	}
+
+	private final String name;
+	private final long ttlMillis;
+	private final long staleMillis;
+
+	private final Map<K, CacheEntry<V>> entries;
+	private final Map<K, FutureTask<V>> inFlight = new ConcurrentHashMap<>();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder staleHits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder loads = new LongAdder();
+	private final LongAdder loadFailures = new LongAdder();
+	private final LongAdder loadNanos = new LongAdder();
+
+	/**
+	 * Creates a cache.
+	 * @param name        of the cache, for statistics and logging
+	 * @param ttl         time after which entries expire
+	 * @param staleWindow time after expiry during which the stale entry is returned while being refreshed in the
+	 *                    background; {@link Duration#ZERO} to always wait for the load
+	 * @param maxSize     maximum number of entries; least recently used entries are evicted beyond this
+	 */
+	public JInfoCache(String name, Duration ttl, Duration staleWindow, int maxSize) {
+		this.name = name;
+		this.ttlMillis = ttl.toMillis();
+		this.staleMillis = staleWindow.toMillis();
+		this.entries = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Gets the value for some key, loading it with the provided loader if it is missing or expired.
+	 * @param key    to get
+	 * @param loader to load the value if necessary
+	 * @return the value
+	 * @throws IOException if thrown by the loader
+	 */
+	public V get(K key, Loader<K, V> loader) throws IOException {
+		CacheEntry<V> entry;
+		synchronized (entries) {
+			entry = entries.get(key);
+		}
+
+		if (entry != null) {
+			long age = System.currentTimeMillis() - entry.loadedAt;
+			if (age < ttlMillis) {
+				hits.increment();
+				return entry.value;
+			}
+			if (age < ttlMillis + staleMillis) {
+				staleHits.increment();
+				refreshLater(key, loader);
+				return entry.value;
+			}
+		}
+
+		misses.increment();
+		return load(key, loader);
+	}
+
+	/**
+	 * Gets the value for some key if it can be served without loading, fresh or stale. This neither loads the value
+	 * nor counts towards the statistics.
+	 * @param key to get
+	 * @return the value, or <code>null</code> if {@link #get(Object, Loader)} would have to load it
+	 */
+	public V peek(K key) {
+		CacheEntry<V> entry;
+		synchronized (entries) {
+			entry = entries.get(key);
+		}
+		if (entry == null || System.currentTimeMillis() - entry.loadedAt >= ttlMillis + staleMillis) return null;
+		return entry.value;
+	}
+
+	/**
+	 * Removes all entries from the cache.
+	 */
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	/**
+	 * Loads the value for some key. If another thread is already loading that key, waits for its result instead.
+	 */
+	private V load(K key, Loader<K, V> loader) throws IOException {
+		FutureTask<V> task = new FutureTask<>(() -> {
+			long start = System.nanoTime();
+			V value = loader.load(key);
+			loadNanos.add(System.nanoTime() - start);
+			loads.increment();
+			synchronized (entries) {
+				entries.put(key, new CacheEntry<>(value, System.currentTimeMillis()));
+			}
+			return value;
+		});
+
+		FutureTask<V> existing = inFlight.putIfAbsent(key, task);
+		if (existing == null) try {
+			task.run();
+		} finally {
+			inFlight.remove(key, task);
+		}
+
+		try {
+			return (existing == null ? task : existing).get();
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JTelegramException("Interrupted while waiting for " + name + " to load", e);
+
+		} catch (ExecutionException e) {
+			if (existing == null) loadFailures.increment();
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) throw (IOException) cause;
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new JTelegramException("Failed to load " + name, cause);
+		}
+	}
+
+	private void refreshLater(K key, Loader<K, V> loader) {
+		if (inFlight.containsKey(key)) return;
+		REFRESHER.submit(() -> {
+			try {
+				load(key, loader);
+			} catch (IOException | RuntimeException e) {
+				LOGGER.log(Level.WARNING, String.format("Failed to refresh %s for %s", name, key), e);
+			}
+		});
+	}
+
+	/**
+	 * @return snapshot of the statistics of this cache
+	 */
+	public Stats getStats() {
+		int size;
+		synchronized (entries) {
+			size = entries.size();
+		}
+		return new Stats(name, size, hits.sum(), staleHits.sum(), misses.sum(), loads.sum(), loadFailures.sum(),
+				TimeUnit.NANOSECONDS.toMillis(loadNanos.sum()));
+	}
+
+	/**
+	 * Puts an entry loaded at some earlier time, such as one read from disc. Entries too old to be served, even as
+	 * stale, are ignored.
+	 * @param key      of entry
+	 * @param value    of entry
+	 * @param loadedAt time at which the value was loaded, in milliseconds since the epoch
+	 * @return true if the entry was put
+	 */
+	public boolean restore(K key, V value, long loadedAt) {
+		if (System.currentTimeMillis() - loadedAt >= ttlMillis + staleMillis) return false;
+		synchronized (entries) {
+			CacheEntry<V> existing = entries.get(key);
+			if (existing == null || existing.loadedAt < loadedAt)
+				entries.put(key, new CacheEntry<>(value, loadedAt));
+		}
+		return true;
+	}
+
+	/**
+	 * Provides each entry still young enough to be served to some consumer, such as to write them to disc.
+	 * @param consumer of entries
+	 * @throws IOException if thrown by the consumer
+	 */
+	public void forEachEntry(EntryConsumer<K, V> consumer) throws IOException {
+		Map<K, CacheEntry<V>> copy;
+		synchronized (entries) {
+			copy = new LinkedHashMap<>(entries);
+		}
+		long now = System.currentTimeMillis();
+		for (Map.Entry<K, CacheEntry<V>> e : copy.entrySet())
+			if (now - e.getValue().loadedAt < ttlMillis + staleMillis)
+				consumer.accept(e.getKey(), e.getValue().value, e.getValue().loadedAt);
+	}
+
+	/**
+	 * @return name of the cache
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Accepts entries from a cache.
+	 * @param <K> key type
+	 * @param <V> value type
+	 */
+	@FunctionalInterface
+	public interface EntryConsumer<K, V> {
+		void accept(K key, V value, long loadedAt) throws IOException;
+	}
+
+	private static class CacheEntry<V> {
+		private final V value;
+		private final long loadedAt; // epoch millis, so entries can be saved and restored
+
+		private CacheEntry(V value, long loadedAt) {
+			this.value = value;
+			this.loadedAt = loadedAt;
+		}
+	}
+
+	/**
+	 * Statistics on the use of a cache at some point in time.
+	 */
+	public static class Stats {
+
+		private final String name;
+		private final int size;
+		private final long hits;
+		private final long staleHits;
+		private final long misses;
+		private final long loads;
+		private final long loadFailures;
+		private final long loadMillis;
+
+		private Stats(String name, int size, long hits, long staleHits, long misses, long loads, long loadFailures,
+		              long loadMillis) {
+			this.name = name;
+			this.size = size;
+			this.hits = hits;
+			this.staleHits = staleHits;
+			this.misses = misses;
+			this.loads = loads;
+			this.loadFailures = loadFailures;
+			this.loadMillis = loadMillis;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getSize() {
+			return size;
+		}
+
+		/** @return number of requests served with a fresh entry */
+		public long getHits() {
+			return hits;
+		}
+
+		/** @return number of requests served with a stale entry while it was refreshed */
+		public long getStaleHits() {
+			return staleHits;
+		}
+
+		/** @return number of requests which had to wait for a load */
+		public long getMisses() {
+			return misses;
+		}
+
+		/** @return number of successful loads */
+		public long getLoads() {
+			return loads;
+		}
+
+		public long getLoadFailures() {
+			return loadFailures;
+		}
+
+		/** @return total time spent in successful loads, in milliseconds */
+		public long getLoadMillis() {
+			return loadMillis;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s: %d entries, %d hits, %d stale hits, %d misses, %d loads (%d failed), "
+							+ "%.1f ms per load", name, size, hits, staleHits, misses, loads, loadFailures,
+					loads == 0 ? 0D : (double) loadMillis / loads);
+		}
+	}
+}
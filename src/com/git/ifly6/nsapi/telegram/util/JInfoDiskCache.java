@@ -0,0 +1,131 @@
+package com.git.ifly6.nsapi.telegram.util;
+
+import com.git.ifly6.nsapi.ApiUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Saves {@link JInfoCache}s of recipient lists to disc and restores them, so that recipients resolved in one session
+ * need not be fetched again in the next. Each entry is stored with the time at which it was fetched; on restore, each
+ * cache applies its own time-to-live, so expired entries are dropped rather than served.
+ * <p>
+ * The file is a gzip-compressed binary stream, read and written sequentially in one pass. It holds a magic number and
+ * version, then for each cache, its name and entries, each of which is a key, a fetch time, and a list of names; a
+ * marker precedes each entry and another ends the cache. Caches in the file which are not provided on restore are
+ * skipped. Files are written to a temporary file and then moved into place, atomically where the file system allows,
+ * so a crash while saving does not destroy the previous file. If saving fails, the temporary file is deleted.
+ * </p>
+ */
+public class JInfoDiskCache {
+
+	private static final Logger LOGGER = Logger.getLogger(JInfoDiskCache.class.getName());
+
+	/** Default name of the cache file. */
+	public static final String CACHE_FILE = "recipient-cache.bin.gz";
+
+	private static final int MAGIC = 0x434d4331; // CMC1
+	private static final int VERSION = 1;
+
+	private JInfoDiskCache() {
+	}
+
+	/**
+	 * Writes the unexpired entries of some caches to a file.
+	 * @param path   to write to
+	 * @param caches to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void save(Path path, List<JInfoCache<String, List<String>>> caches) throws IOException {
+		Path parent = path.toAbsolutePath().getParent();
+		if (parent != null) Files.createDirectories(parent);
+		Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+		try {
+			try (DataOutputStream out = new DataOutputStream(openOutput(temp))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(caches.size());
+				for (JInfoCache<String, List<String>> cache : caches) {
+					out.writeUTF(cache.getName());
+					cache.forEachEntry((key, names, fetchedAt) -> {
+						out.writeBoolean(true);
+						out.writeUTF(key);
+						out.writeLong(fetchedAt);
+						out.writeInt(names.size());
+						for (String name : names) out.writeUTF(name);
+					});
+					out.writeBoolean(false);
+				}
+			}
+			ApiUtils.replace(temp, path);
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(temp); // leave the previous file, if any, as it was
+			throw e;
+		}
+		LOGGER.info(String.format("Saved recipient caches to %s", path));
+	}
+
+	/**
+	 * Restores entries from a file into the caches with the same names. Entries which have expired are dropped. If the
+	 * file does not exist, nothing is restored.
+	 * @param path   to read from
+	 * @param caches to restore into
+	 * @return number of entries restored
+	 * @throws IOException if the file cannot be read or is not a cache file
+	 */
+	public static int load(Path path, List<JInfoCache<String, List<String>>> caches) throws IOException {
+		if (!Files.exists(path)) return 0;
+
+		int restored = 0;
+		try (DataInputStream in = new DataInputStream(openInput(path))) {
+			if (in.readInt() != MAGIC) throw new IOException("Not a Communique cache file: " + path);
+			int version = in.readInt();
+			if (version != VERSION) throw new IOException("Unsupported cache file version " + version);
+
+			int cacheCount = in.readInt();
+			for (int i = 0; i < cacheCount; i++) {
+				String name = in.readUTF();
+				JInfoCache<String, List<String>> cache = caches.stream()
+						.filter(c -> c.getName().equals(name))
+						.findFirst().orElse(null);
+
+				while (in.readBoolean()) {
+					String key = in.readUTF();
+					long fetchedAt = in.readLong();
+					int size = in.readInt();
+					List<String> names = new ArrayList<>(size);
+					for (int k = 0; k < size; k++) names.add(in.readUTF());
+
+					if (cache != null && cache.restore(key, Collections.unmodifiableList(names), fetchedAt))
+						restored++;
+				}
+			}
+		}
+
+		LOGGER.info(String.format("Restored %d cache entries from %s", restored, path));
+		return restored;
+	}
+
+	private static InputStream openInput(Path path) throws IOException {
+		return new GZIPInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16), 1 << 16);
+	}
+
+	private static OutputStream openOutput(Path path) throws IOException {
+		return new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(path), 1 << 16), 1 << 16);
+	}
+
+}
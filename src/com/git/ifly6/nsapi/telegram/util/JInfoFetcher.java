@@ -3,15 +3,18 @@ package com.git.ifly6.nsapi.telegram.util;
 import com.git.ifly6.nsapi.ApiUtils;
 import com.git.ifly6.nsapi.NSConnection;
 import com.git.ifly6.nsapi.NSException;
+import com.git.ifly6.nsapi.NSIOException;
 import com.git.ifly6.nsapi.NSRegion;
 import com.git.ifly6.nsapi.NSWorld;
 import com.git.ifly6.nsapi.telegram.JTelegramException;
 import com.jcabi.xml.XMLDocument;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -24,26 +27,146 @@ import java.util.stream.Stream;
  * </p>
  * <p>
  * Note that all of these functions require file-system and Internet access to download and parse the files provided by
- * the NationStates API.
+ * the NationStates API. If a {@link JDumpIndex} is set, regions, World Assembly members, delegates, and all nations are
+ * instead resolved from the daily data dump.
+ * </p>
+ * <p>
+ * Results are held in {@link JInfoCache}s, each with a time-to-live appropriate to how quickly its data changes, so
+ * that long-running programs do not filter against stale lists. The World Assembly lists are refreshed in the
+ * background once expired, so that callers are not held up by the reload. This class is safe to use from multiple
+ * threads.
+ * </p>
+ * <p>
+ * Every failure to fetch, including a refusal by the {@link com.git.ifly6.nsapi.NSCircuitBreaker} while NationStates
+ * is unavailable, is thrown as a {@link JTelegramException}.
+ * </p>
+ * <p>
+ * Caches can be saved to disc and restored in a later session with {@link #saveCache(Path)} and {@link
+ * #loadCache(Path)}, so that restarts do not re-fetch lists which have not yet expired.
  * </p>
  */
 public class JInfoFetcher {
 
-	private static JInfoFetcher singleton;
+	private static final JInfoFetcher SINGLETON = new JInfoFetcher();
+
+	private static final String WORLD = "world"; // key for caches holding one value
 
-	private Map<String, List<String>> regionList = new HashMap<>();
-	private Map<String, List<String>> regionTags = new HashMap<>();
+	private final JInfoCache<String, List<String>> regionList =
+			new JInfoCache<>("regions", Duration.ofMinutes(30), Duration.ZERO, 5_000);
+	private final JInfoCache<String, List<String>> regionTags =
+			new JInfoCache<>("region tags", Duration.ofHours(6), Duration.ZERO, 500);
 
-	private List<String> allNations;
-	private List<String> delegates;
-	private List<String> waMembers;
+	private final JInfoCache<String, List<String>> allNations =
+			new JInfoCache<>("all nations", Duration.ofHours(6), Duration.ofHours(6), 1);
+	private final JInfoCache<String, List<String>> delegates =
+			new JInfoCache<>("delegates", Duration.ofMinutes(30), Duration.ofMinutes(30), 1);
+	private final JInfoCache<String, List<String>> waMembers =
+			new JInfoCache<>("WA members", Duration.ofMinutes(30), Duration.ofMinutes(30), 1);
+
+	private volatile JDumpIndex dumpIndex;
 
 	private JInfoFetcher() {
 	}
 
 	public static JInfoFetcher instance() {
-		if (singleton == null) singleton = new JInfoFetcher();
-		return singleton;
+		return SINGLETON;
+	}
+
+	/**
+	 * Sets a data dump index from which recipients are resolved before querying the API. Regions, World Assembly
+	 * members, delegates, and all nations are then resolved from the dump.
+	 * @param dumpIndex to use, or <code>null</code> to use only the API
+	 */
+	public void setDumpIndex(JDumpIndex dumpIndex) {
+		this.dumpIndex = dumpIndex;
+		for (JInfoCache<String, List<String>> cache : Arrays.asList(allNations, delegates, waMembers))
+			cache.clear(); // reload from the new source
+	}
+
+	/**
+	 * @return the data dump index in use, or <code>null</code> if there is none
+	 */
+	public JDumpIndex getDumpIndex() {
+		return dumpIndex;
+	}
+
+	/**
+	 * @return statistics for each of the caches
+	 */
+	public List<JInfoCache.Stats> getCacheStats() {
+		return Stream.of(regionList, regionTags, allNations, delegates, waMembers)
+				.map(JInfoCache::getStats)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Restores cached recipient lists saved by {@link #saveCache(Path)}, so that lists fetched in an earlier session
+	 * are not fetched again until they expire. Lists which have already expired are dropped.
+	 * @param path to cache file
+	 * @throws IOException if the file exists but cannot be read
+	 * @see JInfoDiskCache
+	 */
+	public void loadCache(Path path) throws IOException {
+		JInfoDiskCache.load(path, persistentCaches());
+	}
+
+	/**
+	 * Saves cached recipient lists to disc, to be restored with {@link #loadCache(Path)}.
+	 * @param path to cache file
+	 * @throws IOException if the file cannot be written
+	 * @see JInfoDiskCache
+	 */
+	public void saveCache(Path path) throws IOException {
+		JInfoDiskCache.save(path, persistentCaches());
+	}
+
+	/**
+	 * Lists resolved from a data dump are not saved, as they are cheap to rebuild and may differ from the API.
+	 */
+	private List<JInfoCache<String, List<String>>> persistentCaches() {
+		return dumpIndex == null
+				? Arrays.asList(regionList, regionTags, allNations, delegates, waMembers)
+				: Arrays.asList(regionList, regionTags);
+	}
+
+	/**
+	 * Gets the members of a region without calling the API, if they are in the data dump or cached.
+	 * @param region to look up
+	 * @return members, or <code>null</code> if they would have to be fetched
+	 */
+	public List<String> peekRegion(String region) {
+		JDumpIndex dump = dumpIndex;
+		List<String> members = dump == null ? null : dump.getRegion(region);
+		return members != null ? members : regionList.peek(region);
+	}
+
+	/**
+	 * Gets the regions declaring some tag without calling the API, if they are cached.
+	 * @param regionTag to look up
+	 * @return regions, or <code>null</code> if they would have to be fetched
+	 */
+	public List<String> peekRegionTag(String regionTag) {
+		return regionTags.peek(regionTag);
+	}
+
+	/**
+	 * Determines whether one of the world lists, <code>wa</code>, <code>delegates</code>, or <code>all</code>, can be
+	 * had without calling the API, from the data dump or the cache.
+	 * @param tag naming the list
+	 * @return true if the list would not be fetched
+	 */
+	public boolean hasWorldList(String tag) {
+		if (dumpIndex != null) return true;
+		switch (tag) {
+			case "wa":
+				return waMembers.peek(WORLD) != null;
+			case "delegates":
+				return delegates.peek(WORLD) != null;
+			case "all":
+				return allNations.peek(WORLD) != null;
+			default:
+				return false;
+		}
 	}
 
 	/**
@@ -52,16 +175,18 @@ public class JInfoFetcher {
 	 * @throws JTelegramException in case there is a problem with connecting to the NS API
 	 */
 	public List<String> getDelegates() throws JTelegramException {
-		if (delegates == null) try {
-			delegates = NSWorld.getDelegates();
-		} catch (IOException e) {
+		try {
+			return delegates.get(WORLD, k -> {
+				JDumpIndex dump = dumpIndex;
+				return Collections.unmodifiableList(dump != null ? dump.getDelegates() : NSWorld.getDelegates());
+			});
+		} catch (NSIOException | IOException e) {
 			throw new JTelegramException("Failed to get list of delegates", e);
 		}
-		return delegates;
 	}
 
 	/**
-	 * Queries the NationStates API for a listing of 50 new nations.
+	 * Queries the NationStates API for a listing of 50 new nations. This is never cached.
 	 * @return <code>List&lt;String&gt;</code> with the recipients inside
 	 * @throws JTelegramException in case the NationStates API is unreachable for some reason
 	 */
@@ -74,7 +199,7 @@ public class JInfoFetcher {
 					.map(String::trim)
 					.filter(ApiUtils::isNotEmpty)
 					.collect(Collectors.toList());
-		} catch (IOException e) {
+		} catch (NSIOException | IOException e) {
 			throw new JTelegramException("Failed to get new nations", e);
 		}
 	}
@@ -85,15 +210,20 @@ public class JInfoFetcher {
 	 * @throws JTelegramException in case the NationStates API is unreachable for some reason
 	 */
 	public List<String> getRegion(String region) throws JTelegramException {
+		JDumpIndex dump = dumpIndex;
+		if (dump != null) {
+			List<String> members = dump.getRegion(region);
+			if (members != null) return members;
+		}
+
 		try {
-			if (!regionList.containsKey(region) || regionList.get(region) == null) {
-				NSRegion nsRegion = new NSRegion(region).populateData();
-				regionList.put(region, nsRegion.getRegionMembers());
-			}
-		} catch (NSException e) { // non-existent -> throw NSException
+			return regionList.get(region, k -> {
+				NSRegion nsRegion = new NSRegion(k).populateData();
+				return Collections.unmodifiableList(nsRegion.getRegionMembers());
+			});
+		} catch (NSException | NSIOException | IOException e) { // non-existent -> throw NSException
 			throw new JTelegramException(String.format("Failed to load data for region %s", region), e);
 		}
-		return regionList.get(region);
 	}
 
 	/**
@@ -104,16 +234,15 @@ public class JInfoFetcher {
 	 */
 	public List<String> getRegionTag(String regionTag) throws JTelegramException {
 		try {
-			if (!regionTags.containsKey(regionTag) || regionTags.get(regionTag) == null) {
-				regionTags.put(regionTag, NSWorld.getRegionTag(regionTag));
-			}
-		} catch (IOException e) {
+			return regionTags.get(regionTag, k -> {
+				List<String> regions = NSWorld.getRegionTag(k);
+				if (regions.isEmpty())
+					throw new JTelegramException(String.format("Region tag '%s' does not exist", regionTag));
+				return Collections.unmodifiableList(regions);
+			});
+		} catch (NSIOException | IOException e) {
 			throw new JTelegramException("Failed to fetch regions declaring tag " + regionTag, e);
-		} catch (IndexOutOfBoundsException e) {
-			throw new JTelegramException(String.format("Region tag '%s' does not exist", regionTag), e);
 		}
-
-		return regionTags.get(regionTag);
 	}
 
 	/**
@@ -122,12 +251,14 @@ public class JInfoFetcher {
 	 * @throws JTelegramException in case the NationStates API is unreachable for some reason
 	 */
 	public List<String> getWAMembers() throws JTelegramException {
-		if (waMembers == null) try {
-			waMembers = NSWorld.getWAMembers();
-		} catch (IOException e) {
+		try {
+			return waMembers.get(WORLD, k -> {
+				JDumpIndex dump = dumpIndex;
+				return Collections.unmodifiableList(dump != null ? dump.getWAMembers() : NSWorld.getWAMembers());
+			});
+		} catch (NSIOException | IOException e) {
 			throw new JTelegramException("Cannot fetch World Assembly members", e);
 		}
-		return waMembers;
 	}
 
 	/**
@@ -136,11 +267,13 @@ public class JInfoFetcher {
 	 * @throws JTelegramException in case the NationStates API is unreachable for some reason
 	 */
 	public List<String> getAll() throws JTelegramException {
-		if (allNations == null) try {
-			allNations = NSWorld.getAllNations();
-		} catch (IOException e) {
+		try {
+			return allNations.get(WORLD, k -> {
+				JDumpIndex dump = dumpIndex;
+				return Collections.unmodifiableList(dump != null ? dump.getAll() : NSWorld.getAllNations());
+			});
+		} catch (NSIOException | IOException e) {
 			throw new JTelegramException("Cannot fetch all nations", e);
 		}
-		return allNations;
 	}
 }
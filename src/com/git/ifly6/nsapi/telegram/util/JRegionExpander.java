@@ -0,0 +1,156 @@
+package com.git.ifly6.nsapi.telegram.util;
+
+import com.git.ifly6.nsapi.telegram.JTelegramException;
+
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Expands lists of regions into their members, fetching several regions at once. Each region is fetched through {@link
+ * JInfoFetcher#getRegion(String)} on a bounded pool of worker threads, so cached and dumped regions are returned
+ * immediately and a response is parsed while the next requests are in flight. Requests remain subject to the shared
+ * {@link com.git.ifly6.nsapi.NSRateLimiter}, so more workers do not mean more requests than the API permits; they only
+ * hide latency.
+ * <p>
+ * Progress is reported to a {@link ProgressListener} as each region completes. Members can also be passed, in the order
+ * the regions were provided, to a consumer set with {@link #setConsumer(BiConsumer)} as soon as each region and those
+ * before it are expanded, so that callers may use the first regions while the rest are fetched. Expansion is cancelled
+ * by interrupting the thread calling {@link #expand(List)}, as {@link com.git.ifly6.nsapi.telegram.JTelegramRecipients}
+ * does for the thread resolving them when they are cancelled; if any region fails, the rest are cancelled and the
+ * failure is thrown.
+ * </p>
+ */
+public class JRegionExpander {
+
+	/** Default number of regions fetched at once. */
+	public static final int DEFAULT_WORKERS = 4;
+
+	private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+	private final int workers;
+	private ProgressListener listener = (done, total, eta) -> {
+	};
+	private BiConsumer<String, List<String>> consumer = (region, members) -> {
+	};
+
+	/**
+	 * Reports progress in expanding regions.
+	 */
+	@FunctionalInterface
+	public interface ProgressListener {
+		/**
+		 * Called after each region is expanded, from the thread calling {@link #expand(List)}.
+		 * @param done  number of regions expanded
+		 * @param total number of regions to expand
+		 * @param eta   estimated time until all regions are expanded
+		 */
+		void progress(int done, int total, Duration eta);
+	}
+
+	/**
+	 * Creates an expander with {@link #DEFAULT_WORKERS} workers.
+	 */
+	public JRegionExpander() {
+		this(DEFAULT_WORKERS);
+	}
+
+	/**
+	 * Creates an expander.
+	 * @param workers maximum number of regions to fetch at once
+	 */
+	public JRegionExpander(int workers) {
+		if (workers < 1) throw new IllegalArgumentException("Expander requires at least one worker");
+		this.workers = workers;
+	}
+
+	/**
+	 * Sets listener to which progress is reported.
+	 * @param listener for progress
+	 * @return this expander
+	 */
+	public JRegionExpander setListener(ProgressListener listener) {
+		this.listener = listener;
+		return this;
+	}
+
+	/**
+	 * Sets consumer to which each region and its members are passed, in the order the regions were provided, as soon
+	 * as that region and all those before it are expanded. It is called from the thread calling {@link #expand(List)}.
+	 * @param consumer of regions and their members
+	 * @return this expander
+	 */
+	public JRegionExpander setConsumer(BiConsumer<String, List<String>> consumer) {
+		this.consumer = consumer;
+		return this;
+	}
+
+	/**
+	 * Expands each region into its members.
+	 * @param regions to expand
+	 * @return map from each region, in the order provided, to its members
+	 * @throws JTelegramException    if any region cannot be fetched
+	 * @throws CancellationException if interrupted
+	 */
+	public Map<String, List<String>> expand(List<String> regions) throws JTelegramException {
+		List<String> distinct = new ArrayList<>(new LinkedHashSet<>(regions));
+
+		Map<String, List<String>> results = new HashMap<>();
+		if (distinct.isEmpty()) return new LinkedHashMap<>();
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(workers, distinct.size()), r -> {
+			Thread thread = new Thread(r, "JRegionExpander-" + POOL_COUNT.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		try {
+			CompletionService<Map.Entry<String, List<String>>> completion = new ExecutorCompletionService<>(pool);
+			for (String region : distinct)
+				completion.submit(() -> new AbstractMap.SimpleImmutableEntry<>(region,
+						JInfoFetcher.instance().getRegion(region)));
+
+			long start = System.nanoTime();
+			int consumed = 0;
+			for (int done = 1; done <= distinct.size(); done++) {
+				Map.Entry<String, List<String>> entry = completion.take().get();
+				results.put(entry.getKey(), entry.getValue());
+				for (; consumed < distinct.size() && results.containsKey(distinct.get(consumed)); consumed++)
+					consumer.accept(distinct.get(consumed), results.get(distinct.get(consumed)));
+
+				long perRegion = (System.nanoTime() - start) / done;
+				listener.progress(done, distinct.size(), Duration.ofNanos(perRegion * (distinct.size() - done)));
+			}
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Region expansion interrupted");
+
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			throw new JTelegramException("Failed to expand regions", cause);
+
+		} finally {
+			pool.shutdownNow(); // stops outstanding fetches on failure or cancellation
+		}
+
+		Map<String, List<String>> ordered = new LinkedHashMap<>();
+		for (String region : distinct) ordered.put(region, results.get(region));
+		return ordered;
+	}
+
+}
@@ -30,8 +30,9 @@ public class RatelimitTest {
 //		System.out.println(NSConnection.API_PREFIX + "q=newnations");
 
 		/*
-		 * This section logs the start time and the time delta between connections. For the JInfoFetcher equivalent
-		 * code, it should operate around every 700 milliseconds, which is above the 610 ms API cut off.
+		 * This section logs the start time and the time delta between connections. The first 50 connections should go
+		 * through as a burst; thereafter, NSRateLimiter should space them so that no more than 50 fall in any 30
+		 * seconds.
 		 */
 		final int MAX = 100;
 		long startTime = System.currentTimeMillis();
@@ -17,6 +17,7 @@
 
 package com.git.ifly6.tests;
 
+import com.git.ifly6.communique.data.Communique7Parser;
 import com.git.ifly6.communique.data.CommuniqueRecipient;
 import com.git.ifly6.communique.data.CommuniqueRecipients;
 import com.git.ifly6.communique.io.CommuniqueConfig;
@@ -24,12 +25,16 @@ import com.git.ifly6.communique.io.CommuniqueLoader;
 import com.git.ifly6.communique.io.CommuniqueProcessingAction;
 import com.git.ifly6.nsapi.telegram.JTelegramKeys;
 import com.git.ifly6.nsapi.telegram.JTelegramType;
+import com.google.gson.GsonBuilder;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 public class CommuniqueWriterTest {
 
@@ -59,6 +64,64 @@ public class CommuniqueWriterTest {
 		assert config.getcRecipientsString().size() == recipients.length; // make sure lengths preserved
 		assert config.getcRecipients().equals(Arrays.asList(recipients)); // make sure saving is correct
 
+		// make sure output is the same as the reflective Gson writer of earlier versions gave
+		String reflective = new GsonBuilder().setPrettyPrinting().create().toJson(config);
+		assert Files.readAllLines(path).equals(Arrays.asList(reflective.split("\n")));
+
+		// make sure what was saved reads back the same
+		CommuniqueConfig read = loader.load();
+		assert read.getcRecipients().equals(Arrays.asList(recipients));
+		assert read.getTelegramType() == JTelegramType.RECRUIT;
+		assert read.keys.getSecretKey().equals("secret-key");
+
+		Path dir = Files.createTempDirectory("communique");
+
+		// version 7 kept the processing action as a randomisation flag
+		CommuniqueConfig v7 = roundTrip(dir.resolve("v7.txt"), "{\"version\": 7, \"isRandomised\": true, "
+				+ "\"cRecipients\": [\"region:europe\", \"-nation:sent\"]}");
+		assert v7.getProcessingAction() == CommuniqueProcessingAction.RANDOMISE;
+		assert v7.getcRecipientsString().equals(Collections.singletonList("region:europe"));
+		assert v7.getSentList().asSet().equals(Collections.singleton("sent"));
+
+		// versions before 7 kept recipients and nations sent to in separate lists
+		CommuniqueConfig v6 = roundTrip(dir.resolve("v6.txt"), "{\"version\": 6, "
+				+ "\"recipients\": [\"nation:first\", \"region:europe\"], \"sentList\": [\"nation:sent\"]}");
+		assert v6.getcRecipientsString().equals(Arrays.asList("nation:first", "region:europe"));
+		assert v6.getSentList().asSet().equals(Collections.singleton("sent"));
+
+		// attribute filters are saved as they are written, so that they read back as attribute filters
+		List<CommuniqueRecipient> attributes = new ArrayList<>();
+		for (String s : new String[] {"region:europe", "+attr:endorsements>=10", "-attr:delegate",
+				"+attr:category=left-wing"})
+			attributes.add(CommuniqueRecipient.parseRecipient(s));
+		CommuniqueConfig withAttributes = new CommuniqueConfig();
+		withAttributes.setcRecipients(attributes);
+		Path attributePath = dir.resolve("attributes.txt");
+		new CommuniqueLoader(attributePath).save(withAttributes);
+		CommuniqueConfig attributesRead = new CommuniqueLoader(attributePath).load();
+		assert attributesRead.getcRecipients().equals(attributes) : attributesRead.getcRecipientsString();
+		assert attributesRead.getcRecipientsString().equals(Arrays.asList("region:europe",
+				"+attr:endorsements>=10", "-attr:delegate", "+attr:category=left-wing"));
+
+		System.out.println("Configurations written as before and read back unchanged");
+	}
+
+	/**
+	 * Loads a configuration, saves it, and loads it again, checking that saving changed nothing.
+	 * @return configuration as loaded again
+	 */
+	private static CommuniqueConfig roundTrip(Path path, String json) throws IOException {
+		Files.write(path, Collections.singletonList(json));
+		CommuniqueLoader loader = new CommuniqueLoader(path);
+		CommuniqueConfig first = loader.load();
+		loader.save(first);
+
+		CommuniqueConfig second = loader.load();
+		assert second.version == Communique7Parser.version;
+		assert second.getProcessingAction() == first.getProcessingAction();
+		assert second.getcRecipientsString().equals(first.getcRecipientsString());
+		assert second.getSentList().asSet().equals(first.getSentList().asSet());
+		return second;
 	}
 
 }
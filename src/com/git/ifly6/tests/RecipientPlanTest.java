@@ -0,0 +1,156 @@
+package com.git.ifly6.tests;
+
+import com.git.ifly6.communique.data.Communique7Parser;
+import com.git.ifly6.communique.data.CommuniqueRecipient;
+import com.git.ifly6.communique.data.RecipientSet;
+import com.git.ifly6.nsapi.telegram.util.JDumpIndex;
+import com.git.ifly6.nsapi.telegram.util.JInfoFetcher;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Checks that the planner in {@link Communique7Parser}, and streaming through it, give the same recipients, in the
+ * same order, as applying each token in turn, also when a sent list is excluded. Only tokens which can be resolved
+ * without calling the API are used: nations, regular expressions, and lists read from a small data dump written for
+ * the test. Run with <code>-ea</code>.
+ */
+public class RecipientPlanTest {
+
+	private static final String[] NATIONS = {"alpha", "bravo", "charlie", "delta", "echo", "foxtrot"};
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		for (String[] tokens : cases()) checkPlanned(tokens);
+		checkAllNations();
+		for (String[] tokens : cases()) checkStreamed(tokens);
+		for (String[] tokens : cases()) checkSentList(tokens);
+		System.out.println("Planned and streamed recipients match recipients applied in turn");
+	}
+
+	/** @return hand-picked token lists, then random lists of nation and regex tokens */
+	private static List<String[]> cases() {
+		List<String[]> cases = new ArrayList<>();
+		cases.add(new String[] {"nation:alpha", "nation:bravo", "nation:charlie"});
+		cases.add(new String[] {"nation:alpha", "nation:alpha", "nation:bravo"});
+		cases.add(new String[] {"nation:alpha", "nation:bravo", "-nation:alpha"});
+		cases.add(new String[] {"nation:alpha", "nation:bravo", "-nation:alpha", "nation:alpha"}); // re-added at end
+		cases.add(new String[] {"-nation:alpha", "nation:alpha", "nation:bravo"}); // exclusion before addition
+		cases.add(new String[] {"nation:alpha", "nation:bravo", "+nation:bravo", "nation:charlie"});
+		cases.add(new String[] {"nation:alpha", "nation:bravo", "nation:charlie", "+regex:[ab].*", "-regex:b.*"});
+		cases.add(new String[] {"nation:alpha", "-nation:bravo", "nation:bravo", "-nation:charlie",
+				"nation:charlie", "-nation:alpha"});
+
+		Random random = new Random(2020);
+		String[] prefixes = {"", "", "", "-", "+"};
+		for (int n = 0; n < 500; n++) {
+			List<String> tokens = new ArrayList<>();
+			int length = 1 + random.nextInt(10);
+			for (int i = 0; i < length; i++) {
+				String nation = NATIONS[random.nextInt(NATIONS.length)];
+				if (random.nextInt(8) == 0) tokens.add("-regex:" + nation.charAt(0) + ".*");
+				else tokens.add(prefixes[random.nextInt(prefixes.length)] + "nation:" + nation);
+			}
+			cases.add(tokens.toArray(new String[0]));
+		}
+		return cases;
+	}
+
+	/**
+	 * Checks <code>tag:all</code>, which the planner skips only where it changes nothing, against a dump in which
+	 * <code>ghost</code> does not exist and the region lists its nations in another order than the list of all nations.
+	 */
+	private static void checkAllNations() throws IOException {
+		Path dir = Files.createTempDirectory("recipient-plan-test");
+		write(dir.resolve(JDumpIndex.NATIONS_DUMP), "<NATIONS>"
+				+ "<NATION><NAME>Alpha</NAME><REGION>Europe</REGION></NATION>"
+				+ "<NATION><NAME>Bravo</NAME><REGION>Europe</REGION></NATION>"
+				+ "<NATION><NAME>Charlie</NAME><REGION>Osiris</REGION></NATION>"
+				+ "</NATIONS>");
+		write(dir.resolve(JDumpIndex.REGIONS_DUMP), "<REGIONS>"
+				+ "<REGION><NAME>Europe</NAME><NATIONS>Bravo:Alpha</NATIONS></REGION>"
+				+ "<REGION><NAME>Osiris</NAME><NATIONS>Charlie</NATIONS></REGION>"
+				+ "</REGIONS>");
+
+		JInfoFetcher.instance().setDumpIndex(JDumpIndex.load(dir));
+		try {
+			assert checkPlanned("nation:ghost", "+tag:all").isEmpty();
+			assert checkPlanned("nation:alpha", "nation:ghost", "+tag:all").equals(Collections.singletonList("alpha"));
+			assert checkPlanned("nation:ghost", "-tag:all").equals(Collections.singletonList("ghost"));
+			assert checkPlanned("tag:all", "+nation:ghost").isEmpty();
+			assert checkPlanned("tag:all", "+region:europe").equals(Arrays.asList("alpha", "bravo")); // all's order
+			assert checkPlanned("region:europe", "+tag:all").equals(Arrays.asList("bravo", "alpha"));
+			assert checkPlanned("region:europe", "-tag:all", "nation:ghost").equals(Collections.singletonList("ghost"));
+			checkPlanned("tag:all", "-region:osiris", "+regex:[ab].*", "nation:charlie", "+tag:all");
+		} finally {
+			JInfoFetcher.instance().setDumpIndex(null);
+		}
+	}
+
+	private static void write(Path path, String xml) throws IOException {
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(path))) {
+			out.write(xml.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * Checks that the planner gives the recipients of applying each token in turn.
+	 * @return recipients
+	 */
+	private static List<String> checkPlanned(String... strings) {
+		List<CommuniqueRecipient> tokens = parse(strings);
+		List<String> expected = inTurn(tokens);
+		List<String> planned = new Communique7Parser().apply(tokens).listRecipients();
+		assert planned.equals(expected) : Arrays.toString(strings) + " planned " + planned + ", expected " + expected;
+		return planned;
+	}
+
+	/**
+	 * Checks that streamed recipients, which are sent to while still being resolved, are those of the planner, in the
+	 * same order.
+	 */
+	private static void checkStreamed(String... strings) throws InterruptedException {
+		List<CommuniqueRecipient> tokens = parse(strings);
+		List<String> expected = inTurn(tokens);
+		List<String> streamed = new Communique7Parser().stream(tokens).awaitAll();
+		assert streamed.equals(expected)
+				: Arrays.toString(strings) + " streamed " + streamed + ", expected " + expected;
+	}
+
+	/**
+	 * Checks that excluding a sent list, without a token for each nation, removes its nations from the recipients and
+	 * leaves the order of the rest unchanged.
+	 */
+	private static void checkSentList(String... strings) {
+		List<CommuniqueRecipient> tokens = parse(strings);
+		List<String> expected = inTurn(tokens);
+		expected.removeAll(Collections.singleton("alpha"));
+		List<String> withSentList = new Communique7Parser()
+				.exclude(Collections.singleton("alpha")).apply(tokens).listRecipients();
+		assert withSentList.equals(expected)
+				: Arrays.toString(strings) + " with sent list " + withSentList + ", expected " + expected;
+	}
+
+	private static List<CommuniqueRecipient> parse(String... strings) {
+		List<CommuniqueRecipient> tokens = new ArrayList<>();
+		for (String s : strings) tokens.add(CommuniqueRecipient.parseRecipient(s));
+		return tokens;
+	}
+
+	/** @return recipients of applying each token in turn, without the planner */
+	private static List<String> inTurn(List<CommuniqueRecipient> tokens) {
+		RecipientSet set = new RecipientSet();
+		for (CommuniqueRecipient token : tokens)
+			set = token.getFilterType().apply(set, token);
+		return set.toList();
+	}
+
+}